@@ -0,0 +1,104 @@
+import benchmarks.SchedulerWorkload;
+
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Scheduler benchmark workload, see {@link SchedulerWorkload}.
+ *
+ * The scheduler is built without UDP endpoints and the queue is topped up with new calls after every
+ * operation, so every measured decision sees the requested number of pending calls.
+ */
+public class SchedulerBenchmarkWorkload implements SchedulerWorkload {
+    private static final int NUM_FLOORS = 22;
+
+    private Scheduler scheduler;
+    private Random random;
+    private int pendingCalls;
+    private int[] carFloors;
+    private int nextCar;
+    private long clock;
+    private ElevatorCall mergeTrip; // trip the next mergeRequests merges into
+    private ElevatorCall[] mergeCalls = new ElevatorCall[NUM_FLOORS]; // calls the next mergeRequests merges, in order
+    private int mergeCallCount;
+
+    @Override
+    public void setUp(String policy, int pendingCalls, int cars, long seed) {
+        // Calls and assignments are logged at the debug level, which is disabled like in production
+        Log.setLevel(Log.Level.INFO);
+
+        scheduler = new Scheduler();
+        scheduler.setDispatchPolicy(policy.equals("nearest") ? new NearestCarDispatchPolicy() : new FifoDispatchPolicy());
+        random = new Random(seed);
+        this.pendingCalls = pendingCalls;
+        carFloors = new int[cars];
+        for (int elevatorId = 0; elevatorId < cars; elevatorId++) {
+            carFloors[elevatorId] = 1 + elevatorId % NUM_FLOORS;
+            scheduler.getElevatorCarPositions().put(elevatorId, carFloors[elevatorId]);
+        }
+        topUpQueue();
+    }
+
+    @Override
+    public int assignTrip() {
+        int elevatorId = nextCar();
+        scheduler.getActiveTrips().remove(elevatorId);
+        scheduler.updateActiveTripIndex(elevatorId);
+        boolean assigned = scheduler.assignTrip(elevatorId);
+        topUpQueue();
+        return assigned ? 1 : 0;
+    }
+
+    @Override
+    public int nextAction() {
+        int elevatorId = nextCar();
+        ElevatorSubsystem.Action action = scheduler.getNextAction(elevatorId, carFloors[elevatorId]);
+        if (action == ElevatorSubsystem.Action.UP) {
+            carFloors[elevatorId]++;
+        } else if (action == ElevatorSubsystem.Action.DOWN) {
+            carFloors[elevatorId]--;
+        }
+        topUpQueue();
+        return action.ordinal();
+    }
+
+    @Override
+    public void prepareMerge() {
+        mergeTrip = new ElevatorCall(new Date(clock++), 1, NUM_FLOORS, "Up");
+        mergeTrip.setCurrentFloor(1);
+        mergeCallCount = 0;
+        for (int startingFloor = 2; startingFloor < NUM_FLOORS; startingFloor += 1 + random.nextInt(3)) {
+            mergeCalls[mergeCallCount++] = new ElevatorCall(new Date(clock++), startingFloor, startingFloor + 1 + random.nextInt(NUM_FLOORS - startingFloor), "Up");
+        }
+    }
+
+    @Override
+    public int mergeRequests() {
+        ElevatorCall trip = mergeTrip;
+        for (int i = 0; i < mergeCallCount && !trip.isFull(); i++) {
+            trip.mergeRequest(mergeCalls[i]);
+        }
+        return trip.getTargetFloors().size();
+    }
+
+    private int nextCar() {
+        int elevatorId = nextCar;
+        nextCar = (nextCar + 1) % carFloors.length;
+        return elevatorId;
+    }
+
+    private void topUpQueue() {
+        while (scheduler.getRequestsQueue().size() < pendingCalls) {
+            scheduler.addRequest(randomCall());
+        }
+    }
+
+    private ElevatorCall randomCall() {
+        int startingFloor = 1 + random.nextInt(NUM_FLOORS);
+        int targetFloor = 1 + random.nextInt(NUM_FLOORS - 1);
+        if (targetFloor >= startingFloor) {
+            targetFloor++;
+        }
+        return new ElevatorCall(new Date(clock++), startingFloor, targetFloor, targetFloor > startingFloor ? "Up" : "Down");
+    }
+}
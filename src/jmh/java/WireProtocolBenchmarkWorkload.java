@@ -0,0 +1,38 @@
+import benchmarks.CodecWorkload;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UDP codec benchmark workload, see {@link CodecWorkload}. Messages are written to and read from the
+ * same direct buffer, like the pooled buffers of the scheduler event loop.
+ */
+public class WireProtocolBenchmarkWorkload implements CodecWorkload {
+    private static final ElevatorSubsystem.Action[] ACTIONS = ElevatorSubsystem.Action.values();
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+    private int sequence;
+
+    @Override
+    public int actionRequest() {
+        WireProtocol.encodeActionRequest(buffer, ++sequence, 3, sequence & 15, 0);
+        int decodedSequence = WireProtocol.readHeader(buffer, WireProtocol.ACTION_REQUEST);
+        return decodedSequence + buffer.getInt() + buffer.getInt() + buffer.getInt();
+    }
+
+    @Override
+    public int actionReply() {
+        WireProtocol.encodeActionReply(buffer, ++sequence, ACTIONS[sequence % ACTIONS.length]);
+        int decodedSequence = WireProtocol.readHeader(buffer, WireProtocol.ACTION_REPLY);
+        return decodedSequence + WireProtocol.readAction(buffer).ordinal();
+    }
+
+    @Override
+    public long hallCall() {
+        WireProtocol.encodeHallCall(buffer, ++sequence, 1700000000000L + sequence, 2, 18, (sequence & 1) == 0);
+        int decodedSequence = WireProtocol.readHeader(buffer, WireProtocol.HALL_CALL);
+        long timestamp = buffer.getLong();
+        int startingFloor = buffer.getInt();
+        int targetFloor = buffer.getInt();
+        return timestamp + decodedSequence + startingFloor + targetFloor + WireProtocol.readDirection(buffer).length();
+    }
+}
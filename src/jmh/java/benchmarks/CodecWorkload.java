@@ -0,0 +1,25 @@
+package benchmarks;
+
+/**
+ * Encoding and decoding of the UDP messages exchanged with the scheduler, implemented by a default
+ * package class loaded through {@link Workloads}.
+ */
+public interface CodecWorkload {
+    /**
+     * Encode then decode the action request of an elevator car
+     * @return a value depending on every decoded field
+     */
+    int actionRequest();
+
+    /**
+     * Encode then decode the action sent to an elevator car
+     * @return a value depending on every decoded field
+     */
+    int actionReply();
+
+    /**
+     * Encode then decode an elevator call sent by the floor subsystem
+     * @return a value depending on every decoded field
+     */
+    long hallCall();
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of ElevatorCall.mergeRequest and the target floor insertion it relies on
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MergeBenchmark {
+
+    private SchedulerWorkload workload;
+
+    @Setup
+    public void setUp() {
+        workload = Workloads.load("SchedulerBenchmarkWorkload", SchedulerWorkload.class);
+        workload.setUp("fifo", 0, 1, 42);
+    }
+
+    /**
+     * The trip and its calls are new objects for every merge, they are built here so that the allocation
+     * rate reported by the gc profiler is the one of the merge path alone
+     */
+    @Setup(Level.Invocation)
+    public void prepareMerge() {
+        workload.prepareMerge();
+    }
+
+    @Benchmark
+    public int mergeRequests() {
+        return workload.mergeRequests();
+    }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the scheduler decisions (Scheduler.assignTrip and SchedulerState.getNextAction)
+ * for queue lengths and fleet sizes from a single building up to a campus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SchedulerBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int pendingCalls;
+
+    @Param({"4", "50", "500"})
+    public int cars;
+
+    @Param({"fifo", "nearest"})
+    public String policy;
+
+    private SchedulerWorkload workload;
+
+    @Setup
+    public void setUp() {
+        workload = Workloads.load("SchedulerBenchmarkWorkload", SchedulerWorkload.class);
+        workload.setUp(policy, pendingCalls, cars, 42);
+    }
+
+    @Benchmark
+    public int assignTrip() {
+        return workload.assignTrip();
+    }
+
+    @Benchmark
+    public int getNextAction() {
+        return workload.nextAction();
+    }
+}
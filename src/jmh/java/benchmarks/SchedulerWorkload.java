@@ -0,0 +1,41 @@
+package benchmarks;
+
+/**
+ * Scheduler hot paths measured by the benchmarks. The elevator system classes live in the default
+ * package, which JMH benchmarks cannot use, so the work is implemented by a default package class
+ * behind this interface and loaded once per trial by {@link Workloads}.
+ */
+public interface SchedulerWorkload {
+    /**
+     * Build a scheduler with the given number of pending calls and elevator cars spread over the building
+     *
+     * @param policy the dispatch policy, "fifo" or "nearest"
+     * @param pendingCalls the number of calls kept pending while measuring
+     * @param cars the number of elevator cars
+     * @param seed the seed of the generated calls
+     */
+    void setUp(String policy, int pendingCalls, int cars, long seed);
+
+    /**
+     * Release the trip of the next car and assign it a new one through Scheduler.assignTrip
+     * @return 1 if a trip was assigned, 0 otherwise
+     */
+    int assignTrip();
+
+    /**
+     * Ask the scheduler for the next action of the next car and perform it
+     * @return the ordinal of the action
+     */
+    int nextAction();
+
+    /**
+     * Build the trip and the calls the next {@link #mergeRequests()} merges, outside of the measurement
+     */
+    void prepareMerge();
+
+    /**
+     * Merge the prepared calls into the prepared trip through ElevatorCall.mergeRequest until the trip is full
+     * @return the number of stops of the trip
+     */
+    int mergeRequests();
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the UDP message encoding and decoding, which is expected to allocate nothing
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireProtocolBenchmark {
+
+    private CodecWorkload workload;
+
+    @Setup
+    public void setUp() {
+        workload = Workloads.load("WireProtocolBenchmarkWorkload", CodecWorkload.class);
+    }
+
+    @Benchmark
+    public int actionRequest() {
+        return workload.actionRequest();
+    }
+
+    @Benchmark
+    public int actionReply() {
+        return workload.actionReply();
+    }
+
+    @Benchmark
+    public long hallCall() {
+        return workload.hallCall();
+    }
+}
@@ -0,0 +1,19 @@
+package benchmarks;
+
+/**
+ * Loads the default package implementations of the workloads. Reflection is only used once per
+ * trial, the benchmarks call the workloads through their interface.
+ */
+final class Workloads {
+
+    private Workloads() {
+    }
+
+    static <T> T load(String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load benchmark workload " + className, e);
+        }
+    }
+}
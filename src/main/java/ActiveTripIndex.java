@@ -0,0 +1,155 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index over the floors still covered by the active trips of the elevator cars.
+ *
+ * The span of a trip goes from the floor ahead of the car to the furthest floor it still has to stop at:
+ * the floors {@link ElevatorCall#getLowestMergeFloor()} to {@link ElevatorCall#getHighestMergeFloor()},
+ * which the pending call index also uses to find merge candidates. Each floor maps to the cars whose trip
+ * span covers it, for each direction, so the trips an incoming elevator call could be merged into are
+ * found with a single lookup instead of testing every active trip.
+ * Moving a car by one floor only changes its span by one floor, keeping updates cheap.
+ *
+ * The index is lock-free for readers. Updates of a given car must be serialized by the caller (the
+ * Scheduler updates a car while holding that car's lock), updates of different cars may run concurrently.
+ */
+public class ActiveTripIndex {
+    private final Map<Integer, Set<Integer>> upCoverage = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> downCoverage = new ConcurrentHashMap<>();
+    private final Map<Integer, TripSpan> spans = new ConcurrentHashMap<>();
+
+    /**
+     * Immutable view of the remaining part of the active trip of an elevator car
+     */
+    public static class TripSpan {
+        private final String direction;
+        private final int lowestFloor;
+        private final int highestFloor;
+        private final int[] stops;
+        private final int passengersTotalWeight;
+
+        TripSpan(String direction, int lowestFloor, int highestFloor, int[] stops, int passengersTotalWeight) {
+            this.direction = direction;
+            this.lowestFloor = lowestFloor;
+            this.highestFloor = highestFloor;
+            this.stops = stops;
+            this.passengersTotalWeight = passengersTotalWeight;
+        }
+
+        public String getDirection() {
+            return direction;
+        }
+
+        public int getLowestFloor() {
+            return lowestFloor;
+        }
+
+        public int getHighestFloor() {
+            return highestFloor;
+        }
+
+        /**
+         * @return the floors the car still has to stop at, in the order they will be visited
+         */
+        public int[] getStops() {
+            return stops.clone();
+        }
+
+        public int getStopCount() {
+            return stops.length;
+        }
+
+        public int getStop(int index) {
+            return stops[index];
+        }
+
+        public int getPassengersTotalWeight() {
+            return passengersTotalWeight;
+        }
+
+        public boolean covers(int floor) {
+            return floor >= lowestFloor && floor <= highestFloor;
+        }
+    }
+
+    /**
+     * Update the span of an elevator car after its trip changed (the car moved, a stop was served
+     * or a request was merged into the trip)
+     *
+     * @param elevatorId the elevator car id
+     * @param trip the active trip of the car, null if the car has no active trip anymore
+     */
+    public void update(int elevatorId, ElevatorCall trip) {
+        TripSpan newSpan = spanOf(trip);
+        TripSpan oldSpan = newSpan == null ? spans.remove(elevatorId) : spans.put(elevatorId, newSpan);
+
+        if (oldSpan != null) {
+            Map<Integer, Set<Integer>> coverage = coverage(oldSpan.getDirection());
+            for (int floor = oldSpan.getLowestFloor(); floor <= oldSpan.getHighestFloor(); floor++) {
+                if (newSpan == null || !newSpan.getDirection().equals(oldSpan.getDirection()) || !newSpan.covers(floor)) {
+                    coverage.computeIfPresent(floor, (f, cars) -> {
+                        cars.remove(elevatorId);
+                        return cars.isEmpty() ? null : cars;
+                    });
+                }
+            }
+        }
+
+        if (newSpan != null) {
+            Map<Integer, Set<Integer>> coverage = coverage(newSpan.getDirection());
+            for (int floor = newSpan.getLowestFloor(); floor <= newSpan.getHighestFloor(); floor++) {
+                if (oldSpan == null || !oldSpan.getDirection().equals(newSpan.getDirection()) || !oldSpan.covers(floor)) {
+                    coverage.compute(floor, (f, cars) -> {
+                        Set<Integer> covering = cars == null ? ConcurrentHashMap.newKeySet() : cars;
+                        covering.add(elevatorId);
+                        return covering;
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove an elevator car from the index
+     * @param elevatorId the elevator car id
+     */
+    public void remove(int elevatorId) {
+        update(elevatorId, null);
+    }
+
+    /**
+     * Find the elevator cars whose active trip goes in the given direction and covers the given floor
+     *
+     * @param direction the direction of travel ("Up" or "Down")
+     * @param floor the floor to look up
+     * @return the ids of the matching elevator cars
+     */
+    public List<Integer> coveringTrips(String direction, int floor) {
+        Set<Integer> cars = coverage(direction).get(floor);
+        return cars == null ? new ArrayList<>() : new ArrayList<>(cars);
+    }
+
+    /**
+     * @param elevatorId the elevator car id
+     * @return the span of the active trip of the car, null if the car has no active trip
+     */
+    public TripSpan getSpan(int elevatorId) {
+        return spans.get(elevatorId);
+    }
+
+    private Map<Integer, Set<Integer>> coverage(String direction) {
+        return direction.equals("Up") ? upCoverage : downCoverage;
+    }
+
+    private static TripSpan spanOf(ElevatorCall trip) {
+        if (trip == null || trip.getCurrentFloor() == null || trip.getNextTargetFloor() == null) {
+            return null;
+        }
+        int[] stops = trip.getStops().toArray();
+        return new TripSpan(trip.getDirection(), trip.getLowestMergeFloor(), trip.getHighestMergeFloor(), stops, trip.getPassengersTotalWeight());
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * Strategy used by the Scheduler to decide which pending elevator call is handed
+ * to an elevator car that has no active trip.
+ *
+ * Implementations only choose a call, the Scheduler remains responsible for removing
+ * it from the requests queue, merging similar requests into it and registering it as
+ * the car's active trip.
+ */
+public interface DispatchPolicy {
+    /**
+     * Select the pending elevator call that should be assigned to the given elevator car
+     *
+     * @param context the scheduler object
+     * @param elevatorId the elevator car asking for a trip
+     * @return the call to assign to the car, or null if the car should not be given a trip right now
+     */
+    ElevatorCall selectRequest(Scheduler context, int elevatorId);
+}
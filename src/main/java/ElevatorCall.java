@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -13,11 +14,12 @@ import java.util.regex.Pattern;
  * @version 3.00
  */
 public class ElevatorCall {
-    private static final String REGEX_PATTERN = "(\\d{2}):(\\d{2}):(\\d{2}):(\\d{2}) (\\d+) (up|down) (\\d+)";
+    private static final Pattern REGEX_PATTERN = Pattern.compile("(\\d{2}):(\\d{2}):(\\d{2}):(\\d{2}) (\\d+) (up|down) (\\d+)");
 
     private final Date timestamp;
     private final int startingFloor;
-    private List<Integer> targetFloors;
+    private final int destinationFloor;
+    private final FloorStopSet targetFloors; // floors still to stop at, ordered in the direction of the trip
 
     private final String direction;
     private Integer currentFloor;
@@ -26,28 +28,52 @@ public class ElevatorCall {
     private static final int ELEVATOR_WEIGHT_LIMIT = 550;
     private boolean tripStarted;
 
+    //Passenger metrics, times are read from the scheduler clock (ms)
+    private long receivedTime = -1; // when the scheduler received the call
+    private long pickupTime = -1; // when the doors opened at the starting floor
+    private boolean delivered;
+    private List<ElevatorCall> mergedCalls; // calls merged into this trip, null until one is
+
     /**
      * Construct a new ElevatorCall object
      *
      * @param timestamp The time the elevator call occurred
      * @param startingFloor The starting floor
      * @param targetFloor The target floor
-     * @param direction The direction
+     * @param direction The direction, "Up" if the target floor is above the starting floor, "Down" otherwise
      */
     public ElevatorCall(Date timestamp, int startingFloor, int targetFloor, String direction) {
         this.timestamp = timestamp;
         this.startingFloor = startingFloor;
+        this.destinationFloor = targetFloor;
         this.direction = direction;
         this.passengersTotalWeight = new Passenger().getPassengerWeight();
 
         currentFloor = null;
         tripStarted = false;
 
-        targetFloors = new ArrayList<>();
+        targetFloors = new FloorStopSet(direction.equals("Up"));
         targetFloors.add(startingFloor);
         targetFloors.add(targetFloor);
     }
 
+    /**
+     * Check the fields of a call made on a floor before building it
+     *
+     * @param startingFloor the floor the call was made on
+     * @param targetFloor the floor requested
+     * @param up true if the call goes up, false if it goes down
+     * @return true if both floors are between 0 and FloorStopSet.MAX_FLOOR and the direction is the one from
+     * the starting floor to the target floor
+     */
+    public static boolean isValid(int startingFloor, int targetFloor, boolean up) {
+        return isFloor(startingFloor) && isFloor(targetFloor) && startingFloor != targetFloor && up == targetFloor > startingFloor;
+    }
+
+    private static boolean isFloor(int floor) {
+        return floor >= 0 && floor <= FloorStopSet.MAX_FLOOR;
+    }
+
     public Date getTimestamp() {
         return timestamp;
     }
@@ -56,11 +82,47 @@ public class ElevatorCall {
         return startingFloor;
     }
 
+    /**
+     * @return the floor requested by the passenger of this call
+     */
+    public int getDestinationFloor() {
+        return destinationFloor;
+    }
+
+    /**
+     * @return the calls merged into this trip, not including this call
+     */
+    public List<ElevatorCall> getMergedCalls() {
+        return mergedCalls == null ? Collections.emptyList() : mergedCalls;
+    }
+
+    public long getReceivedTime() {
+        return receivedTime;
+    }
+
+    public void setReceivedTime(long receivedTime) {
+        this.receivedTime = receivedTime;
+    }
+
+    public long getPickupTime() {
+        return pickupTime;
+    }
+
+    public void setPickupTime(long pickupTime) {
+        this.pickupTime = pickupTime;
+    }
+
+    public boolean isDelivered() {
+        return delivered;
+    }
+
+    public void setDelivered() {
+        delivered = true;
+    }
+
     public Integer getNextTargetFloor() {
-        if (targetFloors.size() == 0) {
-            return null;
-        }
-        return targetFloors.get(0);
+        int nextStop = targetFloors.first();
+        return nextStop == FloorStopSet.NONE ? null : nextStop;
     }
 
     public String getDirection() {
@@ -73,8 +135,8 @@ public class ElevatorCall {
 
     public void setCurrentFloor(Integer currentFloor) {
         this.currentFloor = currentFloor;
-        if (tripStarted && currentFloor == getNextTargetFloor()) {
-            targetFloors.remove(0);
+        if (tripStarted && currentFloor != null && currentFloor == targetFloors.first()) {
+            targetFloors.pollFirst();
         }
     }
 
@@ -82,6 +144,17 @@ public class ElevatorCall {
         return passengersTotalWeight;
     }
 
+    public static int getWeightLimit() {
+        return ELEVATOR_WEIGHT_LIMIT;
+    }
+
+    /**
+     * @return true if not even one more passenger can join this request
+     */
+    public boolean isFull() {
+        return passengersTotalWeight + Passenger.PASSENGER_WEIGHT > ELEVATOR_WEIGHT_LIMIT;
+    }
+
     /**
      * Attempt to merge an incoming request with this request
      * @param request the incoming request
@@ -89,7 +162,7 @@ public class ElevatorCall {
      */
     public boolean mergeRequest(ElevatorCall request) {
         if (request == null) {
-            System.out.println("[ERROR] Null request passed to mergeRequest.");
+            Log.warn("[ELEVATOR CALL] Null request passed to mergeRequest.");
             return false;
         }
         if (!canMerge(request)) {
@@ -98,10 +171,17 @@ public class ElevatorCall {
 
         insertTargetFloor(request.getStartingFloor());
         request.setCurrentFloor(request.getStartingFloor());
-        insertTargetFloor(request.getNextTargetFloor());
+        insertTargetFloor(request.getDestinationFloor());
 
         this.passengersTotalWeight += request.getPassengersTotalWeight();
 
+        if (mergedCalls == null) {
+            mergedCalls = new ArrayList<>();
+        }
+        mergedCalls.add(request);
+        if (request.mergedCalls != null) {
+            mergedCalls.addAll(request.mergedCalls);
+        }
         return true;
     }
 
@@ -113,7 +193,7 @@ public class ElevatorCall {
      */
     private boolean canMerge(ElevatorCall request) {
         if (request == null) {
-            System.out.println("[ERROR] Null request passed to canMerge.");
+            Log.warn("[ELEVATOR CALL] Null request passed to canMerge.");
             return false;
         }
         if (currentFloor == null) {
@@ -125,13 +205,13 @@ public class ElevatorCall {
         } else if (!direction.equals(request.getDirection())) {
             // Requests cannot be merged if directions are opposite
             return false;
-        } else if (direction.equals("Up") && currentFloor >= request.getStartingFloor() && (getNextTargetFloor() == null || getNextTargetFloor() > request.getStartingFloor())) {
-            // Requests cannot be merged if this request has already passed the starting floor of the incoming request
-            return false;
-        } else if (direction.equals("Down") && currentFloor <= request.getStartingFloor() && (getNextTargetFloor() == null || getNextTargetFloor() < request.getStartingFloor())) {
+        }
+        if (request.getStartingFloor() < getLowestMergeFloor() || request.getStartingFloor() > getHighestMergeFloor()) {
+            // Requests cannot be merged if this request has already passed the starting floor of the incoming request,
+            // or if the incoming request starts beyond the last stop of this request
             return false;
         } else if (passengersTotalWeight + request.getPassengersTotalWeight() > ELEVATOR_WEIGHT_LIMIT ){
-            System.out.println("Elevator Car capacity reached");
+            Log.debug("Elevator Car capacity reached");
             return  false;
         }
 
@@ -139,29 +219,38 @@ public class ElevatorCall {
     }
 
     /**
-     * Insert a target floor into the target floor list while maintaining sorted order. Ensures that the floors are visited efficiently without unnecessary reversals in direction
+     * The floors a call must start at to be merged into this request: from the floor ahead of the car, or
+     * from the next stop if the car is still heading to it, up to the last stop in the direction of the trip.
+     * The same range is used by the pending call index and the active trip index to find merge candidates.
+     *
+     * @return the lowest starting floor of a call that can be merged, greater than the highest one if none can
+     */
+    public int getLowestMergeFloor() {
+        if (currentFloor == null || targetFloors.isEmpty()) {
+            return Integer.MAX_VALUE;
+        }
+        return isUp() ? Math.min(currentFloor + 1, targetFloors.first()) : targetFloors.lowest();
+    }
+
+    /**
+     * @return the highest starting floor of a call that can be merged, lower than the lowest one if none can
+     * @see #getLowestMergeFloor()
+     */
+    public int getHighestMergeFloor() {
+        if (currentFloor == null || targetFloors.isEmpty()) {
+            return Integer.MIN_VALUE;
+        }
+        return isUp() ? targetFloors.highest() : Math.max(currentFloor - 1, targetFloors.first());
+    }
+
+    /**
+     * Insert a target floor into the target floors. The stop set keeps them ordered in the direction of the
+     * trip, so the floors are visited without unnecessary reversals in direction, and ignores floors the car
+     * already stops at.
      * @param targetFloor floor to insert
      */
     private void insertTargetFloor(int targetFloor) {
-        try{
-            int insertionIndex = 0;
-            while (insertionIndex < targetFloors.size() && ((direction.equals("Up") && targetFloors.get(insertionIndex) < targetFloor) || (direction.equals("Down") && targetFloors.get(insertionIndex) > targetFloor))) {
-                // increment until:
-                //Condition 1. The floor at insertionIndex is either not less than targetFloor when moving up, or not greater than targetFloor when moving down, indicating the correct position for insertion has been found.
-                //Condition 2. insertionIndex reaches the size of the targetFloors list, meaning the targetFloor should be added at the end of the list because it is higher (when moving up) or lower (when moving down) than all currently listed floors.
-                insertionIndex += 1;
-            }
-
-            // Check if insertionIndex is within the bounds of the list and the floor isn't already included
-            if (insertionIndex < targetFloors.size() && targetFloors.get(insertionIndex) != targetFloor) {
-                targetFloors.add(insertionIndex, targetFloor); //cond 1
-            } else if (insertionIndex == targetFloors.size()) {
-                // If the index equals the size of the list, add to the end.
-                targetFloors.add(targetFloor); //cond 2
-            }
-        } catch (Exception e) {
-            System.err.println("An error occurred while processing: " + e.getMessage());
-        }
+        targetFloors.add(targetFloor);
     }
 
     /**
@@ -169,8 +258,7 @@ public class ElevatorCall {
      * @param repr
      */
     public static String[] fromString(String repr) {
-        Pattern pattern = Pattern.compile(REGEX_PATTERN);
-        Matcher matcher = pattern.matcher(repr);
+        Matcher matcher = REGEX_PATTERN.matcher(repr);
 
         String timestamp;
         String startingFloor;
@@ -186,7 +274,7 @@ public class ElevatorCall {
             targetFloor = matcher.group(7);
 
         } else {
-            System.out.println(repr);
+            Log.debug("%s", repr);
             throw new RuntimeException("ElevatorCall string representation does not align with required format." + repr);
         }
         String[] parsedElevatorCallInfo = {timestamp, startingFloor, targetFloor, direction};
@@ -204,7 +292,24 @@ public class ElevatorCall {
                 timestamp, startingFloor, targetFloors, direction);
     }
 
+    /**
+     * @return a live list view of the floors still to stop at, in the direction of the trip
+     */
     public List<Integer> getTargetFloors() {
+        return targetFloors.asList();
+    }
+
+    /**
+     * @return the floors still to stop at, in the direction of the trip
+     */
+    public FloorStopSet getStops() {
         return targetFloors;
     }
+
+    /**
+     * @return true if the trip goes up
+     */
+    public boolean isUp() {
+        return targetFloors.isAscending();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of elevator calls ordered by time of day, read like a cursor: {@link #next()} moves to the
+ * next call, whose fields are then available through the getters until the following call to next().
+ * The fields are primitives so that replaying millions of calls allocates nothing.
+ */
+public interface ElevatorCallSource extends Closeable {
+
+    /**
+     * Move to the next elevator call
+     *
+     * @return true if there is a call, false once the source is exhausted
+     */
+    boolean next() throws IOException;
+
+    /**
+     * @return the time of day of the current call in milliseconds since midnight
+     */
+    long getTimeOfDay();
+
+    int getStartingFloor();
+
+    int getTargetFloor();
+
+    /**
+     * @return true if the current call goes up, false if it goes down
+     */
+    boolean isUp();
+}
@@ -1,8 +1,5 @@
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
@@ -25,8 +22,7 @@ public class ElevatorCar implements Runnable{
     private static int elevatorCarIDCounter = 0;
     int elevatorCarID;
     protected int currentFloor = STARTING_FLOOR;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    protected ScheduledFuture<?> doorOperationFuture;
+    protected TimingWheel.Timeout doorOperationFuture;
     protected int doorOperationRetryCount = 0;
     private static final int DOOR_FAULT_TIMEOUT = 12; // seconds
     private static final int MAX_DOOR_OPERATION_RETRIES = 3;
@@ -80,6 +76,10 @@ public class ElevatorCar implements Runnable{
         return MOVE_TIME;
     }
 
+    public static int getStartingFloor() {
+        return STARTING_FLOOR;
+    }
+
     @Override
     public void run(){
         ElevatorSubsystem.Action action = elevatorSubsystem.getAction(this.elevatorCarID);
@@ -91,15 +91,20 @@ public class ElevatorCar implements Runnable{
                 case DOWN:
                     move(-1);
                     break;
+                case MOVE_TO:
+                    moveTo(elevatorSubsystem.getTargetFloor(this.elevatorCarID));
+                    break;
                 case TOGGLE_DOORS:
                     toggleDoors();
                     break;
                 case IDLE:
-                    try {
-                        // Sleep for 5 seconds before requesting again to conserve bandwidth
-                        Thread.sleep(5000);
-                    } catch (InterruptedException e) {
-                        throw new RuntimeException(e);
+                    if (!elevatorSubsystem.isIdleSubscriptionEnabled()) {
+                        try {
+                            // Sleep for 5 seconds before requesting again to conserve bandwidth
+                            Thread.sleep(5000);
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
                     }
                     break;
             }
@@ -108,7 +113,12 @@ public class ElevatorCar implements Runnable{
                 break;
             }
 
-            action = elevatorSubsystem.getAction(this.elevatorCarID);
+            if (action == ElevatorSubsystem.Action.IDLE && elevatorSubsystem.isIdleSubscriptionEnabled()) {
+                // Wait for the scheduler to push the next action instead of polling it
+                action = elevatorSubsystem.awaitAction(this.elevatorCarID);
+            } else {
+                action = elevatorSubsystem.getAction(this.elevatorCarID);
+            }
         }
 
         this.setServiceState(ServiceState.OUT_OF_SERVICE);
@@ -127,10 +137,10 @@ public class ElevatorCar implements Runnable{
      * @throws RuntimeException - if the thread is interrupted while waiting for the door operation to complete.
      */
     public void toggleDoors() {
-        System.out.println(String.format("[Elevator Car %d] toggleDoors called, temporarilyDisabled: %s, permanentlyDisabled: %s", getElevatorCarID(), isTemporarilyDisabled, isPermanentlyDisabled));
+        Log.debug("[Elevator Car %d] toggleDoors called, temporarilyDisabled: %s, permanentlyDisabled: %s", getElevatorCarID(), isTemporarilyDisabled, isPermanentlyDisabled);
         // If the car is permanently disabled, do not proceed with any operation
         if (isPermanentlyDisabled) {
-            System.out.println(String.format("[Elevator Car %d] is permanently disabled and cannot operate doors", getElevatorCarID()));
+            Log.warn("[Elevator Car %d] is permanently disabled and cannot operate doors", getElevatorCarID());
             return;
         }
 
@@ -138,25 +148,25 @@ public class ElevatorCar implements Runnable{
         if (!isTemporarilyDisabled) {
             startDoorOperationTimer();
         } else {
-            System.out.println(String.format("[Elevator Car %d] is temporarily disabled, retrying door operation", getElevatorCarID()));
+            Log.warn("[Elevator Car %d] is temporarily disabled, retrying door operation", getElevatorCarID());
         }
 
         doorOperationCompleted = false;
         long startTime = System.currentTimeMillis();
 
-        System.out.println(String.format("[Elevator Car %d] reached target floor %d", elevatorCarID, currentFloor));
-        System.out.println(String.format("[Elevator Car %d] Turn off floor %d light", elevatorCarID, currentFloor));
+        Log.debug("[Elevator Car %d] reached target floor %d", elevatorCarID, currentFloor);
+        Log.debug("[Elevator Car %d] Turn off floor %d light", elevatorCarID, currentFloor);
         try {
-            System.out.println(String.format("[Elevator Car %d] Door opening", elevatorCarID));
+            Log.debug("[Elevator Car %d] Door opening", elevatorCarID);
             Thread.sleep(DOOR_OPEN_TIME);
             for (ElevatorSubsystemGui view : views) {
                 view.handleElevatorDoorOpen(elevatorCarID, currentFloor);
             }
-            System.out.println(String.format("[Elevator Car %d] Door opened, now boarding passenger(s)", elevatorCarID));
+            Log.debug("[Elevator Car %d] Door opened, now boarding passenger(s)", elevatorCarID);
             Thread.sleep(BOARDING_TIME);
-            System.out.println(String.format("[Elevator Car %d] Passenger(s) boarded, now closing door", elevatorCarID));
+            Log.debug("[Elevator Car %d] Passenger(s) boarded, now closing door", elevatorCarID);
             Thread.sleep(DOOR_OPEN_TIME);
-            System.out.println(String.format("[Elevator Car %d] Doors closed", elevatorCarID));
+            Log.debug("[Elevator Car %d] Doors closed", elevatorCarID);
             for (ElevatorSubsystemGui view : views) {
                 view.handleElevatorDoorClose(elevatorCarID, currentFloor);
             }
@@ -166,14 +176,14 @@ public class ElevatorCar implements Runnable{
 
             if (duration <= 12000 && !isTemporarilyDisabled) { //Check if the operation took 12 seconds or less
                 doorOperationCompleted = true; // Set flag to true as operation completed within expected time
-                System.out.println(String.format("[Elevator Car %d] Door operation completed successfully in %d ms.", elevatorCarID, duration));
+                Log.debug("[Elevator Car %d] Door operation completed successfully in %d ms.", elevatorCarID, duration);
 
                 // Operation successful - cancel the future and reset retry count
-                doorOperationFuture.cancel(false);
+                doorOperationFuture.cancel();
                 doorOperationRetryCount = 0;
 
             } else { //Operation took more than 11.5 seconds
-                System.out.println(String.format("[Elevator Car %d] Door operation took too long (%d ms), which may indicate a fault.", elevatorCarID, duration));
+                Log.warn("[Elevator Car %d] Door operation took too long (%d ms), which may indicate a fault.", elevatorCarID, duration);
                 // If this was a retry after a temporary fault, handle it accordingly
                 if (isTemporarilyDisabled) {
                     handleRetryAfterFault();
@@ -190,6 +200,7 @@ public class ElevatorCar implements Runnable{
      * After a certain number of retries, if the door still hasn't operated correctly, it notifies the scheduler of a persistent fault and takes further action.
      *
      * This method schedules a fault detection task that runs after a predefined timeout period to handle potential door operation faults.
+     * The timeout is kept on the timing wheel shared by all cars, and the task, which retries the door operation, runs on a thread of its own.
      */
     public void startDoorOperationTimer() {
         Runnable faultDetectionTask = () -> {
@@ -197,20 +208,20 @@ public class ElevatorCar implements Runnable{
                 if (doorOperationRetryCount < MAX_DOOR_OPERATION_RETRIES) {
                     // Temporarily disable the car for a retry
                     temporarilyDisableCar();
-                    System.out.println(String.format("[Elevator Car %d] Door operation took too long, attempting retry %d", getElevatorCarID(), doorOperationRetryCount + 1));
+                    Log.warn("[Elevator Car %d] Door operation took too long, attempting retry %d", getElevatorCarID(), doorOperationRetryCount + 1);
 
                     // Increment the retry count and attempt to toggle the doors again
                     doorOperationRetryCount++;
                     toggleDoors();
                 } else {
                     // The retries have been exceeded, permanently disable the car
-                    System.out.println(String.format("[Elevator Car %d] Door operation fault detected, exceeded retries", getElevatorCarID()));
+                    Log.warn("[Elevator Car %d] Door operation fault detected, exceeded retries", getElevatorCarID());
                     permanentlyDisableCar();
                 }
             }
         };
 
-        doorOperationFuture = scheduler.schedule(faultDetectionTask, DOOR_FAULT_TIMEOUT, TimeUnit.SECONDS);
+        doorOperationFuture = TimingWheel.shared().schedule(() -> Threads.start("elevator-car-door-fault", faultDetectionTask), DOOR_FAULT_TIMEOUT, TimeUnit.SECONDS);
     }
 
     /**
@@ -239,28 +250,23 @@ public class ElevatorCar implements Runnable{
     }*/
 
     public void temporarilyDisableCar() {
-        System.out.println(String.format("[Elevator Car %d] temporarilyDisableCar called, doorOperationRetryCount: %d", getElevatorCarID(), doorOperationRetryCount));
+        Log.debug("[Elevator Car %d] temporarilyDisableCar called, doorOperationRetryCount: %d", getElevatorCarID(), doorOperationRetryCount);
         synchronized (lock) {
             isTemporarilyDisabled = true;
             notifySchedulerOfTemporaryDisable();
         }
-        System.out.println(String.format("[Elevator Car %d] has been temporarily disabled.", getElevatorCarID()));
+        Log.warn("[Elevator Car %d] has been temporarily disabled.", getElevatorCarID());
     }
 
     protected void notifySchedulerOfTemporaryDisable() {
         String disableMessage = "TEMP_DISABLE:" + getElevatorCarID();
-        byte[] messageBytes = disableMessage.getBytes();
-
-        try (DatagramSocket socket = new DatagramSocket()) {
-            InetAddress schedulerAddress = InetAddress.getLocalHost(); // Scheduler's IP address
-            int schedulerPort = 100; // Scheduler's listening port for handling temporary disable messages
 
-            DatagramPacket packet = new DatagramPacket(messageBytes, messageBytes.length, schedulerAddress, schedulerPort);
-            socket.send(packet);
+        try {
+            elevatorSubsystem.sendFaultMessage(disableMessage);
 
-            System.out.println(String.format("[Elevator Car %d] Sent temporary disable notification to Scheduler", getElevatorCarID()));
+            Log.info("[Elevator Car %d] Sent temporary disable notification to Scheduler", getElevatorCarID());
         } catch (Exception e) {
-            System.err.println("Error sending temporary disable notification to Scheduler: " + e.getMessage());
+            Log.error("Error sending temporary disable notification to Scheduler: %s", e.getMessage());
         }
     }
 
@@ -268,11 +274,11 @@ public class ElevatorCar implements Runnable{
         if (doorOperationRetryCount < MAX_DOOR_OPERATION_RETRIES) {
             // Still have retries left, keep the car temporarily disabled and retry
             doorOperationRetryCount++;
-            System.out.println(String.format("[Elevator Car %d] Retrying door operation, attempt %d", getElevatorCarID(), doorOperationRetryCount));
+            Log.info("[Elevator Car %d] Retrying door operation, attempt %d", getElevatorCarID(), doorOperationRetryCount);
             toggleDoors();
         } else {
             // Exceeded maximum retries, permanently disable the car
-            System.out.println(String.format("[Elevator Car %d] Door operation fault detected, exceeded retries", getElevatorCarID()));
+            Log.warn("[Elevator Car %d] Door operation fault detected, exceeded retries", getElevatorCarID());
             permanentlyDisableCar();
             this.setServiceState(ServiceState.OUT_OF_SERVICE);
             notifySchedulerOfPermanentDisable();
@@ -290,35 +296,30 @@ public class ElevatorCar implements Runnable{
 
         // Stop the door operation timer as the car is now permanently disabled
         if (doorOperationFuture != null && !doorOperationFuture.isDone()) {
-            doorOperationFuture.cancel(true);
+            doorOperationFuture.cancel();
         }
 
         // Notify the Scheduler of the car's permanent disability
         notifySchedulerOfPermanentDisable();
 
-        System.out.println(String.format("[Elevator Car %d] has been permanently disabled.", getElevatorCarID()));
+        Log.warn("[Elevator Car %d] has been permanently disabled.", getElevatorCarID());
     }
 
 
     /**
-     * Notifies the Scheduler of a permanent door operation fault by sending a fault message via UDP.
+     * Notifies the Scheduler of a permanent door operation fault by sending a fault message to its fault endpoint.
      * This message alerts the Scheduler to remove the elevator car from the pool of active cars and
      * redistribute any pending requests to other cars.
      */
     protected void notifySchedulerOfPermanentDisable() {
         String faultMessage = "PERM_DISABLE:" + getElevatorCarID();
-        byte[] messageBytes = faultMessage.getBytes();
 
-        try (DatagramSocket socket = new DatagramSocket()) {
-            InetAddress schedulerAddress = InetAddress.getLocalHost();
-            int schedulerPort = 100; // Scheduler's listening port for handling permanent disable messages
-
-            DatagramPacket packet = new DatagramPacket(messageBytes, messageBytes.length, schedulerAddress, schedulerPort);
-            socket.send(packet);
+        try {
+            elevatorSubsystem.sendFaultMessage(faultMessage);
 
-            System.out.println(String.format("[Elevator Car %d] Sent permanent disable notification to Scheduler", getElevatorCarID()));
+            Log.info("[Elevator Car %d] Sent permanent disable notification to Scheduler", getElevatorCarID());
         } catch (Exception e) {
-            System.err.println("Error sending permanent disable notification to Scheduler: " + e.getMessage());
+            Log.error("Error sending permanent disable notification to Scheduler: %s", e.getMessage());
         }
     }
 
@@ -329,12 +330,30 @@ public class ElevatorCar implements Runnable{
             throw new RuntimeException(e);
         }
         currentFloor += direction;
-        System.out.println(String.format("[Elevator Car %d] Moved to floor %d", elevatorCarID, currentFloor));
+        Log.debug("[Elevator Car %d] Moved to floor %d", elevatorCarID, currentFloor);
         for (ElevatorSubsystemGui view : views) {
             view.handleElevatorPositionUpdate(elevatorCarID, currentFloor);
         }
     }
 
+    /**
+     * Travel to a floor without asking the scheduler at every floor. The arrival at each floor is reported
+     * to the scheduler, which may move the destination closer or further while the car is on its way.
+     *
+     * @param targetFloor the floor to travel to
+     */
+    public void moveTo(int targetFloor) {
+        while (running && targetFloor != WireProtocol.NO_FLOOR && currentFloor != targetFloor) {
+            int previousFloor = currentFloor;
+            move(targetFloor > currentFloor ? 1 : -1);
+            if (currentFloor == previousFloor) {
+                // The car did not move, such as a car that broke down: there is no arrival to report
+                return;
+            }
+            targetFloor = elevatorSubsystem.reportArrival(elevatorCarID, currentFloor, targetFloor);
+        }
+    }
+
     public void addView(ElevatorSubsystemGui view) {
         views.add(view);
     }
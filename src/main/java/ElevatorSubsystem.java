@@ -2,11 +2,13 @@ import java.net.*;
 import java.util.*;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
  * Class represents the elevator subsystem that manages the elevator cars registered under it
- * 
+ *
  * @author Jaden Sutton
  * @author Adham Badawi
  * @author Sameh Gawish
@@ -15,25 +17,164 @@ import java.nio.ByteBuffer;
  */
 
 public class ElevatorSubsystem{
-    public enum Action { UP, DOWN, TOGGLE_DOORS, IDLE, QUIT }
-    private DatagramPacket sendPacket, receivePacket; // packets to be sent and received using UDP
-    private DatagramSocket sendReceiveSocket; // the socket used to send and receive the packets
+    public enum Action { UP, DOWN, TOGGLE_DOORS, IDLE, QUIT, MOVE_TO }
+    static final int SUBSCRIBE_FLAG = 1; // set on requests of idle cars that wait for the scheduler to push their next action
+    static final int MOVE_TO_FLAG = 2; // set on requests of cars able to travel several floors on a single MOVE_TO action
+    static final int ARRIVAL_FLAG = 4; // set on the reports of a car reaching a floor during a MOVE_TO run, they are not answered
+    private static final int IDLE_SUBSCRIPTION_TIMEOUT = 30000; // renew the subscription regularly in case the scheduler lost it
+    private static final int RESPONSE_TIMEOUT = 5000; // time to wait for the scheduler to answer an action request
+    private boolean idleSubscriptionEnabled = true; // idle cars wait for a pushed action instead of polling the scheduler
+    private boolean moveToEnabled = true; // cars travel to their next stop on one action instead of asking the scheduler at every floor
     private Map<Integer, ElevatorCar> elevatorCars; //list of register elevator cars
+    private Map<Integer, SchedulerChannel> schedulerChannels; // long-lived channel of each car to the scheduler
+    private final Transport transport; // carries the messages between the cars and the scheduler
+    private SocketAddress schedulerAddress; // address of the scheduler elevator endpoint
+    private SocketAddress faultAddress; // address of the scheduler fault endpoint
+    private Transport.Endpoint faultEndpoint; // sends the fault messages of every car
+
+    /**
+     * Channel used by one elevator car to exchange messages with the scheduler.
+     * The endpoint is kept for the lifetime of the car, so requests from different cars can be in
+     * flight at the same time without opening an endpoint per request.
+     *
+     * A lock is used rather than synchronized methods so that a virtual thread waiting for an action
+     * does not pin its carrier thread.
+     */
+    private class SchedulerChannel {
+        private final Transport.Endpoint endpoint;
+        private final ReentrantLock lock = new ReentrantLock();
+        private int sequence; // sequence number of the latest request, replies to earlier requests are ignored
+        private int targetFloor = WireProtocol.NO_FLOOR; // destination of the latest MOVE_TO action
+
+        SchedulerChannel() throws IOException {
+            endpoint = transport.open();
+        }
+
+        /**
+         * Send an action request to the scheduler
+         */
+        void send(int elevatorCarID, int currentFloor, int flags) throws IOException {
+            lock.lock();
+            try {
+                ByteBuffer request = transport.acquireBuffer();
+                WireProtocol.encodeActionRequest(request, ++sequence, elevatorCarID, currentFloor, flags);
+                endpoint.send(request, schedulerAddress);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Report the arrival at a floor during a MOVE_TO run, under the sequence number of the request the
+         * run answered so that a new destination pushed for the run is still accepted
+         */
+        void sendArrival(int elevatorCarID, int currentFloor) throws IOException {
+            lock.lock();
+            try {
+                ByteBuffer request = transport.acquireBuffer();
+                WireProtocol.encodeActionRequest(request, sequence, elevatorCarID, currentFloor, ARRIVAL_FLAG | MOVE_TO_FLAG);
+                endpoint.send(request, schedulerAddress);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Read, without waiting, the new destinations the scheduler pushed for the current MOVE_TO run
+         * @param currentTarget the destination of the run so far
+         * @return the latest destination pushed, or the current one if none was pushed
+         */
+        int pollTargetFloor(int currentTarget) throws IOException {
+            lock.lock();
+            try {
+                ByteBuffer reply;
+                while ((reply = endpoint.receive(0)) != null) {
+                    try {
+                        if (isReply(reply) && WireProtocol.readAction(reply) == Action.MOVE_TO) {
+                            currentTarget = WireProtocol.readTargetFloor(reply);
+                            targetFloor = currentTarget;
+                        }
+                    } finally {
+                        transport.releaseBuffer(reply);
+                    }
+                }
+                return currentTarget;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Wait for the scheduler to answer the latest request, answers to earlier requests that arrived
+         * after those requests timed out are dropped
+         * @param timeout maximum time to wait in milliseconds
+         * @return the received action, or null if nothing was received in time
+         */
+        Action receive(long timeout) throws IOException {
+            lock.lock();
+            try {
+                long deadline = System.currentTimeMillis() + timeout;
+                while (true) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    ByteBuffer reply = remaining > 0 ? endpoint.receive(remaining) : null;
+                    if (reply == null) {
+                        return null;
+                    }
+                    try {
+                        if (isReply(reply)) {
+                            Action action = WireProtocol.readAction(reply);
+                            targetFloor = WireProtocol.readTargetFloor(reply);
+                            return action;
+                        }
+                    } finally {
+                        transport.releaseBuffer(reply);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return true if the message answers the latest request, its header is then read
+         */
+        private boolean isReply(ByteBuffer message) {
+            return WireProtocol.isMessage(message, WireProtocol.ACTION_REPLY)
+                    && WireProtocol.readHeader(message, WireProtocol.ACTION_REPLY) == sequence;
+        }
+    }
+
     /**
      * Constructor for ElevatorSubsystem thread
-     * Does not need instantiation of anScheduler object, instead send data
-     * throw UDP packets
+     * Does not need instantiation of anScheduler object, instead sends messages
+     * through the transport chosen for this JVM
      */
     public ElevatorSubsystem() {
+        this(Transport.shared());
+    }
+
+    /**
+     * @param transport the transport connecting the elevator cars to the scheduler
+     */
+    public ElevatorSubsystem(Transport transport) {
         //Synchronized to enure thread safety in case two elevator cars were getting registered at the same time
         this.elevatorCars = Collections.synchronizedMap(new HashMap<>());
+        this.schedulerChannels = new ConcurrentHashMap<>();
+        this.transport = transport;
+        try {
+            this.schedulerAddress = transport.addressOf(Transport.Service.ELEVATOR);
+            this.faultAddress = transport.addressOf(Transport.Service.FAULT);
+            this.faultEndpoint = transport.open();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
      * registers a given elevatorCar to the ElevatorSubsystem
      * Throws an exception if an elevatorCar with the same ID is already registered
      * @param elevatorCar the elevator car to be registered
-     * 
+     *
      */
     public void registerElevatorCar(ElevatorCar elevatorCar) throws IllegalArgumentException {
         synchronized(elevatorCar) {
@@ -46,6 +187,57 @@ public class ElevatorSubsystem{
         }
     }
 
+    public boolean isIdleSubscriptionEnabled() {
+        return idleSubscriptionEnabled;
+    }
+
+    public void setIdleSubscriptionEnabled(boolean idleSubscriptionEnabled) {
+        this.idleSubscriptionEnabled = idleSubscriptionEnabled;
+    }
+
+    public boolean isMoveToEnabled() {
+        return moveToEnabled;
+    }
+
+    public void setMoveToEnabled(boolean moveToEnabled) {
+        this.moveToEnabled = moveToEnabled;
+    }
+
+    /**
+     * @return the flags telling the scheduler which actions the cars of this subsystem understand
+     */
+    private int capabilityFlags() {
+        return moveToEnabled ? MOVE_TO_FLAG : 0;
+    }
+
+    /**
+     * Subscribes an idle elevator car with the Scheduler and blocks until the Scheduler pushes
+     * the next action for the car, which happens as soon as a call the car can take is queued.
+     * The subscription is renewed periodically until an action is received.
+     *
+     * @param elevatorCarID the elevatorCarID for the elevator car
+     * @return the action pushed by the scheduler
+     */
+    public Action awaitAction(int elevatorCarID) {
+        int elevatorCarLocation = this.elevatorCars.get(elevatorCarID).getCurrentFloor();
+
+        try {
+            SchedulerChannel schedulerChannel = getSchedulerChannel(elevatorCarID);
+            while (true) {
+                schedulerChannel.send(elevatorCarID, elevatorCarLocation, SUBSCRIBE_FLAG | capabilityFlags());
+                Action action = schedulerChannel.receive(IDLE_SUBSCRIPTION_TIMEOUT);
+                if (action != null) {
+                    return action;
+                }
+                // Nothing to do yet, renew the subscription
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // return default action in case of any error not in catch
+        return Action.QUIT;
+    }
+
     /**
      * Sends a packet to the Scheduler requesting an action to be assigned to the
      * elevator car with the given ID
@@ -53,83 +245,100 @@ public class ElevatorSubsystem{
      * @return the action given by the scheduler
      */
 
-    //Synchronized method to be called by the elevator cars to get an action
-    public synchronized Action getAction(int elevatorCarID){
+    //Not synchronized, every car has its own channel so the cars of a subsystem can wait for their actions concurrently
+    public Action getAction(int elevatorCarID){
         int elevatorCarLocation = this.elevatorCars.get(elevatorCarID).getCurrentFloor();
         Action action = this.SendReceiveSchedulerPacket(elevatorCarID, elevatorCarLocation);
         return action;
     }
 
     /**
-     * creates the sending and receiving socket and packets, decodes them and send the needed data to the scheduler class then receive
-     * the needed data in a new packet to the same port
+     * sends the request of the elevator car to the scheduler through the car channel and waits for
+     * the action assigned by the scheduler
      *
      *  @param elevatorCarID the elevator car id
      *  @param currentFloor the current floor for the elevator car with the given id
      *
      */
     public Action SendReceiveSchedulerPacket(int elevatorCarID, int currentFloor) {
-
-        try {
-            sendReceiveSocket = new DatagramSocket();
-            sendReceiveSocket.setSoTimeout(5000);
-        } catch (SocketException se) {
-            se.printStackTrace();
-        }
-
-        byte[] sendData; // data to be sent
-        byte[] receiveData; // data to be received
-
         try {
-            ByteBuffer byteBuffer = ByteBuffer.allocate(Integer.BYTES * 2);
-            byteBuffer.putInt(elevatorCarID);
-            byteBuffer.putInt(currentFloor);
-            sendData = byteBuffer.array();
-
-            sendPacket = new DatagramPacket(sendData, sendData.length,
-                    InetAddress.getLocalHost(), 69);
-
-            sendReceiveSocket.send(sendPacket);
-
-            receiveData = new byte[1024];
-            receivePacket = new DatagramPacket(receiveData, receiveData.length);
+            SchedulerChannel schedulerChannel = getSchedulerChannel(elevatorCarID);
+            schedulerChannel.send(elevatorCarID, currentFloor, capabilityFlags());
 
             int attempts = 0;
-            boolean receivedResponse = false;
-            while (attempts++ < 3 && !receivedResponse) {
-                try {
-                    sendReceiveSocket.receive(receivePacket);
-                    receivedResponse = true;
-                } catch (SocketTimeoutException ste) {
-                    System.out.println("[ELEVATOR SUBSYSTEM] Timeout when attempting to receive next action from scheduler");
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    System.exit(1);
+            while (attempts++ < 3) {
+                Action action = schedulerChannel.receive(RESPONSE_TIMEOUT);
+                if (action != null) {
+                    return action;
                 }
+                Log.warn("[ELEVATOR SUBSYSTEM] Timeout when attempting to receive next action from scheduler");
             }
+            throw new RuntimeException("Failed to receive next action from scheduler after 3 attempts.");
 
-            if (!receivedResponse) {
-                throw new RuntimeException("Failed to receive next action from scheduler after 3 attempts.");
-            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // return default action in case of any error not in catch
+        return ElevatorSubsystem.Action.QUIT;
 
-            // get the data and Convert string back to enum
-            String receivedText = new String(receivePacket.getData(), 0, receivePacket.getLength());
-            ElevatorSubsystem.Action action = ElevatorSubsystem.Action.valueOf(receivedText.trim());
+    }
 
-            return action;
+    /**
+     * @param elevatorCarID the elevator car id
+     * @return the destination of the latest MOVE_TO action received by the car
+     */
+    public int getTargetFloor(int elevatorCarID) {
+        SchedulerChannel schedulerChannel = schedulerChannels.get(elevatorCarID);
+        return schedulerChannel == null ? WireProtocol.NO_FLOOR : schedulerChannel.targetFloor;
+    }
 
-        } catch (UnknownHostException e) {
-            e.printStackTrace();
+    /**
+     * Tell the scheduler that an elevator car travelling on a MOVE_TO action reached a floor, and pick up
+     * the new destination of the run if the scheduler changed it, for instance because a call was merged
+     * into the trip of the car
+     *
+     * @param elevatorCarID the elevator car id
+     * @param currentFloor the floor the car reached
+     * @param targetFloor the destination of the run so far
+     * @return the destination of the run from now on
+     */
+    public int reportArrival(int elevatorCarID, int currentFloor, int targetFloor) {
+        try {
+            SchedulerChannel schedulerChannel = getSchedulerChannel(elevatorCarID);
+            schedulerChannel.sendArrival(elevatorCarID, currentFloor);
+            return schedulerChannel.pollTargetFloor(targetFloor);
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            // Ensure the socket is closed to release resources
-            if (sendReceiveSocket != null && !sendReceiveSocket.isClosed()) {
-                sendReceiveSocket.close();
-            }
         }
-        // return default action in case of any error not in catch
-        return ElevatorSubsystem.Action.QUIT;
+        return targetFloor;
+    }
 
+    /**
+     * Send a fault message of an elevator car to the scheduler, such as "TEMP_DISABLE:3"
+     * @param faultMessage the fault message
+     */
+    public void sendFaultMessage(String faultMessage) throws IOException {
+        byte[] messageBytes = faultMessage.getBytes();
+        ByteBuffer message = transport.acquireBuffer();
+        message.put(messageBytes).flip();
+        faultEndpoint.send(message, faultAddress);
+    }
+
+    /**
+     * Get the channel of an elevator car, opening it on first use
+     */
+    private SchedulerChannel getSchedulerChannel(int elevatorCarID) throws IOException {
+        SchedulerChannel schedulerChannel = schedulerChannels.get(elevatorCarID);
+        if (schedulerChannel == null) {
+            // Opened outside of any lock, a channel losing the race is closed
+            SchedulerChannel newChannel = new SchedulerChannel();
+            schedulerChannel = schedulerChannels.putIfAbsent(elevatorCarID, newChannel);
+            if (schedulerChannel == null) {
+                schedulerChannel = newChannel;
+            } else {
+                newChannel.endpoint.close();
+            }
+        }
+        return schedulerChannel;
     }
-}
\ No newline at end of file
+}
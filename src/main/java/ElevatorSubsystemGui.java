@@ -1,73 +1,156 @@
 import javax.swing.*;
 import java.awt.*;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+/**
+ * Window showing the floor of every elevator car and the cars with their doors open.
+ *
+ * The handlers are called by the car threads. They only update one packed int per car (floor and
+ * flags) in an atomic array and mark the view dirty, so a car never waits for the window. A Swing timer
+ * repaints the building on the event dispatch thread at most MAX_FPS times per second, and only when
+ * something changed, by painting the whole grid in one custom component from a copy of the array.
+ */
 public class ElevatorSubsystemGui extends JFrame {
-    JButton[][] cells;
-    private int runningElevators;
-    private Date executionStart;
-    private int elevatorMoves;
+    public static final String FPS_PROPERTY = "elevator.guiFps";
+    private static final int MAX_FPS = Integer.getInteger(FPS_PROPERTY, 30);
+
+    // A car state is its floor shifted left by FLAG_BITS, or-ed with its flags
+    private static final int FLAG_BITS = 2;
+    private static final int DOORS_OPEN = 1;
+    private static final int OUT_OF_SERVICE = 2;
+
+    private static final Color SHAFT = Color.GRAY;
+    private static final Color CAR = Color.DARK_GRAY;
+    private static final Color OPEN = Color.WHITE;
+    private static final Color HEADER = Color.BLACK;
+
+    private final int numElevators;
+    private final int numFloors;
+    private final AtomicIntegerArray carStates;
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private final AtomicInteger runningElevators;
+    private final AtomicInteger elevatorMoves = new AtomicInteger();
+    private final Date executionStart;
+    private final Timer frameTimer;
+
+    /**
+     * Grid of the building: a header row with the floor of every car, then one row per floor from the
+     * top floor down and one column per car
+     */
+    private class BuildingPanel extends JComponent {
+        private final int[] snapshot = new int[numElevators];
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            for (int elevatorCarID = 0; elevatorCarID < numElevators; elevatorCarID++) {
+                snapshot[elevatorCarID] = carStates.get(elevatorCarID);
+            }
+
+            int width = getWidth();
+            int height = getHeight();
+            int rows = numFloors + 1;
+            boolean showText = height / rows >= 12 && width / numElevators >= 24;
+            FontMetrics metrics = g.getFontMetrics();
+
+            g.setColor(SHAFT);
+            g.fillRect(0, 0, width, height);
+            for (int elevatorCarID = 0; elevatorCarID < numElevators; elevatorCarID++) {
+                int state = snapshot[elevatorCarID];
+                int floor = state >>> FLAG_BITS;
+                int x = elevatorCarID * width / numElevators;
+                int cellWidth = (elevatorCarID + 1) * width / numElevators - x;
+
+                int headerHeight = height / rows;
+                g.setColor(HEADER);
+                g.fillRect(x, 0, cellWidth, headerHeight);
+                if (showText) {
+                    g.setColor(Color.RED);
+                    String text = (state & OUT_OF_SERVICE) != 0 ? "Out of service" : Integer.toString(floor);
+                    g.drawString(text, x + 2, (headerHeight + metrics.getAscent()) / 2);
+                }
+
+                if ((state & OUT_OF_SERVICE) != 0 || floor < 1 || floor > numFloors) {
+                    continue;
+                }
+                int row = numFloors - floor + 1;
+                int y = row * height / rows;
+                int cellHeight = (row + 1) * height / rows - y;
+                boolean open = (state & DOORS_OPEN) != 0;
+                g.setColor(open ? OPEN : CAR);
+                g.fillRect(x + 1, y + 1, Math.max(cellWidth - 2, 1), Math.max(cellHeight - 2, 1));
+                if (open && showText) {
+                    g.setColor(Color.BLACK);
+                    g.drawString("Open", x + 2, y + (cellHeight + metrics.getAscent()) / 2);
+                }
+            }
+        }
+    }
 
     public ElevatorSubsystemGui(int numElevators, int numFloors) {
         super("Elevator Subsystem");
-        this.setLayout(new GridLayout(numFloors + 1, numElevators));
+        this.numElevators = numElevators;
+        this.numFloors = numFloors;
+        carStates = new AtomicIntegerArray(numElevators);
+        for (int elevatorCarID = 0; elevatorCarID < numElevators; elevatorCarID++) {
+            carStates.set(elevatorCarID, ElevatorCar.getStartingFloor() << FLAG_BITS);
+        }
 
-        cells = new JButton[numFloors + 1][numElevators];
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         this.setSize(500,500);
-        for (int floor = 0; floor < numFloors + 1; floor++){
-            for (int elevatorCarID = 0; elevatorCarID < numElevators; elevatorCarID++){
-                JButton button = new JButton();
-                if (floor == 0) {
-                    button.setForeground(Color.RED);
-                    button.setText("1");
-                    button.setBackground(Color.BLACK);
-                } else {
-                    button.setBackground(Color.GRAY);
-                }
-                this.cells[floor][elevatorCarID] = button;
-                this.add(button);
-            }
-        }
+        this.add(new BuildingPanel());
 
-        runningElevators = numElevators;
+        runningElevators = new AtomicInteger(numElevators);
         executionStart = new Date();
 
+        frameTimer = new Timer(1000 / Math.max(MAX_FPS, 1), e -> {
+            if (dirty.getAndSet(false)) {
+                getContentPane().repaint();
+            }
+        });
+        frameTimer.start();
+
         this.setVisible(true);
     }
 
     public void handleElevatorPositionUpdate(int elevatorCarID, int currentFloor) {
-        cells[0][elevatorCarID].setText(Integer.toString(currentFloor));
-        elevatorMoves++;
+        setCarState(elevatorCarID, currentFloor << FLAG_BITS);
+        elevatorMoves.incrementAndGet();
     }
 
     public void handleElevatorDoorOpen(int elevatorCarID, int currentFloor) {
-        for (int i = 1; i < cells.length; i++) {
-            if (cells.length - i == currentFloor) {
-                cells[i][elevatorCarID].setText("Open");
-                cells[i][elevatorCarID].setBackground(Color.WHITE);
-                cells[i][elevatorCarID].setForeground(Color.BLACK);
-            }
-        }
+        setCarState(elevatorCarID, currentFloor << FLAG_BITS | DOORS_OPEN);
     }
 
     public void handleElevatorDoorClose(int elevatorCarID, int currentFloor) {
-        for (int i = 1; i < cells.length; i++) {
-            if (cells.length - i == currentFloor) {
-                cells[i][elevatorCarID].setText("");
-                cells[i][elevatorCarID].setBackground(Color.GRAY);
-            }
-        }
+        setCarState(elevatorCarID, currentFloor << FLAG_BITS);
     }
 
     public void handleElevatorRemoval(int elevatorCarID) {
-        cells[0][elevatorCarID].setText("Out of service");
-        runningElevators -= 1;
-        if (runningElevators == 0) {
+        setCarState(elevatorCarID, OUT_OF_SERVICE);
+        if (runningElevators.decrementAndGet() == 0) {
             Date now = new Date();
             double executionTime = (now.getTime() - executionStart.getTime()) / 1000;
-            JOptionPane.showMessageDialog(this, "All elevators are out of service. GUI will now be closed. Total execution time = " + executionTime + " seconds. Total elevator moves = " + elevatorMoves);
-            this.dispose();
+            SwingUtilities.invokeLater(() -> {
+                frameTimer.stop();
+                JOptionPane.showMessageDialog(this, "All elevators are out of service. GUI will now be closed. Total execution time = " + executionTime + " seconds. Total elevator moves = " + elevatorMoves.get());
+                this.dispose();
+            });
         }
     }
+
+    /**
+     * Replace the floor and door state of a car, a car out of service stays out of service
+     * @param elevatorCarID the elevator car id
+     * @param state the new state of the car
+     */
+    private void setCarState(int elevatorCarID, int state) {
+        int previous;
+        do {
+            previous = carStates.get(elevatorCarID);
+        } while (!carStates.compareAndSet(elevatorCarID, previous, state | (previous & OUT_OF_SERVICE)));
+        dirty.set(true);
+    }
 }
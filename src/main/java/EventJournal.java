@@ -0,0 +1,372 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only binary journal of the inputs and decisions of the Scheduler, for {@link JournalReplay}.
+ *
+ * Every record starts with the same header:
+ * <pre>
+ *   byte record type | long time (scheduler clock, millis)
+ * </pre>
+ * followed by a body that depends on the record type. Inputs:
+ * <pre>
+ *   HALL_CALL          long call timestamp | int starting floor | int target floor | byte up
+ *   ACTION_REQUEST     int elevator car id | int current floor | byte multi floor
+ *   ARRIVAL            int elevator car id | int current floor
+ *   FAULT              int elevator car id
+ *   REQUESTS_COMPLETE  (no body)
+ * </pre>
+ * and decisions:
+ * <pre>
+ *   ACTION             int elevator car id | byte action ordinal | int target floor
+ *   ASSIGNMENT         int elevator car id | int starting floor | int target floor | int merged calls
+ *   MERGE              int elevator car id | int starting floor | int target floor
+ * </pre>
+ * The journal is a directory of segment files of a fixed size, each memory mapped while it is written,
+ * so appending a record is a handful of puts into the mapping and neither allocates nor makes a system
+ * call. The unused end of a segment is left zeroed, a zero record type marks the end of the records of
+ * a segment. Records are appended under a lock, so the journal may be written from any thread.
+ */
+public class EventJournal implements Closeable {
+    public static final String DIRECTORY_PROPERTY = "elevator.journal";
+
+    public static final byte HALL_CALL = 1;
+    public static final byte ACTION_REQUEST = 2;
+    public static final byte ARRIVAL = 3;
+    public static final byte FAULT = 4;
+    public static final byte REQUESTS_COMPLETE = 5;
+    public static final byte ACTION = 6;
+    public static final byte ASSIGNMENT = 7;
+    public static final byte MERGE = 8;
+
+    private static final long SEGMENT_SIZE = 64L << 20;
+    private static final int MAX_RECORD_SIZE = Byte.BYTES + Long.BYTES * 2 + Integer.BYTES * 3 + Byte.BYTES;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    //Cached since values() copies the array on every call
+    private static final ElevatorSubsystem.Action[] ACTIONS = ElevatorSubsystem.Action.values();
+
+    private final Path directory;
+    private final long segmentSize;
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+    private boolean closed;
+
+    /**
+     * Create a journal in an empty or missing directory
+     *
+     * @param directory the directory of the segment files
+     * @throws IllegalArgumentException if the directory already holds a journal
+     */
+    public EventJournal(Path directory) throws IOException {
+        this(directory, SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory the directory of the segment files
+     * @param segmentSize the size of a segment file in bytes
+     */
+    EventJournal(Path directory, long segmentSize) throws IOException {
+        if (!segments(directory).isEmpty()) {
+            throw new IllegalArgumentException("The directory " + directory + " already holds a journal");
+        }
+        this.directory = directory;
+        this.segmentSize = Math.max(segmentSize, MAX_RECORD_SIZE + 1);
+        Files.createDirectories(directory);
+        nextSegment();
+    }
+
+    public synchronized void hallCall(long time, long callTimestamp, int startingFloor, int targetFloor, boolean up) {
+        if (begin(HALL_CALL, time)) {
+            segment.putLong(callTimestamp);
+            segment.putInt(startingFloor);
+            segment.putInt(targetFloor);
+            segment.put((byte) (up ? 1 : 0));
+        }
+    }
+
+    public synchronized void actionRequest(long time, int elevatorId, int currentFloor, boolean multiFloor) {
+        if (begin(ACTION_REQUEST, time)) {
+            segment.putInt(elevatorId);
+            segment.putInt(currentFloor);
+            segment.put((byte) (multiFloor ? 1 : 0));
+        }
+    }
+
+    public synchronized void arrival(long time, int elevatorId, int currentFloor) {
+        if (begin(ARRIVAL, time)) {
+            segment.putInt(elevatorId);
+            segment.putInt(currentFloor);
+        }
+    }
+
+    public synchronized void fault(long time, int elevatorId) {
+        if (begin(FAULT, time)) {
+            segment.putInt(elevatorId);
+        }
+    }
+
+    public synchronized void requestsComplete(long time) {
+        begin(REQUESTS_COMPLETE, time);
+    }
+
+    public synchronized void action(long time, int elevatorId, ElevatorSubsystem.Action action, int targetFloor) {
+        if (begin(ACTION, time)) {
+            segment.putInt(elevatorId);
+            segment.put((byte) action.ordinal());
+            segment.putInt(targetFloor);
+        }
+    }
+
+    public synchronized void assignment(long time, int elevatorId, int startingFloor, int targetFloor, int mergedCalls) {
+        if (begin(ASSIGNMENT, time)) {
+            segment.putInt(elevatorId);
+            segment.putInt(startingFloor);
+            segment.putInt(targetFloor);
+            segment.putInt(mergedCalls);
+        }
+    }
+
+    public synchronized void merge(long time, int elevatorId, int startingFloor, int targetFloor) {
+        if (begin(MERGE, time)) {
+            segment.putInt(elevatorId);
+            segment.putInt(startingFloor);
+            segment.putInt(targetFloor);
+        }
+    }
+
+    /**
+     * Write the header of a record, moving to a new segment if the record may not fit in the current one
+     * @return false if the journal is closed and nothing must be written
+     */
+    private boolean begin(byte type, long time) {
+        if (closed) {
+            return false;
+        }
+        if (segment.remaining() < MAX_RECORD_SIZE) {
+            try {
+                nextSegment();
+            } catch (IOException e) {
+                Log.error("[JOURNAL] Cannot create a new segment, journaling stopped: %s", e.toString());
+                closed = true;
+                return false;
+            }
+        }
+        segment.put(type);
+        segment.putLong(time);
+        return true;
+    }
+
+    private void nextSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        segmentIndex++;
+        Path path = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid once the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    /**
+     * Write the records to disk and stop journaling
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            segment.force();
+        }
+    }
+
+    /**
+     * @param directory a journal directory
+     * @return the segment files of the journal in order, empty if there is no journal
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Cursor over the records of a journal: {@link #next()} moves to the next record, whose fields are
+     * then available through the getters that apply to its type until the following call to next().
+     *
+     * A reader is not thread safe.
+     */
+    public static class Reader implements Closeable {
+        private final List<Path> segments;
+        private int segmentIndex = -1;
+        private MappedByteBuffer segment;
+
+        //Current record
+        private byte type;
+        private long time;
+        private long callTimestamp;
+        private int elevatorId;
+        private int floor;
+        private int startingFloor;
+        private int targetFloor;
+        private int mergedCalls;
+        private boolean flag;
+        private ElevatorSubsystem.Action action;
+
+        /**
+         * @param directory the journal directory
+         * @throws IllegalArgumentException if the directory holds no journal
+         */
+        public Reader(Path directory) throws IOException {
+            segments = segments(directory);
+            if (segments.isEmpty()) {
+                throw new IllegalArgumentException("No journal in " + directory);
+            }
+        }
+
+        /**
+         * Move to the next record
+         * @return true if there is a record, false at the end of the journal
+         */
+        public boolean next() throws IOException {
+            while (segment == null || !segment.hasRemaining() || segment.get(segment.position()) == 0) {
+                if (++segmentIndex >= segments.size()) {
+                    return false;
+                }
+                try (FileChannel channel = FileChannel.open(segments.get(segmentIndex), StandardOpenOption.READ)) {
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+
+            type = segment.get();
+            time = segment.getLong();
+            switch (type) {
+                case HALL_CALL:
+                    callTimestamp = segment.getLong();
+                    startingFloor = segment.getInt();
+                    targetFloor = segment.getInt();
+                    flag = segment.get() != 0;
+                    break;
+                case ACTION_REQUEST:
+                    elevatorId = segment.getInt();
+                    floor = segment.getInt();
+                    flag = segment.get() != 0;
+                    break;
+                case ARRIVAL:
+                    elevatorId = segment.getInt();
+                    floor = segment.getInt();
+                    break;
+                case FAULT:
+                    elevatorId = segment.getInt();
+                    break;
+                case REQUESTS_COMPLETE:
+                    break;
+                case ACTION:
+                    elevatorId = segment.getInt();
+                    int ordinal = segment.get();
+                    if (ordinal < 0 || ordinal >= ACTIONS.length) {
+                        throw new IllegalArgumentException("Unknown action ordinal " + ordinal + " in " + segments.get(segmentIndex));
+                    }
+                    action = ACTIONS[ordinal];
+                    targetFloor = segment.getInt();
+                    break;
+                case ASSIGNMENT:
+                    elevatorId = segment.getInt();
+                    startingFloor = segment.getInt();
+                    targetFloor = segment.getInt();
+                    mergedCalls = segment.getInt();
+                    break;
+                case MERGE:
+                    elevatorId = segment.getInt();
+                    startingFloor = segment.getInt();
+                    targetFloor = segment.getInt();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown record type " + type + " in " + segments.get(segmentIndex));
+            }
+            return true;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return the timestamp of a HALL_CALL in milliseconds since the epoch
+         */
+        public long getCallTimestamp() {
+            return callTimestamp;
+        }
+
+        public int getElevatorId() {
+            return elevatorId;
+        }
+
+        /**
+         * @return the current floor of the car of an ACTION_REQUEST or ARRIVAL
+         */
+        public int getFloor() {
+            return floor;
+        }
+
+        public int getStartingFloor() {
+            return startingFloor;
+        }
+
+        public int getTargetFloor() {
+            return targetFloor;
+        }
+
+        /**
+         * @return true if a HALL_CALL goes up
+         */
+        public boolean isUp() {
+            return flag;
+        }
+
+        /**
+         * @return true if the car of an ACTION_REQUEST understands MOVE_TO actions
+         */
+        public boolean isMultiFloor() {
+            return flag;
+        }
+
+        public ElevatorSubsystem.Action getAction() {
+            return action;
+        }
+
+        /**
+         * @return the number of pending calls merged into the trip of an ASSIGNMENT
+         */
+        public int getMergedCalls() {
+            return mergedCalls;
+        }
+
+        @Override
+        public void close() {
+            segment = null;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * Dispatch policy that hands the oldest pending elevator call to whichever car asks first,
+ * regardless of where that car is in the building.
+ */
+public class FifoDispatchPolicy implements DispatchPolicy {
+
+    @Override
+    public ElevatorCall selectRequest(Scheduler context, int elevatorId) {
+        return context.getRequestsQueue().peek();
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of the floors an elevator car has to stop at during a trip, ordered in the direction of travel:
+ * ascending for a trip going up, descending for a trip going down.
+ *
+ * Floors are bits of a long array, one bit per floor, so a building of up to 64 floors needs a single
+ * long. Adding, removing and finding the next stop are a few bit operations per 64 floors and nothing
+ * is boxed. Floors go from 0 to {@link #MAX_FLOOR}, so a set never takes more than 512 bytes.
+ */
+public class FloorStopSet {
+    public static final int NONE = -1;
+    public static final int MAX_FLOOR = 4095; // highest floor of any building served
+
+    private final boolean ascending;
+    private long[] words = new long[1];
+    private int size;
+
+    /**
+     * @param ascending true if the stops are visited from the lowest floor up, false from the highest floor down
+     */
+    public FloorStopSet(boolean ascending) {
+        this.ascending = ascending;
+    }
+
+    /**
+     * @return true if the stops are visited from the lowest floor up
+     */
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Add a stop
+     * @param floor the floor to stop at
+     * @return false if the car already stops at the floor
+     * @throws IllegalArgumentException if the floor is negative or above MAX_FLOOR
+     */
+    public boolean add(int floor) {
+        if (floor < 0 || floor > MAX_FLOOR) {
+            throw new IllegalArgumentException("Invalid floor " + floor);
+        }
+        int word = floor >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        long bit = 1L << floor;
+        if ((words[word] & bit) != 0) {
+            return false;
+        }
+        words[word] |= bit;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove a stop
+     * @param floor the floor not to stop at anymore
+     * @return false if the car did not stop at the floor
+     */
+    public boolean remove(int floor) {
+        if (!contains(floor)) {
+            return false;
+        }
+        words[floor >>> 6] &= ~(1L << floor);
+        size--;
+        return true;
+    }
+
+    public boolean contains(int floor) {
+        int word = floor >>> 6;
+        return floor >= 0 && word < words.length && (words[word] & (1L << floor)) != 0;
+    }
+
+    /**
+     * @return the next stop in the direction of travel, NONE if there are no stops
+     */
+    public int first() {
+        return ascending ? lowest() : highest();
+    }
+
+    /**
+     * Remove the next stop in the direction of travel
+     * @return the removed stop, NONE if there are no stops
+     */
+    public int pollFirst() {
+        int floor = first();
+        if (floor != NONE) {
+            remove(floor);
+        }
+        return floor;
+    }
+
+    /**
+     * @return the lowest stop, NONE if there are no stops
+     */
+    public int lowest() {
+        for (int word = 0; word < words.length; word++) {
+            if (words[word] != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(words[word]);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return the highest stop, NONE if there are no stops
+     */
+    public int highest() {
+        for (int word = words.length - 1; word >= 0; word--) {
+            if (words[word] != 0) {
+                return (word << 6) + 63 - Long.numberOfLeadingZeros(words[word]);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @param index the position of the stop in the direction of travel
+     * @return the stop at the given position
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " stops");
+        }
+        int rank = ascending ? index : size - 1 - index;
+        for (int word = 0; ; word++) {
+            int count = Long.bitCount(words[word]);
+            if (rank < count) {
+                long bits = words[word];
+                for (int i = 0; i < rank; i++) {
+                    bits &= bits - 1; // clear the lowest set bit
+                }
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            rank -= count;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the stops in the direction of travel
+     */
+    public int[] toArray() {
+        int[] stops = new int[size];
+        int i = ascending ? 0 : size - 1;
+        int step = ascending ? 1 : -1;
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                stops[i] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                i += step;
+                bits &= bits - 1;
+            }
+        }
+        return stops;
+    }
+
+    /**
+     * View of the stops as a list in the direction of travel. Adding a floor through the view ignores the
+     * requested position, the floor takes its place in the direction of travel.
+     *
+     * @return a live view of this set
+     */
+    public List<Integer> asList() {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return FloorStopSet.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && FloorStopSet.this.contains((Integer) o);
+            }
+
+            @Override
+            public void add(int index, Integer floor) {
+                FloorStopSet.this.add(floor);
+            }
+
+            @Override
+            public Integer remove(int index) {
+                int floor = FloorStopSet.this.get(index);
+                FloorStopSet.this.remove(floor);
+                return floor;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -1,12 +1,8 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.net.*;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.Map;
 /**
@@ -22,19 +18,47 @@ import java.util.Map;
  * @version 3.00
  */
 public class FloorSubsystem implements Runnable {
-    private DatagramSocket sendReceiveSocket;
+    private final Transport transport; // carries the calls to the scheduler and the display updates back
+    private Transport.Endpoint sendEndpoint;
+    private SocketAddress schedulerAddress; // address of the scheduler floor endpoint
     private String inputFilepath;
+    private ElevatorCallSource callSource; // replayed instead of the input file when set
     private Map<Integer, Integer> elevatorCarDisplay;
-    private DatagramSocket ReceiveSocket;
-    private DatagramPacket receivePacket;
+    private Transport.Endpoint displayEndpoint;
+    private int sequence; // sequence number of the last elevator call sent
+    private long startOfToday; // epoch millis of midnight, added to the time of day of the calls
 
     public FloorSubsystem(String inputFilepath) {
         this.inputFilepath = inputFilepath;
+        this.transport = Transport.shared();
+        init();
+    }
+
+    /**
+     * Construct a floor subsystem replaying calls that do not come from a file, such as generated traffic
+     * @param callSource the calls to send to the scheduler, ordered by time of day
+     */
+    public FloorSubsystem(ElevatorCallSource callSource) {
+        this(callSource, Transport.shared());
+    }
+
+    /**
+     * @param callSource the calls to send to the scheduler, ordered by time of day
+     * @param transport the transport connecting the floor subsystem to the scheduler
+     */
+    public FloorSubsystem(ElevatorCallSource callSource, Transport transport) {
+        this.callSource = callSource;
+        this.transport = transport;
+        init();
+    }
+
+    private void init() {
         elevatorCarDisplay = new HashMap<>();
+        this.startOfToday = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
         try {
-            this.sendReceiveSocket = new DatagramSocket();
-
-        } catch (SocketException e) {
+            this.sendEndpoint = transport.open();
+            this.schedulerAddress = transport.addressOf(Transport.Service.FLOOR);
+        } catch (IOException e) {
             e.printStackTrace();
         }
         listenToSchedulerForDisplay();
@@ -42,84 +66,53 @@ public class FloorSubsystem implements Runnable {
 
     @Override
     public void run() {
-        BufferedReader reader;
-        try {
-            reader = new BufferedReader(new FileReader(inputFilepath));
-            String line = reader.readLine();
-            Date firstTimestamp = null;
-            Date executionStart = new Date();
-
-            while ((line = reader.readLine()) != null) {
-                String[] elevatorCallInfo = ElevatorCall.fromString(line);
-//                System.out.println("[FLOOR SUBSYSTEM] Processing new elevator call: " + elevatorCall);
-                SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss:SS");
-                Date timestamp;
-                try {
-                   timestamp = dateFormat.parse(elevatorCallInfo[0]);
-                } catch (ParseException e) {
-                    throw new RuntimeException(e);
-                }
-                if (firstTimestamp == null) {
-                    firstTimestamp = timestamp;
+        // The calls are streamed, from a memory mapped file by default, each call is sent once its time has come
+        try (ElevatorCallSource trace = callSource != null ? callSource : new TraceReader(inputFilepath)) {
+            long firstTimeOfDay = -1;
+            long executionStart = System.currentTimeMillis();
+
+            while (trace.next()) {
+                long timeOfDay = trace.getTimeOfDay();
+                if (firstTimeOfDay < 0) {
+                    firstTimeOfDay = timeOfDay;
                 } else {
 
-                    long expectedTimeDifference = timestamp.getTime() - firstTimestamp.getTime();
-                    long actualTimeDifference = (new Date()).getTime() - executionStart.getTime();
+                    long expectedTimeDifference = timeOfDay - firstTimeOfDay;
+                    long actualTimeDifference = System.currentTimeMillis() - executionStart;
                     if (expectedTimeDifference > actualTimeDifference) {
                         // Use the calculated difference to simulate time between requests
                         Thread.sleep(expectedTimeDifference - actualTimeDifference);
                     }
                 }
-                sendElevatorCall(elevatorCallInfo);
+                if (!ElevatorCall.isValid(trace.getStartingFloor(), trace.getTargetFloor(), trace.isUp())) {
+                    Log.warn("[FLOOR SUBSYSTEM] Skipped invalid elevator call from floor %d to floor %d", trace.getStartingFloor(), trace.getTargetFloor());
+                    continue;
+                }
+                sendElevatorCall(timeOfDay, trace.getStartingFloor(), trace.getTargetFloor(), trace.isUp());
             }
         } catch (IOException | InterruptedException e) {
             e.printStackTrace();
         } finally {
-            if (sendReceiveSocket != null && !sendReceiveSocket.isClosed()) {
-                sendReceiveSocket.close();
+            if (sendEndpoint != null) {
+                sendEndpoint.close();
             }
         }
     }
 
     /**
-     * creates the message based on elevator calls and sends the packet to port 23
-     *  @param elevatorCallInfo ElevatorCall from text file with requests
+     * creates the message based on elevator calls and sends it to the scheduler floor endpoint
+     *  @param timeOfDay the time of day of the call in milliseconds since midnight
+     *  @param startingFloor the floor the call was made on
+     *  @param targetFloor the floor requested
+     *  @param up true if the call goes up, false if it goes down
      */
-    private void sendElevatorCall(String[] elevatorCallInfo) {
+    private void sendElevatorCall(long timeOfDay, int startingFloor, int targetFloor, boolean up) {
         try {
-            ByteBuffer byteBuffer = ByteBuffer.allocate(1024);
-
-            SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss:SS");
-            Date timestamp;
-            try {
-                timestamp = sdf.parse(elevatorCallInfo[0]);
-
-            } catch (ParseException e) {
-                throw new RuntimeException(e);
-            }
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTime(timestamp);
-            // Extract hours, minutes, and seconds from the timestamp
-            int hours = calendar.get(Calendar.HOUR_OF_DAY);
-            int minutes = calendar.get(Calendar.MINUTE);
-            int seconds = calendar.get(Calendar.SECOND);
-
-            //timestamp parts
-            byteBuffer.putInt(hours);
-            byteBuffer.putInt(minutes);
-            byteBuffer.putInt(seconds);
-            byteBuffer.putInt(Integer.parseInt(elevatorCallInfo[1])); //starting floor
-            byteBuffer.putInt(Integer.parseInt(elevatorCallInfo[2])); // Target floor
-            byteBuffer.putInt(elevatorCallInfo[3].equals("up") ? 1 : 2); //Direction
-
-            byte[] sendData = byteBuffer.array();
-            DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length, InetAddress.getLocalHost(), 23);
-            sendReceiveSocket.send(sendPacket);
-        } catch (UnknownHostException e) {
-            System.err.println("Unknown host exception: " + e.getMessage());
-            e.printStackTrace();
+            ByteBuffer message = transport.acquireBuffer();
+            WireProtocol.encodeHallCall(message, ++sequence, startOfToday + timeOfDay, startingFloor, targetFloor, up);
+            sendEndpoint.send(message, schedulerAddress);
         } catch (IOException e) {
-            System.err.println("IO exception: " + e.getMessage());
+            Log.error("IO exception: %s", e.getMessage());
             e.printStackTrace();
         }
     }
@@ -130,12 +123,12 @@ public class FloorSubsystem implements Runnable {
      * @param currentFloor current floor the elevator is on
      */
     public void updateElevatorCarDisplay(int elevatorId, int currentFloor) {
-        System.out.println(String.format("[FLOORSubSystem] Updated the floors display to reflect elevator car %s at floor %s", elevatorId, currentFloor));
+        Log.debug("[FLOORSubSystem] Updated the floors display to reflect elevator car %s at floor %s", elevatorId, currentFloor);
         elevatorCarDisplay.put(elevatorId, currentFloor);
     }
 
     public void listenToSchedulerForDisplay() {
-        Thread SchedulerListenerThread = new Thread(new Runnable() {
+        Thread SchedulerListenerThread = Threads.newThread("floor-display-listener", new Runnable() {
             @Override
             public void run() {
                 ReceiveDisplayInfo();
@@ -149,34 +142,33 @@ public class FloorSubsystem implements Runnable {
 
     public void ReceiveDisplayInfo(){
         try {
-            ReceiveSocket = new DatagramSocket(80);
-            ReceiveSocket.setSoTimeout(10000);
-            byte[] receiveData = new byte[Integer.BYTES * 2];
+            // Subscribed rather than bound, so a display listener per floor can receive the same updates
+            displayEndpoint = transport.subscribe(Transport.Service.DISPLAY);
 
-            while (true) {
+            ByteBuffer byteBuffer;
+            // Stop listening once the scheduler sent nothing for 10 seconds
+            while ((byteBuffer = displayEndpoint.receive(10000)) != null) {
                 try {
-
-                    receivePacket = new DatagramPacket(receiveData, receiveData.length);
-                    ReceiveSocket.receive(receivePacket);
-                    ByteBuffer byteBuffer = ByteBuffer.wrap(receivePacket.getData());
+                    if (!WireProtocol.isMessage(byteBuffer, WireProtocol.DISPLAY_UPDATE)) {
+                        continue;
+                    }
+                    WireProtocol.readHeader(byteBuffer, WireProtocol.DISPLAY_UPDATE);
 
                     int elevatorId = byteBuffer.getInt();
                     int currentFloor = byteBuffer.getInt();
 
                     // commented the displaying part for this iteration
                     // updateElevatorCarDisplay(elevatorId, currentFloor);
-                } catch (SocketTimeoutException e) {
-                    break;
+                } finally {
+                    transport.releaseBuffer(byteBuffer);
                 }
             }
-        } catch (SocketException e) {
-            e.printStackTrace();
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
-            // Ensure the socket is closed to release resources
-            if (ReceiveSocket != null && !ReceiveSocket.isClosed()) {
-                ReceiveSocket.close();
+            // Ensure the endpoint is closed to release resources
+            if (displayEndpoint != null) {
+                displayEndpoint.close();
             }
         }
     }
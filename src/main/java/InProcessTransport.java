@@ -0,0 +1,240 @@
+import java.io.IOException;
+import java.net.BindException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transport for subsystems running in the same JVM: a message is handed to the receiving endpoint as
+ * the very buffer the sender wrote it into, through a lock-free queue, so it is never copied and never
+ * goes through a socket or the network stack of the kernel.
+ *
+ * Every endpoint has an inbox queue and at most one thread receiving from it, which parks while the
+ * inbox is empty and is unparked by the sender of the next message. Addresses only exist in the
+ * transport that created them.
+ *
+ * A message sent to a published service is handed to every subscriber: the last one gets the buffer of
+ * the sender and each of the others a copy in a buffer of the pool.
+ */
+public class InProcessTransport extends Transport {
+    private static final int BUFFER_SIZE = 256;
+
+    private final Map<SocketAddress, InProcessEndpoint> endpoints = new ConcurrentHashMap<>();
+    private final Map<Service, InProcessAddress> serviceAddresses = new ConcurrentHashMap<>();
+    private final Map<Service, List<InProcessEndpoint>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger nextAddress = new AtomicInteger();
+
+    /**
+     * Address of an endpoint in the transport, either the address of a service or of an opened endpoint
+     */
+    static final class InProcessAddress extends SocketAddress {
+        private final Service service;
+        private final int id;
+
+        InProcessAddress(Service service, int id) {
+            this.service = service;
+            this.id = id;
+        }
+
+        @Override
+        public String toString() {
+            return service != null ? "inprocess:" + service : "inprocess:" + id;
+        }
+    }
+
+    /**
+     * Message waiting in an inbox, with where it comes from
+     */
+    private static final class Delivery {
+        private final ByteBuffer message;
+        private final SocketAddress sender;
+        private final Service service;
+
+        Delivery(ByteBuffer message, SocketAddress sender, Service service) {
+            this.message = message;
+            this.sender = sender;
+            this.service = service;
+        }
+    }
+
+    private class InProcessEndpoint implements Endpoint {
+        private final SocketAddress address;
+        private final InProcessAddress[] serviceAddresses;
+        private final Queue<Delivery> inbox = new ConcurrentLinkedQueue<>();
+        private volatile Thread receiver; // thread parked on the empty inbox
+        private volatile boolean closed;
+        private SocketAddress sender;
+        private Service service;
+
+        InProcessEndpoint(SocketAddress address, InProcessAddress[] serviceAddresses) {
+            this.address = address;
+            this.serviceAddresses = serviceAddresses;
+        }
+
+        @Override
+        public SocketAddress getAddress() {
+            return address;
+        }
+
+        @Override
+        public void send(ByteBuffer message, SocketAddress target) throws IOException {
+            Service targetService = ((InProcessAddress) target).service;
+            if (targetService != null && targetService.isPublished()) {
+                publish(message, targetService);
+                return;
+            }
+            InProcessEndpoint destination = endpoints.get(target);
+            if (destination == null || destination.closed) {
+                releaseBuffer(message);
+                return;
+            }
+            destination.deliver(new Delivery(message, address, targetService));
+        }
+
+        private void publish(ByteBuffer message, Service targetService) {
+            List<InProcessEndpoint> destinations = subscribersOf(targetService);
+            if (destinations.isEmpty()) {
+                releaseBuffer(message);
+                return;
+            }
+            int last = destinations.size() - 1;
+            for (int i = 0; i < last; i++) {
+                if (!destinations.get(i).closed) {
+                    ByteBuffer copy = acquireBuffer();
+                    copy.put(message.duplicate()).flip();
+                    destinations.get(i).deliver(new Delivery(copy, address, targetService));
+                }
+            }
+            if (destinations.get(last).closed) {
+                releaseBuffer(message);
+                return;
+            }
+            destinations.get(last).deliver(new Delivery(message, address, targetService));
+        }
+
+        private void deliver(Delivery delivery) {
+            inbox.offer(delivery);
+            Thread waiting = receiver;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+
+        @Override
+        public ByteBuffer receive(long timeout) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(timeout, 0));
+            while (true) {
+                Delivery delivery = inbox.poll();
+                if (delivery != null) {
+                    sender = delivery.sender;
+                    service = delivery.service;
+                    return delivery.message;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || closed) {
+                    return null;
+                }
+                // Published before the inbox is checked again, so a sender either sees the receiver or its message is seen
+                receiver = Thread.currentThread();
+                if (inbox.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                receiver = null;
+            }
+        }
+
+        @Override
+        public SocketAddress getSender() {
+            return sender;
+        }
+
+        @Override
+        public Service getService() {
+            return service;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            endpoints.remove(address, this);
+            for (InProcessAddress serviceAddress : serviceAddresses) {
+                endpoints.remove(serviceAddress, this);
+                subscribersOf(serviceAddress.service).remove(this);
+            }
+            Thread waiting = receiver;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+            Delivery delivery;
+            while ((delivery = inbox.poll()) != null) {
+                releaseBuffer(delivery.message);
+            }
+        }
+    }
+
+    @Override
+    public Endpoint bind(Service... services) throws IOException {
+        if (services.length == 0) {
+            throw new IllegalArgumentException("No service to bind");
+        }
+        InProcessAddress[] addresses = new InProcessAddress[services.length];
+        for (int i = 0; i < services.length; i++) {
+            if (services[i].isPublished()) {
+                throw new IllegalArgumentException(services[i] + " is published, subscribe to it instead");
+            }
+            addresses[i] = addressOf(services[i]);
+        }
+        InProcessEndpoint endpoint = new InProcessEndpoint(addresses[0], addresses);
+        for (int i = 0; i < addresses.length; i++) {
+            if (endpoints.putIfAbsent(addresses[i], endpoint) != null) {
+                for (int j = 0; j < i; j++) {
+                    endpoints.remove(addresses[j], endpoint);
+                }
+                throw new BindException(services[i] + " is already bound");
+            }
+        }
+        return endpoint;
+    }
+
+    @Override
+    public Endpoint subscribe(Service service) {
+        if (!service.isPublished()) {
+            throw new IllegalArgumentException(service + " is not published, bind it instead");
+        }
+        InProcessAddress address = new InProcessAddress(null, nextAddress.incrementAndGet());
+        InProcessEndpoint endpoint = new InProcessEndpoint(address, new InProcessAddress[]{addressOf(service)});
+        endpoints.put(address, endpoint);
+        subscribersOf(service).add(endpoint);
+        return endpoint;
+    }
+
+    @Override
+    public Endpoint open() {
+        InProcessAddress address = new InProcessAddress(null, nextAddress.incrementAndGet());
+        InProcessEndpoint endpoint = new InProcessEndpoint(address, new InProcessAddress[0]);
+        endpoints.put(address, endpoint);
+        return endpoint;
+    }
+
+    @Override
+    public InProcessAddress addressOf(Service service) {
+        return serviceAddresses.computeIfAbsent(service, s -> new InProcessAddress(s, 0));
+    }
+
+    private List<InProcessEndpoint> subscribersOf(Service service) {
+        return subscribers.computeIfAbsent(service, s -> new CopyOnWriteArrayList<>());
+    }
+
+    @Override
+    protected ByteBuffer allocateBuffer() {
+        return ByteBuffer.allocate(BUFFER_SIZE);
+    }
+}
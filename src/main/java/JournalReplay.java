@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Feeds the inputs recorded in an {@link EventJournal} back through a Scheduler, on one thread and on
+ * the recorded clock, and compares the actions it decides with the recorded ones.
+ *
+ * Hall calls, action requests, arrivals, faults and the end of the requests are replayed in journal
+ * order, so replaying a journal twice always gives the same decisions and the same metrics. The car
+ * positions are the recorded ones: with the dispatch policy of the recording the replay decides exactly
+ * what was decided, with another policy it shows where and how often the new policy decides otherwise
+ * on the same traffic.
+ *
+ * Usage: JournalReplay journal_directory [fifo|nearest]
+ */
+public class JournalReplay {
+    private final Scheduler scheduler;
+    private long now;
+    private long inputs;
+    private long actions;
+    private long mismatches;
+    private String firstMismatch;
+
+    //Action decided by the replay for each car, until the recorded action of the car is read
+    private final Map<Integer, ElevatorSubsystem.Action> replayedActions = new HashMap<>();
+    private final Map<Integer, Integer> replayedTargets = new HashMap<>();
+
+    /**
+     * @param scheduler a scheduler that is not serving elevator cars, such as a new Scheduler()
+     */
+    public JournalReplay(Scheduler scheduler) {
+        this.scheduler = scheduler;
+        scheduler.getMetrics().setClock(() -> now);
+    }
+
+    /**
+     * Replay every record of a journal
+     * @param directory the journal directory
+     */
+    public void replay(Path directory) throws IOException {
+        try (EventJournal.Reader reader = new EventJournal.Reader(directory)) {
+            while (reader.next()) {
+                now = reader.getTime();
+                switch (reader.getType()) {
+                    case EventJournal.HALL_CALL:
+                        inputs++;
+                        scheduler.addRequest(new ElevatorCall(new Date(reader.getCallTimestamp()), reader.getStartingFloor(), reader.getTargetFloor(), reader.isUp() ? "Up" : "Down"));
+                        break;
+                    case EventJournal.ACTION_REQUEST:
+                        inputs++;
+                        replayActionRequest(reader.getElevatorId(), reader.getFloor(), reader.isMultiFloor());
+                        break;
+                    case EventJournal.ARRIVAL:
+                        inputs++;
+                        scheduler.elevatorCarArrived(reader.getElevatorId(), reader.getFloor());
+                        break;
+                    case EventJournal.FAULT:
+                        inputs++;
+                        scheduler.disableElevatorCar(reader.getElevatorId());
+                        break;
+                    case EventJournal.REQUESTS_COMPLETE:
+                        inputs++;
+                        scheduler.signalRequestsComplete();
+                        break;
+                    case EventJournal.ACTION:
+                        compareAction(reader.getElevatorId(), reader.getAction(), reader.getTargetFloor());
+                        break;
+                    default:
+                        // Assignments and merges follow from the replayed actions
+                        break;
+                }
+            }
+        }
+    }
+
+    private void replayActionRequest(int elevatorId, int currentFloor, boolean multiFloor) {
+        ElevatorSubsystem.Action action;
+        int targetFloor = WireProtocol.NO_FLOOR;
+        synchronized (scheduler.getElevatorCarLock(elevatorId)) {
+            action = scheduler.getNextAction(elevatorId, currentFloor, multiFloor);
+            if (action == ElevatorSubsystem.Action.MOVE_TO) {
+                targetFloor = scheduler.getActiveTrips().get(elevatorId).getStops().first();
+            }
+        }
+        replayedActions.put(elevatorId, action);
+        replayedTargets.put(elevatorId, targetFloor);
+    }
+
+    private void compareAction(int elevatorId, ElevatorSubsystem.Action recordedAction, int recordedTarget) {
+        ElevatorSubsystem.Action action = replayedActions.remove(elevatorId);
+        Integer targetFloor = replayedTargets.remove(elevatorId);
+        if (action == null) {
+            return;
+        }
+        actions++;
+        if (action != recordedAction || targetFloor != recordedTarget) {
+            mismatches++;
+            if (firstMismatch == null) {
+                firstMismatch = String.format("at %d ms, elevator car %d was told %s %d instead of %s %d", now, elevatorId, action, targetFloor, recordedAction, recordedTarget);
+            }
+        }
+    }
+
+    /**
+     * @return the number of inputs replayed
+     */
+    public long getInputs() {
+        return inputs;
+    }
+
+    /**
+     * @return the number of recorded actions compared with the replayed ones
+     */
+    public long getActions() {
+        return actions;
+    }
+
+    /**
+     * @return the number of replayed actions that differ from the recorded ones
+     */
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * @return a description of the first replayed action that differs from the recorded one, null if none
+     */
+    public String getFirstMismatch() {
+        return firstMismatch;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: JournalReplay journal_directory [fifo|nearest]");
+            System.exit(1);
+        }
+        Scheduler scheduler = new Scheduler();
+        if (args.length > 1 && args[1].equalsIgnoreCase("nearest")) {
+            scheduler.setDispatchPolicy(new NearestCarDispatchPolicy());
+        }
+        Log.setLevel(Log.Level.WARN);
+
+        long start = System.nanoTime();
+        JournalReplay replay = new JournalReplay(scheduler);
+        replay.replay(Paths.get(args[0]));
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(String.format("Replayed %d inputs in %d ms, %d of %d actions differ from the journal",
+                replay.getInputs(), elapsed / 1_000_000, replay.getMismatches(), replay.getActions()));
+        if (replay.getFirstMismatch() != null) {
+            System.out.println("First difference: " + replay.getFirstMismatch());
+        }
+        scheduler.getMetrics().export();
+    }
+}
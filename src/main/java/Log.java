@@ -0,0 +1,273 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Leveled asynchronous logger of the elevator system.
+ *
+ * A message is a format string and up to three arguments, stored as is in a preallocated ring buffer
+ * and formatted and printed later by a single writer thread. Logging therefore never formats, never
+ * takes the lock of a PrintStream and never blocks: when the ring is full the message is dropped and
+ * counted, and the writer reports how many messages were lost. A message below the current level costs
+ * one comparison, as long as its arguments are values that exist already.
+ *
+ * Since arguments are formatted later, on another thread, they must not change once logged. Numbers,
+ * strings and enums are fine. Mutable objects, such as an ElevatorCall, should be logged as their
+ * toString(), behind an {@link #isEnabled(Level)} check.
+ *
+ * The level is read from the elevator.logLevel system property (INFO by default, or when the property
+ * names no level) and can be changed with {@link #setLevel(Level)}. ERROR messages go to System.err, the others to System.out.
+ */
+public final class Log {
+    public static final String LEVEL_PROPERTY = "elevator.logLevel";
+    public static final String BUFFER_SIZE_PROPERTY = "elevator.logBufferSize";
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private static final int CAPACITY = Integer.highestOneBit(Math.max(2, Integer.getInteger(BUFFER_SIZE_PROPERTY, 8192)));
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_ARGS = 3;
+
+    /**
+     * Slot of the ring. Its sequence tells whose turn it is: a producer may fill slot i for message
+     * number n when sequence == n, the writer may print it once sequence == n + 1, and sets it to
+     * n + CAPACITY for the producer of the next lap.
+     */
+    private static final class Entry {
+        private volatile long sequence;
+        private Level level;
+        private String format;
+        private int argCount;
+        private final Object[] args = new Object[MAX_ARGS];
+    }
+
+    private static final Entry[] RING = new Entry[CAPACITY];
+    private static final AtomicLong TAIL = new AtomicLong(); // number of messages claimed by producers
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static volatile long head; // number of messages printed by the writer
+    private static volatile Level level = parseLevel(System.getProperty(LEVEL_PROPERTY));
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            RING[i] = new Entry();
+            RING[i].sequence = i;
+        }
+        Thread writer = Threads.newThread("log-writer", Log::writeLoop);
+        if (!writer.isVirtual()) {
+            writer.setDaemon(true);
+        }
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * @param messageLevel the level of a message
+     * @return true if messages of that level are printed
+     */
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0 && messageLevel != Level.OFF;
+    }
+
+    public static void debug(String format) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, format, 0, null, null, null);
+        }
+    }
+
+    public static void debug(String format, Object arg0) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, format, 1, arg0, null, null);
+        }
+    }
+
+    public static void debug(String format, Object arg0, Object arg1) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, format, 2, arg0, arg1, null);
+        }
+    }
+
+    public static void debug(String format, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, format, 3, arg0, arg1, arg2);
+        }
+    }
+
+    public static void info(String format) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, format, 0, null, null, null);
+        }
+    }
+
+    public static void info(String format, Object arg0) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, format, 1, arg0, null, null);
+        }
+    }
+
+    public static void info(String format, Object arg0, Object arg1) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, format, 2, arg0, arg1, null);
+        }
+    }
+
+    public static void info(String format, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, format, 3, arg0, arg1, arg2);
+        }
+    }
+
+    public static void warn(String format) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, format, 0, null, null, null);
+        }
+    }
+
+    public static void warn(String format, Object arg0) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, format, 1, arg0, null, null);
+        }
+    }
+
+    public static void warn(String format, Object arg0, Object arg1) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, format, 2, arg0, arg1, null);
+        }
+    }
+
+    public static void warn(String format, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, format, 3, arg0, arg1, arg2);
+        }
+    }
+
+    public static void error(String format) {
+        if (isEnabled(Level.ERROR)) {
+            log(Level.ERROR, format, 0, null, null, null);
+        }
+    }
+
+    public static void error(String format, Object arg0) {
+        if (isEnabled(Level.ERROR)) {
+            log(Level.ERROR, format, 1, arg0, null, null);
+        }
+    }
+
+    public static void error(String format, Object arg0, Object arg1) {
+        if (isEnabled(Level.ERROR)) {
+            log(Level.ERROR, format, 2, arg0, arg1, null);
+        }
+    }
+
+    /**
+     * Parse the level named by the elevator.logLevel system property. A missing or unknown name gives
+     * INFO, so a typo in the property does not keep the logger, and every class using it, from loading.
+     *
+     * @param name the name of a level, in any case, or null
+     * @return the level of that name, INFO if there is none
+     */
+    static Level parseLevel(String name) {
+        if (name == null) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println(String.format("[LOG] Unknown log level %s, using INFO", name));
+            return Level.INFO;
+        }
+    }
+
+    /**
+     * Wait, for at most one second, until the messages logged so far are printed
+     */
+    public static void flush() {
+        long target = TAIL.get();
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        while (head < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    /**
+     * @return the number of messages dropped because the ring was full
+     */
+    public static long getDropped() {
+        return DROPPED.get();
+    }
+
+    private static void log(Level messageLevel, String format, int argCount, Object arg0, Object arg1, Object arg2) {
+        Entry entry;
+        long position;
+        while (true) {
+            position = TAIL.get();
+            entry = RING[(int) position & MASK];
+            long lag = entry.sequence - position;
+            if (lag < 0) {
+                // The writer has not printed this slot yet, the ring is full
+                DROPPED.incrementAndGet();
+                return;
+            }
+            if (lag == 0 && TAIL.compareAndSet(position, position + 1)) {
+                break;
+            }
+        }
+        entry.level = messageLevel;
+        entry.format = format;
+        entry.argCount = argCount;
+        entry.args[0] = arg0;
+        entry.args[1] = arg1;
+        entry.args[2] = arg2;
+        entry.sequence = position + 1; // publish to the writer
+    }
+
+    private static void writeLoop() {
+        Object[][] argArrays = new Object[MAX_ARGS + 1][];
+        for (int count = 0; count <= MAX_ARGS; count++) {
+            argArrays[count] = new Object[count];
+        }
+        long reportedDrops = 0;
+
+        while (true) {
+            long position = head;
+            Entry entry = RING[(int) position & MASK];
+            if (entry.sequence != position + 1) {
+                long dropped = DROPPED.get();
+                if (dropped != reportedDrops) {
+                    System.err.println(String.format("[LOG] %d messages dropped, the log buffer of %d messages was full", dropped - reportedDrops, CAPACITY));
+                    reportedDrops = dropped;
+                }
+                LockSupport.parkNanos(1_000_000);
+                continue;
+            }
+
+            Object[] args = argArrays[entry.argCount];
+            System.arraycopy(entry.args, 0, args, 0, entry.argCount);
+            Level messageLevel = entry.level;
+            String format = entry.format;
+            entry.format = null;
+            entry.args[0] = entry.args[1] = entry.args[2] = null;
+            entry.sequence = position + CAPACITY; // hand the slot back to the producers
+
+            PrintStream out = messageLevel == Level.ERROR ? System.err : System.out;
+            try {
+                out.println(args.length == 0 ? format : String.format(format, args));
+            } catch (RuntimeException e) {
+                out.println(format);
+            }
+            head = position + 1;
+        }
+    }
+}
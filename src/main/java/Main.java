@@ -1,36 +1,39 @@
 public class Main {
-    private static final int NUM_ELEVATOR_CARS = 4;
+    private static final int NUM_ELEVATOR_CARS = Integer.getInteger("elevator.cars", 4);
     private static final int NUM_FLOOR_ARRIVAL_FAULT_CARS = 1;
     private static final int NUM_DOOR_FAULT_CARS = 1;
     private static final int TOTAL_ELEVATOR_CARS = NUM_ELEVATOR_CARS + NUM_FLOOR_ARRIVAL_FAULT_CARS + NUM_DOOR_FAULT_CARS;
+    private static final int NUM_FLOORS = Integer.getInteger("elevator.floors", 22);
     public static void main(String[] args) {
         Scheduler scheduler = Scheduler.getScheduler();
+        //Send the closest car to every call instead of the first car asking for a trip
+        scheduler.setDispatchPolicy(new NearestCarDispatchPolicy());
         //Elevator and floor threads
         Thread floorThread;
         ElevatorSubsystem elevatorSubsystem = new ElevatorSubsystem();
         FloorSubsystem floorSubSystem = new FloorSubsystem("ElevatorCalls");
-        floorThread = new Thread(floorSubSystem);
+        floorThread = Threads.newThread("floor-subsystem", floorSubSystem);
 
-        ElevatorSubsystemGui gui = new ElevatorSubsystemGui(TOTAL_ELEVATOR_CARS, 22);
+        ElevatorSubsystemGui gui = new ElevatorSubsystemGui(TOTAL_ELEVATOR_CARS, NUM_FLOORS);
 
         //Create elevator car threads
         Thread[] elevatorCarThreads = new Thread[TOTAL_ELEVATOR_CARS];
         for (int i = 0; i < NUM_ELEVATOR_CARS; i++) {
             ElevatorCar elevatorCar = new ElevatorCar(elevatorSubsystem);
             elevatorCar.addView(gui);
-            elevatorCarThreads[i] = new Thread(elevatorCar);
+            elevatorCarThreads[i] = Threads.newThread("elevator-car-" + elevatorCar.getElevatorCarID(), elevatorCar);
         }
 
         for (int i = 0; i < NUM_FLOOR_ARRIVAL_FAULT_CARS; i++) {
             ElevatorCar elevatorCar = new FloorArrivalFaultElevatorCar(elevatorSubsystem);
             elevatorCar.addView(gui);
-            elevatorCarThreads[i + NUM_ELEVATOR_CARS] = new Thread(elevatorCar);
+            elevatorCarThreads[i + NUM_ELEVATOR_CARS] = Threads.newThread("elevator-car-" + elevatorCar.getElevatorCarID(), elevatorCar);
         }
 
         for (int i = 0; i < NUM_DOOR_FAULT_CARS; i++) {
             ElevatorCar elevatorCar = new DoorFaultElevatorCar(elevatorSubsystem);
             elevatorCar.addView(gui);
-            elevatorCarThreads[i + NUM_ELEVATOR_CARS + NUM_FLOOR_ARRIVAL_FAULT_CARS] = new Thread(elevatorCar);
+            elevatorCarThreads[i + NUM_ELEVATOR_CARS + NUM_FLOOR_ARRIVAL_FAULT_CARS] = Threads.newThread("elevator-car-" + elevatorCar.getElevatorCarID(), elevatorCar);
         }
 
         //start the programs execution
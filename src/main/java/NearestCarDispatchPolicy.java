@@ -0,0 +1,112 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cost based dispatch policy that scores every pending elevator call against every in-service
+ * elevator car and only hands a call to the car with the lowest estimated time to arrival.
+ *
+ * The estimated time to arrival of a car is the time it needs to finish the stops that are left
+ * in its active trip (travel plus door time for every stop, longer for heavily loaded cars) and
+ * then travel from its last stop to the starting floor of the call. A car asking for a trip is
+ * given the call it reaches fastest among the calls it is the best car for, a call it is not the
+ * best car for is left in the queue for the closer car to pick up.
+ *
+ * Calls starting from the same floor in the same direction have the same time to arrival, so only
+ * the oldest of them is scored and the cost of a decision does not grow with the queue length.
+ */
+public class NearestCarDispatchPolicy implements DispatchPolicy {
+    private final long moveTime; // time to travel one floor (ms)
+    private final long stopTime; // time spent at a floor to open the doors, board and close the doors (ms)
+
+    /**
+     * Construct a policy using the timing of the simulated elevator cars
+     */
+    public NearestCarDispatchPolicy() {
+        this(ElevatorCar.getMoveTime(), 2L * ElevatorCar.DOOR_OPEN_TIME + ElevatorCar.BOARDING_TIME);
+    }
+
+    /**
+     * @param moveTime time needed by a car to travel one floor in milliseconds
+     * @param stopTime time needed by a car to serve a stop in milliseconds
+     */
+    public NearestCarDispatchPolicy(long moveTime, long stopTime) {
+        this.moveTime = moveTime;
+        this.stopTime = stopTime;
+    }
+
+    @Override
+    public ElevatorCall selectRequest(Scheduler context, int elevatorId) {
+        Map<Integer, Integer> positions = context.getElevatorCarPositions();
+        if (positions.get(elevatorId) == null) {
+            // A car that never reported its position cannot be scored
+            return null;
+        }
+
+        // Cars that may compete with the requesting car for a call
+        List<Integer> competitors = new ArrayList<>();
+        for (Integer carId : positions.keySet()) {
+            if (carId != elevatorId && !context.isElevatorCarDisabled(carId)) {
+                competitors.add(carId);
+            }
+        }
+
+        ElevatorCall bestCall = null;
+        long bestEta = Long.MAX_VALUE;
+        for (ElevatorCall call : context.getRequestsQueue().oldestCallPerFloor()) {
+            long eta = estimateTimeToArrival(context, elevatorId, call);
+            // Equally close calls are served in the order they were made
+            if (bestCall != null && (eta > bestEta || (eta == bestEta && !call.getTimestamp().before(bestCall.getTimestamp())))) {
+                continue;
+            }
+            if (isClosestCar(context, competitors, call, eta)) {
+                bestCall = call;
+                bestEta = eta;
+            }
+        }
+        return bestCall;
+    }
+
+    /**
+     * Check that none of the competing cars would reach the call faster than the requesting car,
+     * ties are resolved in favour of the requesting car since it is ready to leave now
+     */
+    private boolean isClosestCar(Scheduler context, List<Integer> competitors, ElevatorCall call, long eta) {
+        for (int carId : competitors) {
+            if (estimateTimeToArrival(context, carId, call) < eta) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimate how long the given car needs before it can open its doors at the starting floor of the call
+     *
+     * @param context the scheduler object
+     * @param elevatorId the elevator car id
+     * @param call the pending elevator call
+     * @return the estimated time to arrival in milliseconds, Long.MAX_VALUE if the car position is unknown
+     */
+    public long estimateTimeToArrival(Scheduler context, int elevatorId, ElevatorCall call) {
+        Integer position = context.getElevatorCarPositions().get(elevatorId);
+        if (position == null) {
+            return Long.MAX_VALUE;
+        }
+
+        long eta = 0;
+        int floor = position;
+        // The span is an immutable copy of the trip, so other cars are scored without taking their locks
+        ActiveTripIndex.TripSpan trip = context.getActiveTripIndex().getSpan(elevatorId);
+        if (trip != null) {
+            // Loaded cars spend longer at every stop while passengers get on and off
+            long loadDelay = stopTime * trip.getPassengersTotalWeight() / ElevatorCall.getWeightLimit();
+            for (int i = 0; i < trip.getStopCount(); i++) {
+                int stop = trip.getStop(i);
+                eta += Math.abs(stop - floor) * moveTime + stopTime + loadDelay;
+                floor = stop;
+            }
+        }
+        return eta + Math.abs(call.getStartingFloor() - floor) * moveTime;
+    }
+}
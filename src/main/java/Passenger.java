@@ -9,11 +9,12 @@ import java.util.Random;
  */
 
 public class Passenger {
+    static final int PASSENGER_WEIGHT = 100;
     private int passengerWeight;
 
     public Passenger() {
         // being constant instead of random since the elevator is bounded by a number of passengers (5)
-        this.passengerWeight = 100;
+        this.passengerWeight = PASSENGER_WEIGHT;
     }
 
     public int getPassengerWeight() {
@@ -0,0 +1,233 @@
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Store of the elevator calls waiting to be assigned to an elevator car.
+ *
+ * Calls are kept in arrival order, so that the oldest call can be taken in constant time, and are
+ * also indexed by direction and starting floor, so that calls starting within a range of floors
+ * (the merge candidates of a trip) are found in logarithmic time instead of scanning the whole queue.
+ * Removing a call is constant time amortized.
+ *
+ * All methods are synchronized on the index, iterating over it requires the caller to synchronize
+ * on the index as well.
+ */
+public class PendingCallIndex extends AbstractCollection<ElevatorCall> {
+    private final LinkedHashSet<ElevatorCall> arrivalOrder = new LinkedHashSet<>();
+    private final NavigableMap<Integer, Set<ElevatorCall>> upCalls = new TreeMap<>();
+    private final NavigableMap<Integer, Set<ElevatorCall>> downCalls = new TreeMap<>();
+
+    /**
+     * Add a pending elevator call, null calls are ignored
+     * @param elevatorCall the call to add
+     * @return true if the call was added, false if it is null or already pending
+     */
+    @Override
+    public synchronized boolean add(ElevatorCall elevatorCall) {
+        if (elevatorCall == null || !arrivalOrder.add(elevatorCall)) {
+            return false;
+        }
+        callsByFloor(elevatorCall.getDirection())
+                .computeIfAbsent(elevatorCall.getStartingFloor(), floor -> new LinkedHashSet<>())
+                .add(elevatorCall);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        if (!(o instanceof ElevatorCall) || !arrivalOrder.remove(o)) {
+            return false;
+        }
+        removeFromFloorIndex((ElevatorCall) o);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        return arrivalOrder.contains(o);
+    }
+
+    @Override
+    public synchronized int size() {
+        return arrivalOrder.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return arrivalOrder.isEmpty();
+    }
+
+    @Override
+    public synchronized void clear() {
+        arrivalOrder.clear();
+        upCalls.clear();
+        downCalls.clear();
+    }
+
+    /**
+     * @return the oldest pending call, or null if there are no pending calls
+     */
+    public synchronized ElevatorCall peek() {
+        return arrivalOrder.isEmpty() ? null : arrivalOrder.iterator().next();
+    }
+
+    /**
+     * Remove and return the oldest pending call
+     * @return the oldest pending call, or null if there are no pending calls
+     */
+    public synchronized ElevatorCall poll() {
+        ElevatorCall oldest = peek();
+        if (oldest != null) {
+            remove(oldest);
+        }
+        return oldest;
+    }
+
+    /**
+     * Find the pending calls going in the given direction whose starting floor is within the given range
+     *
+     * @param direction the direction of the calls ("Up" or "Down")
+     * @param fromFloor lowest starting floor, inclusive
+     * @param toFloor highest starting floor, inclusive
+     * @return the matching calls ordered by starting floor in the direction of travel
+     */
+    public synchronized List<ElevatorCall> range(String direction, int fromFloor, int toFloor) {
+        List<ElevatorCall> calls = new ArrayList<>();
+        for (Set<ElevatorCall> callsAtFloor : floorRange(direction, fromFloor, toFloor).values()) {
+            calls.addAll(callsAtFloor);
+        }
+        return calls;
+    }
+
+    /**
+     * Find the oldest pending call of every direction and starting floor. Calls going the same way from
+     * the same floor are equally far from every car, so a policy scoring calls by where they start only
+     * has to score these calls, however many calls are pending.
+     *
+     * @return the oldest call of each direction and starting floor
+     */
+    public synchronized List<ElevatorCall> oldestCallPerFloor() {
+        List<ElevatorCall> calls = new ArrayList<>(upCalls.size() + downCalls.size());
+        for (Set<ElevatorCall> callsAtFloor : upCalls.values()) {
+            calls.add(callsAtFloor.iterator().next());
+        }
+        for (Set<ElevatorCall> callsAtFloor : downCalls.values()) {
+            calls.add(callsAtFloor.iterator().next());
+        }
+        return calls;
+    }
+
+    /**
+     * Find the pending calls that could be merged into the given trip. The returned calls are a superset
+     * of the calls accepted by {@link ElevatorCall#mergeRequest(ElevatorCall)}: calls in the same direction
+     * that start between the floor ahead of the car, or the next floor it has to stop at, and its last stop.
+     *
+     * @param trip the trip to merge calls into
+     * @return the merge candidates ordered by starting floor in the direction of travel
+     */
+    public synchronized List<ElevatorCall> mergeCandidates(ElevatorCall trip) {
+        List<ElevatorCall> calls = new ArrayList<>();
+        for (Set<ElevatorCall> callsAtFloor : candidateFloors(trip).values()) {
+            calls.addAll(callsAtFloor);
+        }
+        return calls;
+    }
+
+    /**
+     * Merge the pending calls the given trip can take into it and remove them from the index. Candidates
+     * are visited in the direction of travel and the search stops as soon as the trip cannot take another
+     * passenger, so the cost of a merge does not grow with the number of pending calls.
+     *
+     * @param trip the trip to merge calls into
+     * @return the number of merged calls
+     */
+    public synchronized int mergeInto(ElevatorCall trip) {
+        int merged = 0;
+        Iterator<Set<ElevatorCall>> floors = candidateFloors(trip).values().iterator();
+        while (floors.hasNext() && !trip.isFull()) {
+            Set<ElevatorCall> callsAtFloor = floors.next();
+            Iterator<ElevatorCall> calls = callsAtFloor.iterator();
+            while (calls.hasNext() && !trip.isFull()) {
+                ElevatorCall call = calls.next();
+                if (trip.mergeRequest(call)) {
+                    calls.remove();
+                    arrivalOrder.remove(call);
+                    merged++;
+                }
+            }
+            if (callsAtFloor.isEmpty()) {
+                floors.remove();
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Iterate over the pending calls in arrival order, the caller must synchronize on the index
+     */
+    @Override
+    public Iterator<ElevatorCall> iterator() {
+        Iterator<ElevatorCall> iterator = arrivalOrder.iterator();
+        return new Iterator<ElevatorCall>() {
+            private ElevatorCall last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public ElevatorCall next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                removeFromFloorIndex(last);
+            }
+        };
+    }
+
+    /**
+     * View of the calls starting at the floors where the given trip can pick them up, ordered in the direction of travel
+     */
+    private NavigableMap<Integer, Set<ElevatorCall>> candidateFloors(ElevatorCall trip) {
+        return floorRange(trip.getDirection(), trip.getLowestMergeFloor(), trip.getHighestMergeFloor());
+    }
+
+    /**
+     * View of the calls going in the given direction starting within a range of floors, ordered in the direction of travel
+     */
+    private NavigableMap<Integer, Set<ElevatorCall>> floorRange(String direction, int fromFloor, int toFloor) {
+        NavigableMap<Integer, Set<ElevatorCall>> calls = callsByFloor(direction);
+        if (fromFloor > toFloor) {
+            return calls.subMap(fromFloor, true, fromFloor, false);
+        }
+        NavigableMap<Integer, Set<ElevatorCall>> floors = calls.subMap(fromFloor, true, toFloor, true);
+        return direction.equals("Down") ? floors.descendingMap() : floors;
+    }
+
+    private NavigableMap<Integer, Set<ElevatorCall>> callsByFloor(String direction) {
+        return direction.equals("Up") ? upCalls : downCalls;
+    }
+
+    private void removeFromFloorIndex(ElevatorCall elevatorCall) {
+        Map<Integer, Set<ElevatorCall>> floors = callsByFloor(elevatorCall.getDirection());
+        Set<ElevatorCall> callsAtFloor = floors.get(elevatorCall.getStartingFloor());
+        if (callsAtFloor != null) {
+            callsAtFloor.remove(elevatorCall);
+            if (callsAtFloor.isEmpty()) {
+                floors.remove(elevatorCall.getStartingFloor());
+            }
+        }
+    }
+}
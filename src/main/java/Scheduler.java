@@ -6,16 +6,14 @@
 */
 
 import java.util.*;
-import java.net.*;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.SocketException;
-import java.net.SocketTimeoutException;
+import java.net.SocketAddress;
+import java.nio.file.Paths;
 import java.nio.ByteBuffer;
 import java.io.IOException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
 * Scheduler states interface
@@ -34,17 +32,29 @@ interface SchedulerState {
             return;
         }
         
-        for (ElevatorCall elevatorCallIterator : context.getActiveTrips().values()) {
-            System.out.println(elevatorCallIterator);
-            if (elevatorCall != null && elevatorCallIterator.mergeRequest(elevatorCall)) {
-                return; // Request merged, no need to add to the queue
+        // Only the trips whose remaining span covers the starting floor of the call can take it
+        for (int elevatorId : context.getActiveTripIndex().coveringTrips(elevatorCall.getDirection(), elevatorCall.getStartingFloor())) {
+            synchronized (context.getElevatorCarLock(elevatorId)) {
+                ElevatorCall trip = context.getActiveTrips().get(elevatorId);
+                if (trip != null && context.isAheadOfMoveRun(elevatorId, elevatorCall.getStartingFloor()) && trip.mergeRequest(elevatorCall)) {
+                    context.journalHallCall(elevatorCall);
+                    context.journalMerge(elevatorId, elevatorCall);
+                    context.updateActiveTripIndex(elevatorId);
+                    context.updateMoveRun(elevatorId);
+                    context.setState("WaitingForRequest");
+                    return; // Request merged, no need to add to the queue
+                }
             }
         }
 
 
-        // Request not merged, add to the queue
-        context.getRequestsQueue().add(elevatorCall);
-        context.notifyAll(); 
+        // Request not merged, add to the queue. The call is journaled in the same critical section, so the
+        // journal order of concurrent calls is their queue order
+        PendingCallIndex requestsQueue = context.getRequestsQueue();
+        synchronized (requestsQueue) {
+            requestsQueue.add(elevatorCall);
+            context.journalHallCall(elevatorCall);
+        }
 
         // After handling, transition state back to waiting for a request state
         
@@ -62,13 +72,14 @@ interface SchedulerState {
         context.setState("AssigningAction");
         context.getElevatorCarPositions().put(elevatorId, currentFloor);
 
-        boolean activeTrip = context.getActiveTrips().get(elevatorId) != null && context.getActiveTrips().get(elevatorId).getNextTargetFloor() != null;
+        ElevatorCall activeTrip = context.getActiveTrips().get(elevatorId);
 
-        if (!activeTrip && !context.assignTrip(elevatorId)) {
+        if ((activeTrip == null || activeTrip.getStops().isEmpty()) && !context.assignTrip(elevatorId)) {
             //retrieving the original state for the Scheduler: WaitingForRequest state (IDLE)
             //trigging event (assigned action)
             context.setState("WaitingForRequest");
             if (context.isRequestsComplete()) {
+                context.retireElevatorCar(elevatorId);
                 return ElevatorSubsystem.Action.QUIT;
             } else {
                 return ElevatorSubsystem.Action.IDLE;
@@ -77,18 +88,24 @@ interface SchedulerState {
 
         ElevatorCall trip = context.getActiveTrips().get(elevatorId);
 
-        int prevTargetFloor = trip.getNextTargetFloor();
+        int prevTargetFloor = trip.getStops().first();
         trip.setCurrentFloor(currentFloor);
         ElevatorSubsystem.Action action;
 
         if (currentFloor == prevTargetFloor) {
             action = ElevatorSubsystem.Action.TOGGLE_DOORS;
             trip.setTripStarted();
-        } else if (currentFloor < trip.getNextTargetFloor()) {
+            context.getMetrics().doorsOpened(trip, currentFloor);
+            if (trip.getStops().isEmpty()) {
+                // The trip is over, the car now competes for the pending calls from its last stop
+                context.dispatchChanged();
+            }
+        } else if (currentFloor < trip.getStops().first()) {
             action = ElevatorSubsystem.Action.UP;
         } else {
             action = ElevatorSubsystem.Action.DOWN;
         }
+        context.updateActiveTripIndex(elevatorId);
 
         //retrieving the original state for the Scheduler: WaitingForRequest state (IDLE)
         //trigging event (assigned action)   
@@ -108,7 +125,7 @@ interface SchedulerState {
 class WaitingForRequest implements SchedulerState {
     @Override
     public void displayState() {
-        System.out.println("Scheduler State: IDLE, waiting to process an elevator call or an action request...\n");
+        Log.debug("Scheduler State: IDLE, waiting to process an elevator call or an action request...\n");
     }
 }
 
@@ -120,7 +137,7 @@ class AddingRequest implements SchedulerState {
 
     @Override
     public void displayState() {
-        System.out.println("Scheduler State: Processing an elevator call\n");
+        Log.debug("Scheduler State: Processing an elevator call\n");
     }
 }
 
@@ -131,7 +148,7 @@ class AssigningAction implements SchedulerState {
 
     @Override
     public void displayState() {
-        System.out.println("Scheduler State: Assigning elevator car action\n");
+        Log.debug("Scheduler State: Assigning elevator car action\n");
     }
 }
 
@@ -146,15 +163,56 @@ class AssigningAction implements SchedulerState {
  */
 
 public class Scheduler {
-    private SchedulerState currentState; //represents the Scheduler current state
-    private boolean requestsComplete;
-    private List<ElevatorCall> requestsQueue; // queue of pending elevator calls
+    private volatile SchedulerState currentState; //represents the Scheduler current state
+    private volatile boolean requestsComplete;
+    private PendingCallIndex requestsQueue; // pending elevator calls indexed by direction and starting floor
     private Map<Integer, Integer> elevatorCarPositions;
     private Map<Integer, ElevatorCall> activeTrips;
-    private DatagramSocket elevatorSendReceiveSocket, floorSendReceiveSocket, floorSendSocket;
-    private Set<Integer> disabledElevatorCars = Collections.synchronizedSet(new HashSet<>());
-    private int elevatorMoves = 0;
+    private ActiveTripIndex activeTripIndex; // floors covered by the remaining part of each active trip
+    private SchedulerReactor reactor; // event loop serving the elevator, floor and fault endpoints
+    private Set<Integer> disabledElevatorCars = ConcurrentHashMap.newKeySet();
+    private Map<Integer, Object> elevatorCarLocks; // per car locks guarding the position, active trip and disabled flag of a car
+    private final AtomicInteger elevatorMoves = new AtomicInteger();
+    private final AtomicInteger dispatchChanges = new AtomicInteger(); // trips assigned or completed and cars retired, each may change the closest car of the pending calls
     private Date executionStart;
+    private volatile DispatchPolicy dispatchPolicy; // decides which pending call is handed to a car asking for a trip
+    private Map<Integer, IdleSubscription> idleSubscriptions; // idle cars waiting for an action to be pushed to them
+    private Map<Integer, MoveRun> moveRuns; // cars travelling on a MOVE_TO action
+    private final SchedulerMetrics metrics = new SchedulerMetrics();
+    private volatile EventJournal journal; // journal of the inputs and decisions, null if not journaling
+    private final AtomicReference<SchedulerSnapshot> snapshot = new AtomicReference<>(SchedulerSnapshot.EMPTY); // latest state published for monitoring
+
+    /**
+     * Parked action request of an idle elevator car
+     */
+    private static class IdleSubscription {
+        private final int sequence;
+        private final int currentFloor;
+        private final boolean multiFloor;
+        private final SocketAddress address;
+
+        IdleSubscription(int sequence, int currentFloor, boolean multiFloor, SocketAddress address) {
+            this.sequence = sequence;
+            this.currentFloor = currentFloor;
+            this.multiFloor = multiFloor;
+            this.address = address;
+        }
+    }
+
+    /**
+     * MOVE_TO action an elevator car is carrying out, kept until the car asks for its next action
+     */
+    private static class MoveRun {
+        private final int sequence;
+        private final SocketAddress address;
+        private int targetFloor;
+
+        MoveRun(int sequence, int targetFloor, SocketAddress address) {
+            this.sequence = sequence;
+            this.targetFloor = targetFloor;
+            this.address = address;
+        }
+    }
 
 
 
@@ -168,10 +226,15 @@ public class Scheduler {
     Map<String, SchedulerState> states;
 
     Scheduler() {
-        requestsQueue = Collections.synchronizedList(new ArrayList<>());
-        elevatorCarPositions = new HashMap<>();
-        activeTrips = Collections.synchronizedMap(new HashMap<>());
+        requestsQueue = new PendingCallIndex();
+        elevatorCarPositions = new ConcurrentHashMap<>();
+        activeTrips = new ConcurrentHashMap<>();
+        elevatorCarLocks = new ConcurrentHashMap<>();
+        idleSubscriptions = new ConcurrentHashMap<>();
+        moveRuns = new ConcurrentHashMap<>();
+        activeTripIndex = new ActiveTripIndex();
         requestsComplete = false;
+        dispatchPolicy = new FifoDispatchPolicy();
         states = new HashMap<>();
 
         //Adding the states to the states hashmap and linking it to the relative state
@@ -185,7 +248,7 @@ public class Scheduler {
     }
 
     /** Creates and returns Scheduler object upon check singularity.
-     * and calls method for listening for UDP packets
+     * and calls method for listening for the messages of the subsystems
      * @return Agent object
      */
     public static Scheduler getScheduler(){
@@ -193,14 +256,12 @@ public class Scheduler {
             synchronized (Scheduler.class) {
                 scheduler = new Scheduler();
             }
-            scheduler.listenToElevatorSubSystemCalls();
-            scheduler.listenToFloorSubSystemCalls();
-            scheduler.listenForFaultNotifications();
+            scheduler.startReactor(Transport.shared());
         }
         return scheduler;
     }
 
-    public List<ElevatorCall> getRequestsQueue() {
+    public PendingCallIndex getRequestsQueue() {
         return requestsQueue;
     }
 
@@ -209,6 +270,76 @@ public class Scheduler {
     }
 
 
+    public ActiveTripIndex getActiveTripIndex() {
+        return activeTripIndex;
+    }
+
+    /**
+     * Refresh the active trip index entry of an elevator car after its trip changed
+     * @param elevatorId the elevator car id
+     */
+    public void updateActiveTripIndex(int elevatorId) {
+        activeTripIndex.update(elevatorId, activeTrips.get(elevatorId));
+        publishCar(elevatorId, null);
+    }
+
+    /**
+     * @return the latest state of the scheduler, read without taking any lock of the scheduler
+     */
+    public SchedulerSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Publish a new snapshot with the current state of an elevator car, called with the lock of the car held
+     *
+     * @param elevatorId the elevator car id
+     * @param state what the car does from now on, null if unchanged
+     */
+    private void publishCar(int elevatorId, SchedulerMetrics.CarState state) {
+        Integer position = elevatorCarPositions.get(elevatorId);
+        int floor = position == null ? -1 : position;
+        ElevatorCall trip = activeTrips.get(elevatorId);
+        String direction = null;
+        int[] stops = new int[0];
+        int passengers = 0;
+        if (trip != null) {
+            direction = trip.getDirection();
+            stops = trip.getStops().toArray();
+            passengers = isOnBoard(trip) ? 1 : 0;
+            for (ElevatorCall call : trip.getMergedCalls()) {
+                passengers += isOnBoard(call) ? 1 : 0;
+            }
+        }
+
+        SchedulerSnapshot current;
+        SchedulerSnapshot next;
+        do {
+            current = snapshot.get();
+            SchedulerMetrics.CarState carState = state;
+            if (carState == null) {
+                SchedulerSnapshot.Car previous = current.getCar(elevatorId);
+                carState = previous == null ? null : previous.getState();
+            }
+            SchedulerSnapshot.Car car = new SchedulerSnapshot.Car(elevatorId, floor, direction, stops, passengers, carState);
+            next = current.withCar(car, requestsQueue.size(), metrics.now());
+        } while (!snapshot.compareAndSet(current, next));
+    }
+
+    private static boolean isOnBoard(ElevatorCall call) {
+        return call.getPickupTime() >= 0 && !call.isDelivered();
+    }
+
+    /**
+     * Publish a new snapshot with the current number of pending calls
+     */
+    private void publishPendingCalls() {
+        SchedulerSnapshot current;
+        do {
+            current = snapshot.get();
+        } while (!snapshot.compareAndSet(current, current.withPendingCalls(requestsQueue.size(), metrics.now())));
+    }
+
     public boolean isRequestsComplete() {
         return requestsComplete;
     }
@@ -217,6 +348,71 @@ public class Scheduler {
         return elevatorCarPositions;
     }
 
+    /**
+     * Get the lock guarding the state of an elevator car (position, active trip and disabled flag).
+     * Requests concerning different cars only contend on the shared pending calls pool.
+     *
+     * @param elevatorId the elevator car id
+     * @return the lock object of the car
+     */
+    public Object getElevatorCarLock(int elevatorId) {
+        return elevatorCarLocks.computeIfAbsent(elevatorId, id -> new Object());
+    }
+
+    /**
+     * @return a count that changes whenever a trip is assigned or completed or a car is retired, so that
+     * the idle cars a dispatch policy left without a call can be offered the pending calls again
+     */
+    int getDispatchChanges() {
+        return dispatchChanges.get();
+    }
+
+    /**
+     * Count a change of the trips or of the cars in service that may make another car the closest one
+     * for a pending call
+     */
+    void dispatchChanged() {
+        dispatchChanges.incrementAndGet();
+    }
+
+    public boolean isElevatorCarDisabled(int elevatorId) {
+        return disabledElevatorCars.contains(elevatorId);
+    }
+
+    /**
+     * Take an elevator car that was told to quit out of the dispatch decisions, so that no pending call
+     * is left waiting for a car that is not running anymore
+     * @param elevatorId the elevator car id
+     */
+    void retireElevatorCar(int elevatorId) {
+        disabledElevatorCars.add(elevatorId);
+        dispatchChanged();
+    }
+
+    public SchedulerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public EventJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Journal the inputs and decisions of the scheduler from now on
+     * @param journal the journal to append to, null to stop journaling
+     */
+    public void setJournal(EventJournal journal) {
+        this.journal = journal;
+    }
+
+    public DispatchPolicy getDispatchPolicy() {
+        return dispatchPolicy;
+    }
+
+    public void setDispatchPolicy(DispatchPolicy dispatchPolicy) {
+        this.dispatchPolicy = dispatchPolicy;
+    }
+
     public SchedulerState getCurrentState() {
         return currentState;
     }
@@ -230,21 +426,32 @@ public class Scheduler {
      *
      * @param elevatorCall: elevator request to be added
      */
-    public synchronized void addRequest(ElevatorCall elevatorCall){
+    public void addRequest(ElevatorCall elevatorCall){
         //try to adding the coming request to an existing request
-        System.out.println(String.format("[SCHEDULER] Received new elevator call: \n%s", elevatorCall));
+        if (Log.isEnabled(Log.Level.DEBUG)) {
+            Log.debug("[SCHEDULER] Received new elevator call: \n%s", String.valueOf(elevatorCall));
+        }
 
         if (elevatorCall == null) {
             //System.out.println("Attempted to add a null ElevatorCall to the queue.");
             return;
         }
 
-        //Delegate the task to the corresponding state
+        //Delegate the task to the corresponding state, which journals the call once it is merged or queued
+        metrics.callReceived(elevatorCall);
         currentState.addRequest(this, elevatorCall);
+        metrics.recordQueueDepth(requestsQueue.size());
+        publishPendingCalls();
+        wakeIdleElevatorCars();
     }
 
     public void signalRequestsComplete() {
+        EventJournal journal = this.journal;
+        if (journal != null) {
+            journal.requestsComplete(metrics.now());
+        }
         requestsComplete = true;
+        wakeIdleElevatorCars();
     }
 
     /**
@@ -254,26 +461,63 @@ public class Scheduler {
      * @param elevatorId: elevator identification
      * @param currentFloor: the current floor that the elevator in.
      */
-    public synchronized ElevatorSubsystem.Action getNextAction(int elevatorId, int currentFloor) {
-        //Delegate the task to the corresponding state
-        return currentState.getNextAction(this, elevatorId, currentFloor);
+    public ElevatorSubsystem.Action getNextAction(int elevatorId, int currentFloor) {
+        return getNextAction(elevatorId, currentFloor, false);
+    }
+
+    /**
+     * Get the next action of an elevator car, a car able to travel several floors at once is told to
+     * MOVE_TO the next stop of its trip rather than to go one floor UP or DOWN
+     *
+     * @param elevatorId: elevator identification
+     * @param currentFloor: the current floor that the elevator in.
+     * @param multiFloor: true if the car understands MOVE_TO actions
+     */
+    public ElevatorSubsystem.Action getNextAction(int elevatorId, int currentFloor, boolean multiFloor) {
+        long decisionStart = System.nanoTime();
+        ElevatorSubsystem.Action action;
+        //Delegate the task to the corresponding state, only the state of this car is locked
+        synchronized (getElevatorCarLock(elevatorId)) {
+            EventJournal journal = this.journal;
+            if (journal != null) {
+                journal.actionRequest(metrics.now(), elevatorId, currentFloor, multiFloor);
+            }
+            action = currentState.getNextAction(this, elevatorId, currentFloor);
+            if (multiFloor && (action == ElevatorSubsystem.Action.UP || action == ElevatorSubsystem.Action.DOWN)) {
+                action = ElevatorSubsystem.Action.MOVE_TO;
+            }
+            metrics.actionAssigned(elevatorId, action);
+            publishCar(elevatorId, SchedulerMetrics.stateOf(action));
+            if (journal != null) {
+                int targetFloor = action == ElevatorSubsystem.Action.MOVE_TO ? activeTrips.get(elevatorId).getStops().first() : WireProtocol.NO_FLOOR;
+                journal.action(metrics.now(), elevatorId, action, targetFloor);
+            }
+        }
+        metrics.recordDecisionLatency(System.nanoTime() - decisionStart);
+        return action;
     }
 
 
     /**
      * Assigns the next available elevator call to the specified elevator car, if the car is not disabled.
-     * This method first checks if the elevator car is disabled and if not, it attempts to assign an available
-     * trip from the request queue. If a trip is successfully assigned, it also attempts to merge similar
-     * requests to optimize the trip.
+     * This method first checks if the elevator car is disabled and if not, it asks the dispatch policy
+     * which trip from the request queue the car should take. If a trip is successfully assigned, it also
+     * attempts to merge similar requests to optimize the trip.
      *
      * @param elevatorId The ID of the elevator car to which a trip might be assigned.
      * @return {@code true} if a trip was successfully assigned to the elevator car, {@code false} if no trip
      *         could be assigned either because the car is disabled, there are no pending requests, or some
      *         other condition prevents assignment.
      */
-    public synchronized boolean assignTrip(int elevatorId) {
+    public boolean assignTrip(int elevatorId) {
+        synchronized (getElevatorCarLock(elevatorId)) {
+            return assignTripLocked(elevatorId);
+        }
+    }
+
+    private boolean assignTripLocked(int elevatorId) {
         if (disabledElevatorCars.contains(elevatorId)) {
-            System.out.println("Elevator car " + elevatorId + " is disabled and cannot be assigned trips.");
+            Log.debug("Elevator car %d is disabled and cannot be assigned trips.", elevatorId);
             return false;
         }
 
@@ -281,250 +525,380 @@ public class Scheduler {
             return false;
         }
 
-        ElevatorCall nextRequest = requestsQueue.remove(0);
-        if (nextRequest == null) {
-            System.out.println("No valid request to assign for elevator " + elevatorId);
-            return false;
-        }
+        ElevatorCall nextRequest;
+        do {
+            nextRequest = dispatchPolicy.selectRequest(this, elevatorId);
+            if (nextRequest == null) {
+                // The dispatch policy left the pending calls to better placed elevator cars
+                return false;
+            }
+            // Another car may have claimed the selected call in the meantime, select again if so
+        } while (!requestsQueue.remove(nextRequest));
+
         Integer currentPosition = elevatorCarPositions.get(elevatorId);
         if (currentPosition != null) {
             nextRequest.setCurrentFloor(currentPosition);
         } else {
-            System.out.println("Current position for elevator " + elevatorId + " is undefined.");
+            Log.warn("Current position for elevator %d is undefined.", elevatorId);
         }
 
-        List<ElevatorCall> merged = new ArrayList<>();
-        for (ElevatorCall request : requestsQueue) {
-            if (request != null && nextRequest.mergeRequest(request)) {
-                merged.add(request);
-            } else {
-                System.out.println("Failed to merge request or request was null for elevator " + elevatorId);
-            }
+        // Only the pending calls starting ahead of the car in the trip direction can be merged, the pool
+        // stays locked so that a merged call cannot be claimed by another car at the same time
+        requestsQueue.mergeInto(nextRequest);
+        EventJournal journal = this.journal;
+        if (journal != null) {
+            journal.assignment(metrics.now(), elevatorId, nextRequest.getStartingFloor(), nextRequest.getDestinationFloor(), nextRequest.getMergedCalls().size());
         }
-        requestsQueue.removeAll(merged);
         activeTrips.put(elevatorId, nextRequest);
-        System.out.println("Elevator car " + elevatorId + " got assigned the request: " + nextRequest);
+        updateActiveTripIndex(elevatorId);
+        dispatchChanged();
+        metrics.recordQueueDepth(requestsQueue.size());
+        if (Log.isEnabled(Log.Level.DEBUG)) {
+            Log.debug("Elevator car %d got assigned the request: %s", elevatorId, nextRequest.toString());
+        }
         return true;
     }
 
 
     /**
-     * a running thread to keep the class in always state of listening to the ElevatorSubsystem
+     * Binds the scheduler endpoint and starts the event loop serving it on a single thread
+     * @param transport the transport connecting the scheduler to the subsystems
+     */
+    void startReactor(Transport transport) {
+        try {
+            reactor = new SchedulerReactor(this, transport);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        String journalDirectory = System.getProperty(EventJournal.DIRECTORY_PROPERTY);
+        if (journalDirectory != null) {
+            try {
+                journal = new EventJournal(Paths.get(journalDirectory));
+            } catch (IOException | IllegalArgumentException e) {
+                Log.error("[SCHEDULER] Cannot open the event journal: %s", e.toString());
+            }
+        }
+        Threads.start("scheduler-reactor", reactor);
+        metrics.startPeriodicExport(Long.getLong(SchedulerMetrics.EXPORT_INTERVAL_PROPERTY, 60));
+    }
+
+    /**
+     * Decodes an action request from an elevator car and answers it with the next action of the car,
+     * or parks it if the car subscribed for a pushed action
+     *
+     * @param packet the received packet
+     * @param sender the address of the elevator car
      */
-    private void listenToElevatorSubSystemCalls() {
-        Thread ElevatorSubsystemListenerThread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                listenToElevatorSubsystemRequests();
+    void handleElevatorRequest(ByteBuffer packet, SocketAddress sender) {
+        if (!WireProtocol.isMessage(packet, WireProtocol.ACTION_REQUEST)) {
+            Log.warn("[SCHEDULER] Dropped malformed elevator car request");
+            return;
+        }
+        int sequence = WireProtocol.readHeader(packet, WireProtocol.ACTION_REQUEST);
+        int elevatorId = packet.getInt();
+        int currentFloor = packet.getInt();
+        int flags = packet.getInt();
+        boolean multiFloor = (flags & ElevatorSubsystem.MOVE_TO_FLAG) != 0;
+
+        SendDisplayInfoToFloorSubsystem(elevatorId, currentFloor);
+
+        if ((flags & ElevatorSubsystem.ARRIVAL_FLAG) != 0) {
+            elevatorCarArrived(elevatorId, currentFloor);
+            return;
+        }
+
+        if ((flags & ElevatorSubsystem.SUBSCRIBE_FLAG) != 0) {
+            // Idle car waiting for work: park the request, it is answered as soon as there is an action for the car
+            idleSubscriptions.put(elevatorId, new IdleSubscription(sequence, currentFloor, multiFloor, sender));
+            wakeIdleElevatorCar(elevatorId);
+            return;
+        }
+
+        // Any regular request means the car is no longer waiting on an older subscription
+        idleSubscriptions.remove(elevatorId);
+        int dispatchChangesBefore = dispatchChanges.get();
+        synchronized (getElevatorCarLock(elevatorId)) {
+            ElevatorSubsystem.Action action;
+            if (disabledElevatorCars.contains(elevatorId)) {
+                action = ElevatorSubsystem.Action.QUIT;
+            } else {
+                action = getNextAction(elevatorId, currentFloor, multiFloor);
             }
-        });
-        ElevatorSubsystemListenerThread.start();
+            try {
+                sendAction(elevatorId, sequence, currentFloor, action, sender);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        wakeIdleElevatorCarsAfterDispatch(dispatchChangesBefore);
     }
 
     /**
-     * a running thread to keep the class in always state of listening to the FloorSubsystem
+     * Handles the report of an elevator car reaching a floor during a MOVE_TO run: the position of the car
+     * and of its trip is updated, and the arrival at the following floor of the run is verified in time
+     *
+     * @param elevatorId the elevator car id
+     * @param currentFloor the floor the car reached
      */
-    private void listenToFloorSubSystemCalls() {
-        Thread floorSubsystemListenerThread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                listenToFloorSubsystemRequests();
+    void elevatorCarArrived(int elevatorId, int currentFloor) {
+        synchronized (getElevatorCarLock(elevatorId)) {
+            EventJournal journal = this.journal;
+            if (journal != null) {
+                journal.arrival(metrics.now(), elevatorId, currentFloor);
+            }
+            elevatorCarPositions.put(elevatorId, currentFloor);
+            elevatorMoves.incrementAndGet();
+
+            // The floor is only removed from the stops once the car asks for its next action and gets the doors opened
+            ElevatorCall trip = activeTrips.get(elevatorId);
+            if (trip != null && currentFloor != trip.getStops().first()) {
+                trip.setCurrentFloor(currentFloor);
+                updateActiveTripIndex(elevatorId);
+            } else {
+                publishCar(elevatorId, null);
+            }
+
+            MoveRun run = moveRuns.get(elevatorId);
+            if (run != null && currentFloor != run.targetFloor) {
+                verifyArrivalLater(elevatorId, currentFloor + (run.targetFloor > currentFloor ? 1 : -1));
             }
-        });
-        floorSubsystemListenerThread.start();
+        }
     }
 
+    /**
+     * Journal a hall call once it took effect, with the lock of the trip it was merged into or of the
+     * queue it was added to held, so a replay merges or queues it at the same point
+     * @param elevatorCall the call
+     */
+    void journalHallCall(ElevatorCall elevatorCall) {
+        EventJournal journal = this.journal;
+        if (journal != null) {
+            journal.hallCall(metrics.now(), elevatorCall.getTimestamp().getTime(), elevatorCall.getStartingFloor(), elevatorCall.getDestinationFloor(), elevatorCall.isUp());
+        }
+    }
 
     /**
-     * creates the receiving socket and packet, decodes them and get the needed data from the scheduler class then sends
-     * this data in a new packet to the same port
+     * Journal a call merged into the active trip of an elevator car
+     * @param elevatorId the elevator car id
+     * @param elevatorCall the merged call
      */
-    private void listenToElevatorSubsystemRequests() {
-        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    void journalMerge(int elevatorId, ElevatorCall elevatorCall) {
+        EventJournal journal = this.journal;
+        if (journal != null) {
+            journal.merge(metrics.now(), elevatorId, elevatorCall.getStartingFloor(), elevatorCall.getDestinationFloor());
+        }
+    }
+
+    /**
+     * Check that a floor is still ahead of an elevator car travelling on a MOVE_TO run. The car does not
+     * wait for the scheduler between floors, so by the time a new destination reaches it the car may have
+     * passed the floor following the last arrival it reported: only floors beyond that one are ahead.
+     * Called with the lock of the car held.
+     *
+     * @param elevatorId the elevator car id
+     * @param floor the floor a merged call would add a stop at
+     * @return true if the car is not on a run, or can still stop at the floor on its run
+     */
+    boolean isAheadOfMoveRun(int elevatorId, int floor) {
+        MoveRun run = moveRuns.get(elevatorId);
+        Integer position = elevatorCarPositions.get(elevatorId);
+        if (run == null || position == null || position == run.targetFloor) {
+            return true;
+        }
+        int direction = run.targetFloor > position ? 1 : -1;
+        return (floor - (position + direction)) * direction > 0;
+    }
 
+    /**
+     * Push the new destination of the MOVE_TO run of an elevator car whose next stop changed, such as when
+     * a call starting on the way was merged into its trip. Called with the lock of the car held.
+     *
+     * @param elevatorId the elevator car id
+     */
+    void updateMoveRun(int elevatorId) {
+        MoveRun run = moveRuns.get(elevatorId);
+        ElevatorCall trip = activeTrips.get(elevatorId);
+        if (run == null || trip == null || reactor == null) {
+            return;
+        }
+        int nextStop = trip.getStops().first();
+        if (nextStop == FloorStopSet.NONE || nextStop == run.targetFloor) {
+            return;
+        }
+        run.targetFloor = nextStop;
+        ByteBuffer sendData = reactor.acquireBuffer();
         try {
-            elevatorSendReceiveSocket = new DatagramSocket(69);
-            //timeout if no calls received for one minute
-            elevatorSendReceiveSocket.setSoTimeout(60000);
-            byte[] receiveData = new byte[Integer.BYTES * 2];
-
-            while (true) {
-                try{
-                    DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
-                    elevatorSendReceiveSocket.receive(receivePacket);
-                    ByteBuffer byteBuffer = ByteBuffer.wrap(receivePacket.getData());
-                    int elevatorId = byteBuffer.getInt();
-                    int currentFloor = byteBuffer.getInt();
-
-                    SendDisplayInfoToFloorSubsystem(elevatorId, currentFloor);
-
-                    ElevatorSubsystem.Action action;
-                    if (disabledElevatorCars.contains(elevatorId)) {
-                        action = ElevatorSubsystem.Action.QUIT;
-                    } else {
-                        action = getNextAction(elevatorId, currentFloor);
-                    }
-
-                    byte[] sendData = action.name().getBytes("UTF-8");
-
-                    DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length, receivePacket.getAddress(), receivePacket.getPort());
-                    elevatorSendReceiveSocket.send(sendPacket);
-
-                    int direction = 0;
-                    switch (action) {
-                        case UP:
-                            direction = 1;
-                            elevatorMoves++;
-                            break;
-                        case DOWN:
-                            direction = -1;
-                            elevatorMoves++;
-                            break;
-                    }
-
-                    if (direction != 0) {
-                        final int expectedFloor = currentFloor + direction;
-                        // Change to 200 for testing purposes
-                        executor.schedule(() -> verifyElevatorCarArrival(elevatorId, expectedFloor), ElevatorCar.getMoveTime() + 2000, TimeUnit.MILLISECONDS); // Schedule method to verify the arrival of the elevator car at the desired floor within 2s of the expected time
-                    }
-
-                    // Resetting the timeout
-                    elevatorSendReceiveSocket.setSoTimeout(60000);
-                }
-                catch (SocketTimeoutException e){
-                    break;
-                }
-            }
-        } catch (SocketException e) {
-            e.printStackTrace();
+            WireProtocol.encodeActionReply(sendData, run.sequence, ElevatorSubsystem.Action.MOVE_TO, nextStop);
+            reactor.sendToElevatorCar(sendData, run.address);
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            // Ensure the socket is closed to release resources
-            if (elevatorSendReceiveSocket != null && !elevatorSendReceiveSocket.isClosed()) {
-                elevatorSendReceiveSocket.close();
-                executor.shutdown();
-            }
+        }
+    }
 
-            System.out.println("Total elevator moves: " + elevatorMoves);
+    /**
+     * Called once no elevator car contacted the scheduler for one minute
+     */
+    void elevatorListenerStopped() {
+        Log.info("Total elevator moves: %d", elevatorMoves.get());
+        metrics.stopPeriodicExport();
+        metrics.export();
+        EventJournal journal = this.journal;
+        if (journal != null) {
+            journal.close();
         }
     }
 
     /**
-     * creates the receiving socket and packet, decodes them and get the needed data from the scheduler class then sends
-     * this data in a new packet to the same port
+     * Sends an action to an elevator car and keeps track of the car movement: every move is counted and
+     * the arrival of the car at the next floor is verified once the move should be over. A MOVE_TO action
+     * carries the next stop of the trip of the car, which must be locked by the caller.
+     *
+     * @param elevatorId the elevator car id
+     * @param sequence the sequence number of the request being answered
+     * @param currentFloor the floor the car was at when the action was assigned
+     * @param action the action assigned to the car
+     * @param address the address the car is waiting for the action on
      */
-    private void listenToFloorSubsystemRequests() {
-        try {
-                floorSendReceiveSocket = new DatagramSocket(23);
-                //timeout if no calls received for two minute
-                floorSendReceiveSocket.setSoTimeout(120000);
-                byte[] receiveData = new byte[Integer.BYTES * 10];
-
-                while (true) {
-                    try{
-                    DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
-                    floorSendReceiveSocket.receive(receivePacket);
-                    ByteBuffer byteBuffer = ByteBuffer.wrap(receivePacket.getData());
-                    //Decode the timestamp
-                    int hours = byteBuffer.getInt();
-                    int minutes = byteBuffer.getInt();
-                    int seconds = byteBuffer.getInt();
-                    //create a Date object of the decoded time
-                    Calendar calendar = Calendar.getInstance();
-                    calendar.set(Calendar.HOUR_OF_DAY, hours);
-                    calendar.set(Calendar.MINUTE, minutes);
-                    calendar.set(Calendar.SECOND, seconds);
-                    Date timestamp = calendar.getTime();
-
-                    //Decode the starting floor, direction, and target floor
-                    int startingFloor = byteBuffer.getInt();
-                    int targetFloor = byteBuffer.getInt();
-                    int directionDecoded = byteBuffer.getInt();
-                    String direction = (directionDecoded == 1) ? "Up" : "Down";
-                    ElevatorCall elevatorCall = new ElevatorCall(timestamp, startingFloor, targetFloor, direction);
-
-                    this.addRequest(elevatorCall);
-                    // Resetting the timeout
-                    floorSendReceiveSocket.setSoTimeout(120000);
-                }
-                catch (SocketTimeoutException e) {
-                //signal that no more requests available
-                this.signalRequestsComplete();
+    private void sendAction(int elevatorId, int sequence, int currentFloor, ElevatorSubsystem.Action action, SocketAddress address) throws IOException {
+        int targetFloor = WireProtocol.NO_FLOOR;
+        if (action == ElevatorSubsystem.Action.MOVE_TO) {
+            targetFloor = activeTrips.get(elevatorId).getStops().first();
+            moveRuns.put(elevatorId, new MoveRun(sequence, targetFloor, address));
+        } else {
+            moveRuns.remove(elevatorId);
+        }
+
+        ByteBuffer sendData = reactor.acquireBuffer();
+        WireProtocol.encodeActionReply(sendData, sequence, action, targetFloor);
+        reactor.sendToElevatorCar(sendData, address);
+
+        int direction = 0;
+        switch (action) {
+            case UP:
+                direction = 1;
+                elevatorMoves.incrementAndGet();
                 break;
-                }
+            case DOWN:
+                direction = -1;
+                elevatorMoves.incrementAndGet();
+                break;
+            case MOVE_TO:
+                // The moves of a run are counted as the car reports its arrivals
+                direction = targetFloor > currentFloor ? 1 : -1;
+                break;
+        }
+
+        if (direction != 0) {
+            verifyArrivalLater(elevatorId, currentFloor + direction);
+        }
+    }
+
+    /**
+     * Verify that an elevator car reaches a floor within 2s of the time a move takes
+     * @param elevatorId the elevator car id
+     * @param expectedFloor the floor the car is moving to
+     */
+    private void verifyArrivalLater(int elevatorId, int expectedFloor) {
+        // Change to 200 for testing purposes
+        TimingWheel.shared().schedule(() -> verifyElevatorCarArrival(elevatorId, expectedFloor), ElevatorCar.getMoveTime() + 2000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Push an action to every idle elevator car that subscribed for one. Called whenever something
+     * happened that may give work to an idle car (a call was queued, a trip was released by a disabled
+     * car, a trip was assigned or completed or a car retired while calls are still pending, or all
+     * requests were completed).
+     */
+    private void wakeIdleElevatorCars() {
+        for (Integer elevatorId : idleSubscriptions.keySet()) {
+            wakeIdleElevatorCar(elevatorId);
+        }
+    }
+
+    /**
+     * Answer the parked subscription of an idle elevator car if the scheduler now has an action for it,
+     * the subscription stays parked while the car would only be told to stay IDLE
+     *
+     * @param elevatorId the elevator car id
+     */
+    private void wakeIdleElevatorCar(int elevatorId) {
+        int dispatchChangesBefore = dispatchChanges.get();
+        synchronized (getElevatorCarLock(elevatorId)) {
+            IdleSubscription subscription = idleSubscriptions.get(elevatorId);
+            if (subscription == null) {
+                return;
             }
-        } catch (SocketException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            // Ensure the socket is closed to release resources
-            if (floorSendReceiveSocket != null && !floorSendReceiveSocket.isClosed()) {
-                floorSendReceiveSocket.close();
+            ElevatorSubsystem.Action action = disabledElevatorCars.contains(elevatorId) ? ElevatorSubsystem.Action.QUIT : getNextAction(elevatorId, subscription.currentFloor, subscription.multiFloor);
+            if (action == ElevatorSubsystem.Action.IDLE) {
+                return;
+            }
+            idleSubscriptions.remove(elevatorId);
+            try {
+                sendAction(elevatorId, subscription.sequence, subscription.currentFloor, action, subscription.address);
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
-        requestsComplete = true;
+        wakeIdleElevatorCarsAfterDispatch(dispatchChangesBefore);
     }
 
-    public void SendDisplayInfoToFloorSubsystem(int elevatorCarID, int currentFloor) {
-        try {
-            floorSendSocket = new DatagramSocket();
-            floorSendSocket.setSoTimeout(60000);
-        } catch (SocketException se) {
-            se.printStackTrace();
+    /**
+     * Offer the pending calls again to the idle cars if the dispatch changed since it was counted: a car
+     * that took a trip is now further from the other calls, a car that completed one is somewhere else,
+     * and a retired car no longer competes, so an idle car a dispatch policy refused the calls to may now
+     * be the closest one. Push delivery relies on this: every event that can change the answer to a
+     * parked car wakes it. Called without any car lock held, since waking a car takes its lock.
+     *
+     * @param dispatchChangesBefore the dispatch changes counted before the car asked for an action
+     */
+    private void wakeIdleElevatorCarsAfterDispatch(int dispatchChangesBefore) {
+        if (dispatchChanges.get() != dispatchChangesBefore && !requestsQueue.isEmpty()) {
+            wakeIdleElevatorCars();
         }
-        byte[] sendData; // data to be sent
+    }
 
-        try {
-            ByteBuffer byteBuffer = ByteBuffer.allocate(Integer.BYTES * 2);
-            byteBuffer.putInt(elevatorCarID);
-            byteBuffer.putInt(currentFloor);
-            sendData = byteBuffer.array();
-            DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length,
-                    InetAddress.getLocalHost(), 80);
+    /**
+     * Decodes an elevator call sent by the floor subsystem and adds it to the requests
+     *
+     * @param packet the received packet
+     */
+    void handleFloorRequest(ByteBuffer packet) {
+        if (!WireProtocol.isMessage(packet, WireProtocol.HALL_CALL)) {
+            Log.warn("[SCHEDULER] Dropped malformed elevator call");
+            return;
+        }
+        WireProtocol.readHeader(packet, WireProtocol.HALL_CALL);
+        Date timestamp = new Date(packet.getLong());
+
+        //Decode the starting floor, target floor and direction
+        int startingFloor = packet.getInt();
+        int targetFloor = packet.getInt();
+        String direction = WireProtocol.readDirection(packet);
+        if (!ElevatorCall.isValid(startingFloor, targetFloor, direction.equals("Up"))) {
+            Log.warn("[SCHEDULER] Dropped invalid elevator call from floor %d to floor %d going %s", startingFloor, targetFloor, direction);
+            return;
+        }
+        ElevatorCall elevatorCall = new ElevatorCall(timestamp, startingFloor, targetFloor, direction);
 
-            floorSendSocket.send(sendPacket);
+        this.addRequest(elevatorCall);
+    }
 
-        } catch (SocketException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            // Ensure the socket is closed to release resources
-            if (floorSendSocket != null && !floorSendSocket.isClosed()) {
-                floorSendSocket.close();
-            }
+    public void SendDisplayInfoToFloorSubsystem(int elevatorCarID, int currentFloor) {
+        if (reactor != null) {
+            reactor.sendDisplayInfo(elevatorCarID, currentFloor);
         }
     }
 
     /**
-     * Starts a background thread that listens for fault notifications on a specific UDP port.
-     * This method creates a socket to listen for incoming fault messages from elevator cars indicating
-     * issues such as door faults. Upon receiving a fault message, it handles the message by calling
-     * {@code handleFaultMessage}.
+     * Decodes a fault message received from an elevator car
      *
-     * This listener runs in a separate thread to avoid blocking the main application flow and continues
-     * listening until the thread is interrupted.
-     */
-    private void listenForFaultNotifications() {
-        Thread faultListenerThread = new Thread(() -> {
-            try (DatagramSocket socket = new DatagramSocket(100)) {
-                byte[] buffer = new byte[1024];
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-
-                while (!Thread.currentThread().isInterrupted()) {
-                    socket.receive(packet);
-                    String faultMessage = new String(packet.getData(), 0, packet.getLength());
-                    handleFaultMessage(faultMessage);
-                }
-            } catch (SocketException e) {
-                System.err.println("SocketException in fault listener: " + e.getMessage());
-            } catch (IOException e) {
-                System.err.println("IOException in fault listener: " + e.getMessage());
-            }
-        });
-        faultListenerThread.start();
+     * @param packet the received packet
+     */
+    void handleFaultMessage(ByteBuffer packet) {
+        byte[] message = new byte[packet.remaining()];
+        packet.get(message);
+        handleFaultMessage(new String(message));
     }
 
     /**
@@ -538,20 +912,40 @@ public class Scheduler {
      *
      * @param faultMessage The received fault message in the format "DOOR_FAULT:{elevatorId}".
      */
-    private void handleFaultMessage(String faultMessage) {
-        System.out.println("Received fault message: " + faultMessage);
+    void handleFaultMessage(String faultMessage) {
+        Log.info("Received fault message: %s", faultMessage);
         // Example fault message format: "DOOR_FAULT:3"
         if (faultMessage.startsWith("PERM_DISABLE:")) {
-            int elevatorId = Integer.parseInt(faultMessage.split(":")[1]);
-            disabledElevatorCars.add(elevatorId);
-            requestsQueue.add(activeTrips.remove(elevatorId));// Add the active trip back to queue so that it can be serviced by another elevator
-            System.out.println("Elevator car " + elevatorId + " has been permanently disabled due to a door fault.");
+            int elevatorId = parseFaultElevatorId(faultMessage);
+            if (elevatorId >= 0) {
+                disableElevatorCar(elevatorId);
+                Log.warn("Elevator car %d has been permanently disabled due to a door fault.", elevatorId);
+            }
         } else if (faultMessage.startsWith("TEMP_DISABLE:")) {
-            int elevatorId = Integer.parseInt(faultMessage.split(":")[1]);
-            disabledElevatorCars.add(elevatorId);
-            requestsQueue.add(activeTrips.remove(elevatorId));// Add the active trip back to queue so that it can be serviced by another elevator
-            System.out.println("Elevator car " + elevatorId + " has been temporarily disabled due to a potential door fault.");
+            int elevatorId = parseFaultElevatorId(faultMessage);
+            if (elevatorId >= 0) {
+                disableElevatorCar(elevatorId);
+                Log.warn("Elevator car %d has been temporarily disabled due to a potential door fault.", elevatorId);
+            }
+        }
+    }
+
+    /**
+     * @param faultMessage a fault message in the format "{FAULT}:{elevatorId}"
+     * @return the id of the elevator car of the fault, -1 if the message does not hold a valid id
+     */
+    private static int parseFaultElevatorId(String faultMessage) {
+        String id = faultMessage.substring(faultMessage.indexOf(':') + 1).trim();
+        try {
+            int elevatorId = Integer.parseInt(id);
+            if (elevatorId >= 0) {
+                return elevatorId;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
         }
+        Log.warn("[SCHEDULER] Dropped malformed fault message: %s", faultMessage);
+        return -1;
     }
 
 
@@ -561,12 +955,40 @@ public class Scheduler {
      * @param expectedFloor The floor the elevator should be on
      */
     private void verifyElevatorCarArrival(int elevatorId, int expectedFloor) {
-        if (elevatorCarPositions.get(elevatorId) == expectedFloor) {
+        Integer position = elevatorCarPositions.get(elevatorId);
+        if (position != null && position == expectedFloor) {
             return;
         }
 
-        System.out.println(String.format("[SCHEDULER] FAULT DETECTED: Elevator car %d failed to arrive at floor %d", elevatorId, expectedFloor));
-        disabledElevatorCars.add(elevatorId);
-        requestsQueue.add(activeTrips.remove(elevatorId));  // Add the active trip back to queue so that it can be serviced by another elevator
+        Log.warn("[SCHEDULER] FAULT DETECTED: Elevator car %d failed to arrive at floor %d", elevatorId, expectedFloor);
+        disableElevatorCar(elevatorId);
+    }
+
+    /**
+     * Remove an elevator car from service and add its active trip back to the queue so that it can be
+     * serviced by another elevator
+     * @param elevatorId The ID of the disabled elevator car
+     */
+    void disableElevatorCar(int elevatorId) {
+        synchronized (getElevatorCarLock(elevatorId)) {
+            if (disabledElevatorCars.contains(elevatorId)) {
+                // Already out of service, for instance after two missed arrivals
+                return;
+            }
+            EventJournal journal = this.journal;
+            if (journal != null) {
+                journal.fault(metrics.now(), elevatorId);
+            }
+            disabledElevatorCars.add(elevatorId);
+            metrics.carStateChanged(elevatorId, SchedulerMetrics.CarState.FAULTED);
+            ElevatorCall trip = activeTrips.remove(elevatorId);
+            activeTripIndex.remove(elevatorId);
+            moveRuns.remove(elevatorId);
+            if (trip != null) {
+                requestsQueue.add(trip);
+            }
+            publishCar(elevatorId, SchedulerMetrics.CarState.FAULTED);
+        }
+        wakeIdleElevatorCars();
     }
 }
\ No newline at end of file
@@ -0,0 +1,229 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Key performance indicators of the elevator system, recorded by the Scheduler:
+ * <ul>
+ *   <li>waiting time of every passenger, from the call reaching the scheduler to the doors opening at its starting floor</li>
+ *   <li>ride time of every passenger, from the doors opening at its starting floor to the doors opening at its destination</li>
+ *   <li>time every car spent moving, idle, with its doors open and out of service</li>
+ *   <li>number of pending calls, sampled whenever a call is queued or assigned</li>
+ *   <li>time taken by the scheduler to decide the next action of a car</li>
+ * </ul>
+ * Times are read from a clock that is the system clock by default and the virtual clock in a simulation,
+ * except for the decision latency which is always measured in real nanoseconds.
+ */
+public class SchedulerMetrics {
+    public static final String EXPORT_INTERVAL_PROPERTY = "elevator.metricsInterval";
+
+    /**
+     * What an elevator car is doing, as told by its last action
+     */
+    public enum CarState {
+        MOVING, IDLE, DOORS, FAULTED, STOPPED
+    }
+
+    private final Histogram waitTime = new Histogram("Waiting time", "ms");
+    private final Histogram rideTime = new Histogram("Ride time", "ms");
+    private final Histogram queueDepth = new Histogram("Pending calls", "calls");
+    private final Histogram decisionLatency = new Histogram("Decision latency", "ns");
+    private final Map<Integer, CarTimes> carTimes = new ConcurrentHashMap<>();
+    private volatile LongSupplier clock = System::currentTimeMillis;
+    private ScheduledExecutorService exporter;
+
+    /**
+     * Time an elevator car spent in each state
+     */
+    private static final class CarTimes {
+        private final long[] totals = new long[CarState.values().length];
+        private CarState state;
+        private long since;
+
+        synchronized void enter(CarState next, long now) {
+            if (state != null) {
+                totals[state.ordinal()] += now - since;
+            }
+            state = next;
+            since = now;
+        }
+
+        synchronized long timeIn(CarState of, long now) {
+            return totals[of.ordinal()] + (state == of ? now - since : 0);
+        }
+    }
+
+    /**
+     * @return the current time of the clock in milliseconds
+     */
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Replace the clock the metrics are timed with, such as the virtual clock of a simulation
+     * @param clock supplier of the current time in milliseconds
+     */
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Stamp an elevator call with the time it reached the scheduler
+     * @param elevatorCall the received call
+     */
+    public void callReceived(ElevatorCall elevatorCall) {
+        elevatorCall.setReceivedTime(now());
+    }
+
+    /**
+     * Record the passengers of a trip getting in or out of a car whose doors open at a floor
+     *
+     * @param trip the trip of the car, with the calls merged into it
+     * @param floor the floor the doors open at
+     */
+    public void doorsOpened(ElevatorCall trip, int floor) {
+        long now = now();
+        passengerAtFloor(trip, floor, now);
+        for (ElevatorCall call : trip.getMergedCalls()) {
+            passengerAtFloor(call, floor, now);
+        }
+    }
+
+    private void passengerAtFloor(ElevatorCall call, int floor, long now) {
+        if (call.getPickupTime() < 0) {
+            if (call.getStartingFloor() == floor) {
+                call.setPickupTime(now);
+                if (call.getReceivedTime() >= 0) {
+                    waitTime.record(now - call.getReceivedTime());
+                }
+            }
+        } else if (!call.isDelivered() && call.getDestinationFloor() == floor) {
+            call.setDelivered();
+            rideTime.record(now - call.getPickupTime());
+        }
+    }
+
+    /**
+     * Record what an elevator car does from now on
+     *
+     * @param elevatorId the elevator car id
+     * @param state the new state of the car
+     */
+    public void carStateChanged(int elevatorId, CarState state) {
+        carTimes.computeIfAbsent(elevatorId, id -> new CarTimes()).enter(state, now());
+    }
+
+    /**
+     * Record the state an action puts an elevator car in
+     *
+     * @param elevatorId the elevator car id
+     * @param action the action assigned to the car
+     */
+    public void actionAssigned(int elevatorId, ElevatorSubsystem.Action action) {
+        carStateChanged(elevatorId, stateOf(action));
+    }
+
+    /**
+     * @param action an action assigned to an elevator car
+     * @return the state the action puts the car in
+     */
+    public static CarState stateOf(ElevatorSubsystem.Action action) {
+        switch (action) {
+            case UP:
+            case DOWN:
+            case MOVE_TO:
+                return CarState.MOVING;
+            case TOGGLE_DOORS:
+                return CarState.DOORS;
+            case QUIT:
+                return CarState.STOPPED;
+            default:
+                return CarState.IDLE;
+        }
+    }
+
+    public void recordQueueDepth(int pendingCalls) {
+        queueDepth.record(pendingCalls);
+    }
+
+    public void recordDecisionLatency(long nanos) {
+        decisionLatency.record(nanos);
+    }
+
+    public Histogram getWaitTime() {
+        return waitTime;
+    }
+
+    public Histogram getRideTime() {
+        return rideTime;
+    }
+
+    public Histogram getQueueDepth() {
+        return queueDepth;
+    }
+
+    public Histogram getDecisionLatency() {
+        return decisionLatency;
+    }
+
+    /**
+     * @param elevatorId the elevator car id
+     * @param state the state of the car
+     * @return the time the car spent in the given state so far in milliseconds
+     */
+    public long getCarTime(int elevatorId, CarState state) {
+        CarTimes times = carTimes.get(elevatorId);
+        return times == null ? 0 : times.timeIn(state, now());
+    }
+
+    /**
+     * @return the metrics formatted as report lines
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        lines.add(waitTime.toString());
+        lines.add(rideTime.toString());
+        lines.add(queueDepth.toString());
+        lines.add(decisionLatency.toString());
+        for (int elevatorId : new TreeMap<>(carTimes).keySet()) {
+            lines.add(String.format("Elevator car %d: moving=%d idle=%d doors=%d faulted=%d ms", elevatorId,
+                    getCarTime(elevatorId, CarState.MOVING), getCarTime(elevatorId, CarState.IDLE),
+                    getCarTime(elevatorId, CarState.DOORS), getCarTime(elevatorId, CarState.FAULTED)));
+        }
+        return lines;
+    }
+
+    /**
+     * Print the report
+     */
+    public void export() {
+        for (String line : report()) {
+            System.out.println("[METRICS] " + line);
+        }
+    }
+
+    /**
+     * Export the report periodically until {@link #stopPeriodicExport()} is called
+     * @param intervalSeconds the time between two exports, nothing is exported if not positive
+     */
+    public synchronized void startPeriodicExport(long intervalSeconds) {
+        if (intervalSeconds <= 0 || exporter != null) {
+            return;
+        }
+        exporter = Threads.newScheduledExecutor("scheduler-metrics-export");
+        exporter.scheduleAtFixedRate(this::export, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopPeriodicExport() {
+        if (exporter != null) {
+            exporter.shutdown();
+            exporter = null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single threaded event loop serving every endpoint of the Scheduler.
+ *
+ * The elevator, floor and fault services are bound to one endpoint of the transport and the messages
+ * received on it are handed to the scheduler one at a time. Messages are pooled buffers of the
+ * transport, so no socket or buffer is created per message.
+ *
+ * Floor display updates are published once to the display service, whatever the number of floor
+ * displays subscribed to it. They are coalesced: the latest floor of each car is kept and sent by the
+ * timing wheel at most once per display interval, so a car reporting several floors within an interval
+ * costs a single update.
+ *
+ * Like the blocking listeners it replaces, the loop stops serving the elevator service when no elevator
+ * car contacted the scheduler for one minute and stops serving the floor service, signalling that all
+ * requests were received, after two minutes without a new call. A message whose handling fails is
+ * logged and dropped, the loop goes on serving the other messages.
+ */
+public class SchedulerReactor implements Runnable {
+    private static final long ELEVATOR_TIMEOUT = 60000; // stop serving the elevator cars if no car contacted the scheduler for one minute
+    private static final long FLOOR_TIMEOUT = 120000; // no more requests if no call was received for two minutes
+    private static final long DISPLAY_INTERVAL = 100; // milliseconds between two display updates of a car
+
+    private final Scheduler scheduler;
+    private final Transport transport;
+    private final Transport.Endpoint endpoint;
+    private final SocketAddress displayAddress;
+    private final AtomicInteger displaySequence = new AtomicInteger();
+    private final Map<Integer, Integer> pendingDisplay = new ConcurrentHashMap<>(); // latest floor of each car not yet sent to the displays
+    private final AtomicBoolean displayFlushScheduled = new AtomicBoolean();
+    private boolean elevatorServiceOpen = true;
+    private boolean floorServiceOpen = true;
+    private long elevatorDeadline;
+    private long floorDeadline;
+
+    /**
+     * Bind the scheduler endpoint
+     * @param scheduler the scheduler handling the received messages
+     * @param transport the transport connecting the scheduler to the subsystems
+     * @throws IOException if the endpoint cannot be bound
+     */
+    public SchedulerReactor(Scheduler scheduler, Transport transport) throws IOException {
+        this.scheduler = scheduler;
+        this.transport = transport;
+        endpoint = transport.bind(Transport.Service.ELEVATOR, Transport.Service.FLOOR, Transport.Service.FAULT);
+        displayAddress = transport.addressOf(Transport.Service.DISPLAY);
+
+        long now = System.currentTimeMillis();
+        elevatorDeadline = now + ELEVATOR_TIMEOUT;
+        floorDeadline = now + FLOOR_TIMEOUT;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (elevatorServiceOpen || floorServiceOpen) {
+                long timeout = nextDeadline() - System.currentTimeMillis();
+                ByteBuffer message = timeout > 0 ? endpoint.receive(timeout) : null;
+                if (message != null) {
+                    try {
+                        dispatch(message, endpoint.getService(), endpoint.getSender());
+                    } catch (RuntimeException e) {
+                        // One message the scheduler cannot handle must not stop the loop serving every endpoint
+                        Log.error("[SCHEDULER] Dropped a message to the %s service: %s", endpoint.getService(), e.toString());
+                    } finally {
+                        transport.releaseBuffer(message);
+                    }
+                }
+                checkDeadlines();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            flushDisplay();
+            endpoint.close();
+        }
+    }
+
+    /**
+     * Hand a message to the scheduler, messages to a service that is no longer served are dropped
+     */
+    private void dispatch(ByteBuffer message, Transport.Service service, SocketAddress sender) {
+        switch (service) {
+            case ELEVATOR:
+                if (elevatorServiceOpen) {
+                    elevatorDeadline = System.currentTimeMillis() + ELEVATOR_TIMEOUT;
+                    scheduler.handleElevatorRequest(message, sender);
+                }
+                break;
+            case FLOOR:
+                if (floorServiceOpen) {
+                    floorDeadline = System.currentTimeMillis() + FLOOR_TIMEOUT;
+                    scheduler.handleFloorRequest(message);
+                }
+                break;
+            default:
+                scheduler.handleFaultMessage(message);
+                break;
+        }
+    }
+
+    private long nextDeadline() {
+        long deadline = Long.MAX_VALUE;
+        if (elevatorServiceOpen) {
+            deadline = Math.min(deadline, elevatorDeadline);
+        }
+        if (floorServiceOpen) {
+            deadline = Math.min(deadline, floorDeadline);
+        }
+        return deadline;
+    }
+
+    private void checkDeadlines() {
+        long now = System.currentTimeMillis();
+        if (elevatorServiceOpen && now >= elevatorDeadline) {
+            elevatorServiceOpen = false;
+            scheduler.elevatorListenerStopped();
+        }
+        if (floorServiceOpen && now >= floorDeadline) {
+            floorServiceOpen = false;
+            //signal that no more requests available
+            scheduler.signalRequestsComplete();
+        }
+    }
+
+    /**
+     * Send a message to an elevator car through the scheduler endpoint, may be called from any thread
+     *
+     * @param message a buffer of the transport holding the message, released once sent
+     * @param address the address of the elevator car
+     */
+    public void sendToElevatorCar(ByteBuffer message, SocketAddress address) throws IOException {
+        endpoint.send(message, address);
+    }
+
+    /**
+     * Publish the current floor of an elevator car to the floor displays with the next display update, may
+     * be called from any thread
+     *
+     * @param elevatorCarID the elevator car id
+     * @param currentFloor the current floor of the elevator car
+     */
+    public void sendDisplayInfo(int elevatorCarID, int currentFloor) {
+        pendingDisplay.put(elevatorCarID, currentFloor);
+        if (displayFlushScheduled.compareAndSet(false, true)) {
+            TimingWheel.shared().schedule(this::flushDisplay, DISPLAY_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Publish one display update per car whose floor changed since the previous flush
+     */
+    private void flushDisplay() {
+        // Cleared first, so a floor put after the cars are read schedules the next flush
+        displayFlushScheduled.set(false);
+        for (Map.Entry<Integer, Integer> entry : pendingDisplay.entrySet()) {
+            int elevatorCarID = entry.getKey();
+            int currentFloor = entry.getValue();
+            // Kept if the car reported a newer floor meanwhile, it goes with the next flush
+            if (!pendingDisplay.remove(elevatorCarID, currentFloor)) {
+                continue;
+            }
+            ByteBuffer buffer = transport.acquireBuffer();
+            try {
+                WireProtocol.encodeDisplayUpdate(buffer, displaySequence.incrementAndGet(), elevatorCarID, currentFloor);
+                endpoint.send(buffer, displayAddress);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Take a cleared buffer from the pool of the transport, to be given to {@link #sendToElevatorCar}
+     */
+    public ByteBuffer acquireBuffer() {
+        return transport.acquireBuffer();
+    }
+}
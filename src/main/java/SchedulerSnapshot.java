@@ -0,0 +1,179 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of the state of the Scheduler at one point in time, for dashboards and monitoring.
+ *
+ * The scheduler publishes a new snapshot whenever the state of a car or the number of pending calls
+ * changes: it copies the previous snapshot with the changed car replaced and swaps it in with a
+ * compare-and-set. Readers only read a volatile reference, so any number of them can poll
+ * {@link Scheduler#getSnapshot()} as often as they like without ever taking a lock of the scheduler,
+ * and what they read never changes under them. Snapshots are ordered by their version.
+ */
+public final class SchedulerSnapshot {
+    static final SchedulerSnapshot EMPTY = new SchedulerSnapshot(0, 0, 0, new Car[0]);
+
+    private final long version;
+    private final long time;
+    private final int pendingCalls;
+    private final Car[] cars; // ordered by elevator car id
+
+    /**
+     * State of one elevator car
+     */
+    public static final class Car {
+        private final int elevatorId;
+        private final int floor;
+        private final String direction;
+        private final int[] stops;
+        private final int passengers;
+        private final SchedulerMetrics.CarState state;
+
+        /**
+         * @param elevatorId the elevator car id
+         * @param floor the last floor the car reported, -1 if it never reported one
+         * @param direction the direction of the trip of the car, "Up" or "Down", null if it has no trip
+         * @param stops the remaining stops of the trip, in the order the car serves them
+         * @param passengers the passengers of the trip that are in the car
+         * @param state what the car is doing, null if it was not told anything yet
+         */
+        Car(int elevatorId, int floor, String direction, int[] stops, int passengers, SchedulerMetrics.CarState state) {
+            this.elevatorId = elevatorId;
+            this.floor = floor;
+            this.direction = direction;
+            this.stops = stops;
+            this.passengers = passengers;
+            this.state = state;
+        }
+
+        public int getElevatorId() {
+            return elevatorId;
+        }
+
+        public int getFloor() {
+            return floor;
+        }
+
+        public String getDirection() {
+            return direction;
+        }
+
+        /**
+         * @return a copy of the remaining stops of the trip of the car
+         */
+        public int[] getStops() {
+            return stops.clone();
+        }
+
+        public int getPassengers() {
+            return passengers;
+        }
+
+        public SchedulerMetrics.CarState getState() {
+            return state;
+        }
+
+        /**
+         * @return true unless the car was disabled by a fault or told to quit
+         */
+        public boolean isInService() {
+            return state != SchedulerMetrics.CarState.FAULTED && state != SchedulerMetrics.CarState.STOPPED;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("car %d at floor %d, %s, %s, stops %s, %d passengers", elevatorId, floor,
+                    state, direction == null ? "no trip" : direction, Arrays.toString(stops), passengers);
+        }
+    }
+
+    private SchedulerSnapshot(long version, long time, int pendingCalls, Car[] cars) {
+        this.version = version;
+        this.time = time;
+        this.pendingCalls = pendingCalls;
+        this.cars = cars;
+    }
+
+    /**
+     * @param car the new state of a car
+     * @param pendingCalls the number of pending calls
+     * @param time the time of the change
+     * @return the next snapshot, with the car added or replaced
+     */
+    SchedulerSnapshot withCar(Car car, int pendingCalls, long time) {
+        int index = indexOf(car.elevatorId);
+        Car[] next;
+        if (index >= 0) {
+            next = cars.clone();
+            next[index] = car;
+        } else {
+            int insertion = -index - 1;
+            next = new Car[cars.length + 1];
+            System.arraycopy(cars, 0, next, 0, insertion);
+            next[insertion] = car;
+            System.arraycopy(cars, insertion, next, insertion + 1, cars.length - insertion);
+        }
+        return new SchedulerSnapshot(version + 1, time, pendingCalls, next);
+    }
+
+    /**
+     * @param pendingCalls the number of pending calls
+     * @param time the time of the change
+     * @return the next snapshot, with the cars of this one
+     */
+    SchedulerSnapshot withPendingCalls(int pendingCalls, long time) {
+        return new SchedulerSnapshot(version + 1, time, pendingCalls, cars);
+    }
+
+    /**
+     * @return the number of changes published before this snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the time of the change that produced this snapshot, on the clock of the scheduler metrics
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public int getPendingCalls() {
+        return pendingCalls;
+    }
+
+    /**
+     * @return the cars the scheduler heard of, ordered by id
+     */
+    public List<Car> getCars() {
+        return Collections.unmodifiableList(Arrays.asList(cars));
+    }
+
+    /**
+     * @param elevatorId the elevator car id
+     * @return the state of the car, null if the scheduler never heard of it
+     */
+    public Car getCar(int elevatorId) {
+        int index = indexOf(elevatorId);
+        return index >= 0 ? cars[index] : null;
+    }
+
+    private int indexOf(int elevatorId) {
+        int low = 0;
+        int high = cars.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = cars[middle].elevatorId;
+            if (id < elevatorId) {
+                low = middle + 1;
+            } else if (id > elevatorId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,686 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transport for subsystems running in separate JVMs on the same host, through memory mapped files
+ * instead of loopback datagrams.
+ *
+ * Binding a service creates the file of the service in a directory shared by the processes, chosen with
+ * -Delevator.sharedMemoryDir (a directory of the temporary directory by default). The file is split in
+ * connection slots, each a pair of single-producer single-consumer rings: one carrying the messages of a
+ * client endpoint to the service, the other the replies of the service to the client. A client endpoint
+ * claims a free slot of a service the first time it sends to it and gives it back when closed. The
+ * number of slots of a service file is set by the binding process with -Delevator.sharedMemorySlots (64
+ * by default); sending to a service whose slots are all taken fails with an IOException. A slot records
+ * the process id and start time of its owner, so the slot of a client process that died without closing
+ * its endpoint is reclaimed by the next client finding no free slot. A new owner never gets the replies
+ * left in the slot, and the requests a dead owner left unread are marked for the service to skip rather
+ * than delivered as sent by the new owner.
+ * <pre>
+ *   header  int magic | int slots | int ring capacity | int slots in use
+ *   slot    int state | long owner pid | long owner start time | long first request of the owner |
+ *           request ring | reply ring
+ *   ring    long head (consumer) | long tail (producer) | records
+ *   record  int length | message, padded to 8 bytes; a length of -1 pads the end of the ring
+ * </pre>
+ * Head and tail each sit on a cache line of their own and are read with acquire and written with
+ * release semantics through VarHandles, so sending and receiving are a copy into or out of the mapping
+ * and make no system call. A receiver with nothing to read spins for a while, then yields, then parks
+ * for growing periods of at most a millisecond, since another process cannot unpark it.
+ *
+ * Closing or binding a service again retires its previous file by clearing the magic of its header. A
+ * client sending through a retired file drops its slot and maps the current file of the service, so the
+ * clients of a scheduler keep working once it is restarted.
+ *
+ * Sends from several threads of one process to the same ring are serialized by a lock of that process,
+ * so every ring has a single producer. A message sent to a service nobody is bound to, or to a full
+ * ring, is dropped as a datagram would be.
+ *
+ * A ring has a single consumer, so published services are not carried through the mapping: they are
+ * multicast by a {@link UdpTransport} sharing the buffer pool of this transport, and any number of
+ * processes of the host subscribe to them.
+ */
+public class SharedMemoryTransport extends Transport {
+    public static final String DIRECTORY_PROPERTY = "elevator.sharedMemoryDir";
+    public static final String SLOTS_PROPERTY = "elevator.sharedMemorySlots";
+
+    private static final int MAGIC = 0x454c5652;
+    private static final int RETIRED = 0; // magic of a file replaced by a new binding, or closed
+    private static final int DEFAULT_SLOTS = 64;
+    private static final int RING_CAPACITY = 16 << 10; // bytes of records of one ring, a power of two
+    private static final int CACHE_LINE = 64;
+    private static final int HEADER_SIZE = CACHE_LINE;
+    private static final int PADDING = -1;
+    private static final int FREE = 0;
+    private static final int CLAIMED = 1;
+    private static final int CLAIMING = 2; // the owner fields are being written
+    private static final int BUFFER_SIZE = 256;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Header fields
+    private static final int MAGIC_OFFSET = 0;
+    private static final int SLOTS_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SLOTS_IN_USE_OFFSET = 12;
+
+    // Slot fields, from the state of the slot
+    private static final int OWNER_PID_OFFSET = 8;
+    private static final int OWNER_START_OFFSET = 16;
+    private static final int REQUEST_SKIP_OFFSET = 24;
+
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path directory;
+    private final int slots; // connection slots of the files of the services bound through this transport
+    private final long ownerPid; // identity of the process recorded in the slots claimed through this transport
+    private final long ownerStart;
+    private final UdpTransport publishedTransport = new UdpTransport(this); // carries the published services
+    private Endpoint publisher; // sends the messages of the published services, opened on first use
+
+    /**
+     * Address of a service, or of the client holding a slot of a service
+     */
+    static final class SharedMemoryAddress extends SocketAddress {
+        private final Service service;
+        private final int slot; // -1 for the service itself
+
+        SharedMemoryAddress(Service service, int slot) {
+            this.service = service;
+            this.slot = slot;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SharedMemoryAddress && ((SharedMemoryAddress) other).service == service
+                    && ((SharedMemoryAddress) other).slot == slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return service.hashCode() * 31 + slot;
+        }
+
+        @Override
+        public String toString() {
+            return slot < 0 ? "shm:" + service : "shm:" + service + "/" + slot;
+        }
+    }
+
+    /**
+     * Single-producer single-consumer ring of length prefixed records in a mapped file
+     */
+    private static final class Ring {
+        private final MappedByteBuffer file;
+        private final int headOffset;
+        private final int tailOffset;
+        private final int dataOffset;
+        private final int capacity;
+        private final int skipOffset; // position the consumer skips to, written by the producer; -1 if none
+
+        Ring(MappedByteBuffer file, int offset, int capacity, int skipOffset) {
+            this.file = file;
+            this.headOffset = offset;
+            this.tailOffset = offset + CACHE_LINE;
+            this.dataOffset = offset + CACHE_LINE * 2;
+            this.capacity = capacity;
+            this.skipOffset = skipOffset;
+        }
+
+        static int size(int capacity) {
+            return CACHE_LINE * 2 + capacity;
+        }
+
+        /**
+         * Append a message, called by the producer only
+         * @return false if the ring has no room for the message
+         */
+        boolean offer(ByteBuffer message) {
+            int length = message.remaining();
+            int recordLength = align(Integer.BYTES + length);
+            long tail = (long) LONGS.get(file, tailOffset);
+            long head = (long) LONGS.getAcquire(file, headOffset);
+            int index = (int) (tail & (capacity - 1));
+            int padding = capacity - index < recordLength ? capacity - index : 0;
+            if (recordLength > capacity || capacity - (tail - head) < recordLength + padding) {
+                return false;
+            }
+            if (padding > 0) {
+                file.putInt(dataOffset + index, PADDING);
+                tail += padding;
+                index = 0;
+            }
+            file.putInt(dataOffset + index, length);
+            file.put(dataOffset + index + Integer.BYTES, message, message.position(), length);
+            LONGS.setRelease(file, tailOffset, tail + recordLength);
+            return true;
+        }
+
+        /**
+         * Take the oldest message, called by the consumer only
+         * @param into the buffer the message is copied to, flipped once written
+         * @return false if the ring is empty
+         */
+        boolean poll(ByteBuffer into) {
+            long head = (long) LONGS.get(file, headOffset);
+            if (skipOffset >= 0) {
+                long skip = (long) LONGS.getAcquire(file, skipOffset);
+                if (skip > head) {
+                    // Messages of a previous producer, dropped
+                    head = skip;
+                    LONGS.setRelease(file, headOffset, head);
+                }
+            }
+            long tail = (long) LONGS.getAcquire(file, tailOffset);
+            if (head == tail) {
+                return false;
+            }
+            int index = (int) (head & (capacity - 1));
+            int length = file.getInt(dataOffset + index);
+            if (length == PADDING) {
+                head += capacity - index;
+                index = 0;
+                length = file.getInt(dataOffset);
+            }
+            long next = head + align(Integer.BYTES + length);
+            into.clear();
+            if (length > into.capacity()) {
+                // Cannot be a message of the elevator system, skipped
+                length = 0;
+            }
+            into.put(0, file, dataOffset + index + Integer.BYTES, length);
+            into.limit(length);
+            LONGS.setRelease(file, headOffset, next);
+            return length > 0;
+        }
+
+        /**
+         * Drop every message, called by the consumer only
+         */
+        void skipAll() {
+            LONGS.setRelease(file, headOffset, (long) LONGS.getAcquire(file, tailOffset));
+        }
+
+        /**
+         * Have the consumer drop every message sent so far, called by the producer only
+         */
+        void skipSent() {
+            LONGS.setRelease(file, skipOffset, (long) LONGS.get(file, tailOffset));
+        }
+
+        private static int align(int length) {
+            return (length + Long.BYTES - 1) & -Long.BYTES;
+        }
+    }
+
+    /**
+     * Mapping of the file of a service
+     */
+    private static final class ServiceFile {
+        private final Service service;
+        private final MappedByteBuffer file;
+        private final int slots;
+        private final Ring[] requests;
+        private final Ring[] replies;
+        private final Object[] replyLocks; // makes the threads of the process a single producer per reply ring
+
+        ServiceFile(Service service, MappedByteBuffer file) {
+            this.service = service;
+            this.file = file;
+            this.slots = file.getInt(SLOTS_OFFSET);
+            int capacity = file.getInt(CAPACITY_OFFSET);
+            int slotSize = CACHE_LINE + Ring.size(capacity) * 2;
+            requests = new Ring[slots];
+            replies = new Ring[slots];
+            replyLocks = new Object[slots];
+            for (int slot = 0; slot < slots; slot++) {
+                int offset = HEADER_SIZE + slot * slotSize;
+                requests[slot] = new Ring(file, offset + CACHE_LINE, capacity, offset + REQUEST_SKIP_OFFSET);
+                replies[slot] = new Ring(file, offset + CACHE_LINE + Ring.size(capacity), capacity, -1);
+                replyLocks[slot] = new Object();
+            }
+        }
+
+        static long size(int slots, int capacity) {
+            return HEADER_SIZE + (long) slots * (CACHE_LINE + Ring.size(capacity) * 2);
+        }
+
+        int stateOffset(int slot) {
+            return requests[slot].headOffset - CACHE_LINE;
+        }
+
+        /**
+         * Claim a free slot, or else the slot of a process that is not alive anymore
+         * @param ownerPid the process id of the new owner
+         * @param ownerStart the start time of the new owner process in milliseconds since the epoch, 0 if unknown
+         * @return a slot now owned by the caller, -1 if every slot is taken by a live process
+         */
+        int claimSlot(long ownerPid, long ownerStart) {
+            for (int slot = 0; slot < slots; slot++) {
+                if (INTS.compareAndSet(file, stateOffset(slot), FREE, CLAIMING)) {
+                    return takeSlot(slot, ownerPid, ownerStart, false);
+                }
+            }
+            for (int slot = 0; slot < slots; slot++) {
+                int stateOffset = stateOffset(slot);
+                if ((int) INTS.getAcquire(file, stateOffset) == CLAIMED
+                        && !isAlive((long) LONGS.getAcquire(file, stateOffset + OWNER_PID_OFFSET), (long) LONGS.getAcquire(file, stateOffset + OWNER_START_OFFSET))
+                        && INTS.compareAndSet(file, stateOffset, CLAIMED, CLAIMING)) {
+                    return takeSlot(slot, ownerPid, ownerStart, true);
+                }
+            }
+            return -1;
+        }
+
+        private int takeSlot(int slot, long ownerPid, long ownerStart, boolean reclaimed) {
+            int stateOffset = stateOffset(slot);
+            LONGS.setRelease(file, stateOffset + OWNER_PID_OFFSET, ownerPid);
+            LONGS.setRelease(file, stateOffset + OWNER_START_OFFSET, ownerStart);
+            int inUse;
+            do {
+                inUse = (int) INTS.getAcquire(file, SLOTS_IN_USE_OFFSET);
+            } while (inUse <= slot && !INTS.compareAndSet(file, SLOTS_IN_USE_OFFSET, inUse, slot + 1));
+            // Replies meant for the previous owner of the slot are not for us, nor are the requests a dead owner left
+            if (reclaimed) {
+                requests[slot].skipSent();
+            }
+            replies[slot].skipAll();
+            INTS.setRelease(file, stateOffset, CLAIMED);
+            return slot;
+        }
+
+        /**
+         * @return false if the process is gone, or if its pid now belongs to a process started later
+         */
+        private static boolean isAlive(long pid, long start) {
+            return ProcessHandle.of(pid)
+                    .map(process -> process.isAlive() && (start == 0 || startTimeOf(process) == 0 || startTimeOf(process) == start))
+                    .orElse(false);
+        }
+
+        void releaseSlot(int slot) {
+            INTS.setRelease(file, stateOffset(slot), FREE);
+        }
+
+        int slotsInUse() {
+            return (int) INTS.getAcquire(file, SLOTS_IN_USE_OFFSET);
+        }
+
+        /**
+         * Tell the clients of the file that the service is gone from it
+         */
+        void retire() {
+            INTS.setRelease(file, MAGIC_OFFSET, RETIRED);
+        }
+
+        boolean isRetired() {
+            return (int) INTS.getAcquire(file, MAGIC_OFFSET) != MAGIC;
+        }
+    }
+
+    /**
+     * Slot of a service held by a client endpoint
+     */
+    private static final class Connection {
+        private final ServiceFile serviceFile;
+        private final int slot;
+        private final SharedMemoryAddress serviceAddress;
+
+        Connection(ServiceFile serviceFile, int slot) {
+            this.serviceFile = serviceFile;
+            this.slot = slot;
+            this.serviceAddress = new SharedMemoryAddress(serviceFile.service, -1);
+        }
+    }
+
+    private class SharedMemoryEndpoint implements Endpoint {
+        private final List<ServiceFile> bound = new ArrayList<>(); // services served by the endpoint
+        private final List<FileLock> locks = new ArrayList<>(); // held while the services are bound
+        private final Map<Service, Connection> connections = new EnumMap<>(Service.class); // services the endpoint is a client of
+        private volatile Connection[] connectionArray = new Connection[0]; // copy read by the receiving thread
+        private volatile boolean closed;
+        private int nextSource; // source read first by the next receive, so no client starves the others
+        private SocketAddress sender;
+        private Service service;
+
+        @Override
+        public SocketAddress getAddress() {
+            return bound.isEmpty() ? null : new SharedMemoryAddress(bound.get(0).service, -1);
+        }
+
+        @Override
+        public void send(ByteBuffer message, SocketAddress target) throws IOException {
+            if (target instanceof InetSocketAddress && !closed) {
+                getPublisher().send(message, target);
+                return;
+            }
+            try {
+                if (!(target instanceof SharedMemoryAddress) || closed) {
+                    return;
+                }
+                SharedMemoryAddress address = (SharedMemoryAddress) target;
+                if (address.slot >= 0) {
+                    for (ServiceFile serviceFile : bound) {
+                        if (serviceFile.service == address.service) {
+                            synchronized (serviceFile.replyLocks[address.slot]) {
+                                serviceFile.replies[address.slot].offer(message);
+                            }
+                            return;
+                        }
+                    }
+                    return;
+                }
+                Connection connection = connect(address.service);
+                if (connection != null) {
+                    synchronized (connection) {
+                        connection.serviceFile.requests[connection.slot].offer(message);
+                    }
+                }
+            } finally {
+                releaseBuffer(message);
+            }
+        }
+
+        /**
+         * Get the slot of the endpoint in a service, claiming one on first use or once the file the slot
+         * is in was retired
+         * @return the connection, null if the service is not bound
+         * @throws IOException if every slot of the service is taken
+         */
+        private synchronized Connection connect(Service target) throws IOException {
+            Connection connection = connections.get(target);
+            if (connection != null && connection.serviceFile.isRetired()) {
+                // The service was closed or bound again, its slot in the old file is of no use
+                connections.remove(target);
+                connectionArray = connections.values().toArray(new Connection[0]);
+                connection = null;
+            }
+            if (connection == null) {
+                ServiceFile serviceFile = mapService(target);
+                if (serviceFile == null) {
+                    return null;
+                }
+                int slot = serviceFile.claimSlot(ownerPid, ownerStart);
+                if (slot < 0) {
+                    throw new IOException("Every one of the " + serviceFile.slots + " connection slots of the " + target + " service is taken");
+                }
+                connection = new Connection(serviceFile, slot);
+                connections.put(target, connection);
+                connectionArray = connections.values().toArray(new Connection[0]);
+            }
+            return connection;
+        }
+
+        @Override
+        public ByteBuffer receive(long timeout) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(timeout, 0));
+            ByteBuffer message = acquireBuffer();
+            int idle = 0;
+            while (!closed) {
+                if (poll(message)) {
+                    return message;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                if (idle < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+                    // Lets the other process run when both share a core
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(Math.min(Math.min(1000L << Math.min(idle - SPIN_TRIES - YIELD_TRIES, 10), MAX_PARK_NANOS), remaining));
+                }
+                idle++;
+            }
+            releaseBuffer(message);
+            return null;
+        }
+
+        /**
+         * Read one message from the request rings of the bound services or the reply rings of the connections
+         */
+        private boolean poll(ByteBuffer message) {
+            for (ServiceFile serviceFile : bound) {
+                int slots = serviceFile.slotsInUse();
+                for (int i = 0; i < slots; i++) {
+                    int slot = (nextSource + i) % slots;
+                    if (serviceFile.requests[slot].poll(message)) {
+                        nextSource = slot + 1;
+                        sender = new SharedMemoryAddress(serviceFile.service, slot);
+                        service = serviceFile.service;
+                        return true;
+                    }
+                }
+            }
+            for (Connection connection : connectionArray) {
+                if (connection.serviceFile.replies[connection.slot].poll(message)) {
+                    sender = connection.serviceAddress;
+                    service = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public SocketAddress getSender() {
+            return sender;
+        }
+
+        @Override
+        public Service getService() {
+            return service;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Connection connection : connections.values()) {
+                connection.serviceFile.releaseSlot(connection.slot);
+            }
+            for (ServiceFile serviceFile : bound) {
+                serviceFile.retire();
+                try {
+                    Files.deleteIfExists(serviceFile(serviceFile.service));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            for (FileLock lock : locks) {
+                try {
+                    lock.channel().close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Use the directory given by the elevator.sharedMemoryDir property
+     */
+    public SharedMemoryTransport() {
+        this(Paths.get(System.getProperty(DIRECTORY_PROPERTY, Paths.get(System.getProperty("java.io.tmpdir"), "elevator-shm").toString())));
+    }
+
+    /**
+     * Use the number of slots given by the elevator.sharedMemorySlots property
+     * @param directory the directory of the service files, shared by every process of the elevator system
+     */
+    public SharedMemoryTransport(Path directory) {
+        this(directory, Integer.getInteger(SLOTS_PROPERTY, DEFAULT_SLOTS));
+    }
+
+    /**
+     * @param directory the directory of the service files, shared by every process of the elevator system
+     * @param slots the number of clients a service bound through this transport can have at once
+     */
+    public SharedMemoryTransport(Path directory, int slots) {
+        this(directory, slots, ProcessHandle.current());
+    }
+
+    /**
+     * @param directory the directory of the service files, shared by every process of the elevator system
+     * @param slots the number of clients a service bound through this transport can have at once
+     * @param owner the process recorded as the owner of the slots claimed through this transport
+     */
+    SharedMemoryTransport(Path directory, int slots, ProcessHandle owner) {
+        if (slots < 1) {
+            throw new IllegalArgumentException("Invalid number of connection slots " + slots);
+        }
+        this.directory = directory;
+        this.slots = slots;
+        this.ownerPid = owner.pid();
+        this.ownerStart = startTimeOf(owner);
+    }
+
+    /**
+     * @return the start time of a process in milliseconds since the epoch, 0 if it is not known
+     */
+    private static long startTimeOf(ProcessHandle process) {
+        return process.info().startInstant().map(Instant::toEpochMilli).orElse(0L);
+    }
+
+    @Override
+    public Endpoint bind(Service... services) throws IOException {
+        if (services.length == 0) {
+            throw new IllegalArgumentException("No service to bind");
+        }
+        for (Service service : services) {
+            if (service.isPublished()) {
+                throw new IllegalArgumentException(service + " is published, subscribe to it instead");
+            }
+        }
+        Files.createDirectories(directory);
+        SharedMemoryEndpoint endpoint = new SharedMemoryEndpoint();
+        try {
+            for (Service service : services) {
+                // The lock is released by the operating system if the process dies
+                FileChannel lockChannel = FileChannel.open(directory.resolve(service + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock;
+                try {
+                    lock = lockChannel.tryLock();
+                } catch (OverlappingFileLockException e) {
+                    lock = null;
+                }
+                if (lock == null) {
+                    lockChannel.close();
+                    throw new BindException(service + " is already bound");
+                }
+                endpoint.locks.add(lock);
+                endpoint.bound.add(createService(service));
+            }
+        } catch (IOException e) {
+            endpoint.close();
+            throw e;
+        }
+        return endpoint;
+    }
+
+    @Override
+    public Endpoint subscribe(Service service) throws IOException {
+        return publishedTransport.subscribe(service);
+    }
+
+    @Override
+    public Endpoint open() {
+        return new SharedMemoryEndpoint();
+    }
+
+    @Override
+    public SocketAddress addressOf(Service service) throws IOException {
+        if (service.isPublished()) {
+            return publishedTransport.addressOf(service);
+        }
+        return new SharedMemoryAddress(service, -1);
+    }
+
+    private synchronized Endpoint getPublisher() throws IOException {
+        if (publisher == null) {
+            publisher = publishedTransport.open();
+        }
+        return publisher;
+    }
+
+    @Override
+    protected ByteBuffer allocateBuffer() {
+        return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private Path serviceFile(Service service) {
+        return directory.resolve(service + ".shm");
+    }
+
+    /**
+     * Create a new, empty file for a service. A previous file of the service, left by an endpoint that
+     * was not closed, is retired first so its clients move to the new one.
+     */
+    private ServiceFile createService(Service service) throws IOException {
+        Path path = serviceFile(service);
+        ServiceFile previous = mapService(service);
+        if (previous != null) {
+            previous.retire();
+        }
+        Files.deleteIfExists(path);
+        MappedByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            file = channel.map(FileChannel.MapMode.READ_WRITE, 0, ServiceFile.size(slots, RING_CAPACITY));
+        }
+        file.putInt(SLOTS_OFFSET, slots);
+        file.putInt(CAPACITY_OFFSET, RING_CAPACITY);
+        // Written last, a client seeing the magic sees the whole header
+        INTS.setRelease(file, MAGIC_OFFSET, MAGIC);
+        return new ServiceFile(service, file);
+    }
+
+    /**
+     * Map the file of a service bound by this or another process
+     * @return the mapping, null if the service is not bound or its file was retired
+     */
+    private ServiceFile mapService(Service service) throws IOException {
+        Path path = serviceFile(service);
+        MappedByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            file = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if ((int) INTS.getAcquire(file, MAGIC_OFFSET) != MAGIC
+                || ServiceFile.size(file.getInt(SLOTS_OFFSET), file.getInt(CAPACITY_OFFSET)) > file.capacity()) {
+            return null;
+        }
+        return new ServiceFile(service, file);
+    }
+}
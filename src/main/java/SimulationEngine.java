@@ -0,0 +1,303 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Discrete-event simulation of the elevator system running on a virtual clock.
+ *
+ * The engine drives the real Scheduler logic (request merging, trip assignment and dispatch policy)
+ * with simulated elevator cars that take the same time as an ElevatorCar to travel one floor and to
+ * serve a stop. Instead of sleeping, every car action and every elevator call is an event in a priority
+ * queue ordered by virtual time, and the clock jumps straight to the next event. A day of traffic is
+ * simulated in as long as it takes the Scheduler to process its calls.
+ *
+ * Like the UDP system, a car told to stay IDLE waits until the Scheduler has something new for it (an
+ * elevator call arrived or all calls were received), and a car told to QUIT leaves the simulation.
+ *
+ * @version 1.00
+ */
+public class SimulationEngine {
+    private final Scheduler scheduler;
+    private final int numberOfCars;
+    private final long moveTime; // virtual time needed by a car to travel one floor (ms)
+    private final long stopTime; // virtual time needed by a car to open its doors, board and close its doors (ms)
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long eventCount; // tie breaker keeping events scheduled at the same time in scheduling order
+    private long now; // virtual clock (ms)
+    private long startTime; // virtual time of the first call (ms)
+    private int[] carFloors;
+    private boolean[] idleCars;
+
+    //Simulation results
+    private long callsReceived;
+    private long floorsTravelled;
+    private long stopsServed;
+
+    /**
+     * Event of the simulation, either an elevator call arriving or a car asking the scheduler for its next action
+     */
+    private static final class Event implements Comparable<Event> {
+        private final long time;
+        private final long order;
+        private final int elevatorId; // car asking for an action, -1 for an elevator call
+        private final ElevatorCall call;
+
+        Event(long time, long order, int elevatorId, ElevatorCall call) {
+            this.time = time;
+            this.order = order;
+            this.elevatorId = elevatorId;
+            this.call = call;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * Construct a simulation using the timing of the elevator cars
+     *
+     * @param scheduler the scheduler to drive, should not serve UDP endpoints
+     * @param numberOfCars the number of simulated elevator cars
+     */
+    public SimulationEngine(Scheduler scheduler, int numberOfCars) {
+        this(scheduler, numberOfCars, ElevatorCar.getMoveTime(), 2L * ElevatorCar.DOOR_OPEN_TIME + ElevatorCar.BOARDING_TIME);
+    }
+
+    /**
+     * @param scheduler the scheduler to drive, should not serve UDP endpoints
+     * @param numberOfCars the number of simulated elevator cars
+     * @param moveTime virtual time needed by a car to travel one floor in milliseconds
+     * @param stopTime virtual time needed by a car to serve a stop in milliseconds
+     */
+    public SimulationEngine(Scheduler scheduler, int numberOfCars, long moveTime, long stopTime) {
+        if (numberOfCars <= 0) {
+            throw new IllegalArgumentException("The simulation needs at least one elevator car");
+        }
+        this.scheduler = scheduler;
+        this.numberOfCars = numberOfCars;
+        this.moveTime = moveTime;
+        this.stopTime = stopTime;
+        // Passenger and car times are measured on the virtual clock
+        scheduler.getMetrics().setClock(() -> now);
+    }
+
+    /**
+     * Run the simulation until every car quit
+     *
+     * @param calls the elevator calls, ordered by timestamp; the virtual clock starts at the first call
+     */
+    public void run(Iterator<ElevatorCall> calls) {
+        carFloors = new int[numberOfCars];
+        idleCars = new boolean[numberOfCars];
+
+        if (calls.hasNext()) {
+            ElevatorCall firstCall = calls.next();
+            now = firstCall.getTimestamp().getTime();
+            startTime = now;
+            schedule(now, -1, firstCall);
+        } else {
+            scheduler.signalRequestsComplete();
+        }
+        for (int elevatorId = 0; elevatorId < numberOfCars; elevatorId++) {
+            carFloors[elevatorId] = ElevatorCar.getStartingFloor();
+            schedule(now, elevatorId, null);
+        }
+
+        Event event;
+        while ((event = events.poll()) != null) {
+            now = event.time;
+            if (event.call != null) {
+                receiveCall(event.call, calls);
+            } else {
+                performNextAction(event.elevatorId);
+            }
+        }
+    }
+
+    /**
+     * Hand an elevator call to the scheduler and schedule the arrival of the next call of the trace
+     */
+    private void receiveCall(ElevatorCall call, Iterator<ElevatorCall> calls) {
+        callsReceived++;
+        scheduler.addRequest(call);
+
+        if (calls.hasNext()) {
+            ElevatorCall nextCall = calls.next();
+            // A call out of order in the trace is received right away
+            schedule(Math.max(now, nextCall.getTimestamp().getTime()), -1, nextCall);
+        } else {
+            scheduler.signalRequestsComplete();
+        }
+        wakeIdleCars();
+    }
+
+    /**
+     * Ask the scheduler for the next action of a car and schedule the moment the car is done performing it
+     */
+    private void performNextAction(int elevatorId) {
+        int dispatchChanges = scheduler.getDispatchChanges();
+        ElevatorSubsystem.Action action = scheduler.getNextAction(elevatorId, carFloors[elevatorId]);
+        switch (action) {
+            case UP:
+                carFloors[elevatorId]++;
+                floorsTravelled++;
+                schedule(now + moveTime, elevatorId, null);
+                break;
+            case DOWN:
+                carFloors[elevatorId]--;
+                floorsTravelled++;
+                schedule(now + moveTime, elevatorId, null);
+                break;
+            case TOGGLE_DOORS:
+                stopsServed++;
+                schedule(now + stopTime, elevatorId, null);
+                break;
+            case IDLE:
+                // Parked until the scheduler may have something new for the car
+                idleCars[elevatorId] = true;
+                break;
+            case QUIT:
+                break;
+        }
+        if (scheduler.getDispatchChanges() != dispatchChanges && !scheduler.getRequestsQueue().isEmpty()) {
+            // The car took or completed a trip, a parked car may now be the closest one for the calls left
+            wakeIdleCars();
+        }
+    }
+
+    private void wakeIdleCars() {
+        for (int elevatorId = 0; elevatorId < numberOfCars; elevatorId++) {
+            if (idleCars[elevatorId]) {
+                idleCars[elevatorId] = false;
+                schedule(now, elevatorId, null);
+            }
+        }
+    }
+
+    private void schedule(long time, int elevatorId, ElevatorCall call) {
+        events.add(new Event(time, eventCount++, elevatorId, call));
+    }
+
+    /**
+     * @return the current virtual time in milliseconds
+     */
+    public long getVirtualTime() {
+        return now;
+    }
+
+    /**
+     * @return the virtual time elapsed since the first call in milliseconds
+     */
+    public long getSimulatedTime() {
+        return now - startTime;
+    }
+
+    public long getCallsReceived() {
+        return callsReceived;
+    }
+
+    public long getFloorsTravelled() {
+        return floorsTravelled;
+    }
+
+    public long getStopsServed() {
+        return stopsServed;
+    }
+
+    /**
+     * Read the elevator calls of a trace file lazily, so traces of any length can be simulated
+     *
+     * @param inputFilepath path of a trace in the format of the ElevatorCalls file (header line first)
+     * @return the calls of the trace in file order, timestamped on the epoch day
+     */
+    public static Iterator<ElevatorCall> readTrace(String inputFilepath) throws IOException {
+        return readCalls(new TraceReader(inputFilepath));
+    }
+
+    /**
+     * Read the elevator calls of a source lazily, the source is closed once exhausted. Invalid calls,
+     * with a negative floor or a direction that does not lead to the target floor, are skipped.
+     *
+     * @param trace the source of the calls, such as a trace file or generated traffic
+     * @return the calls of the source in order, timestamped on the epoch day
+     */
+    public static Iterator<ElevatorCall> readCalls(ElevatorCallSource trace) {
+        long epochDay = LocalDate.ofEpochDay(0).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        return new Iterator<ElevatorCall>() {
+            private boolean hasNext = advance();
+
+            private boolean advance() {
+                try {
+                    boolean next = trace.next();
+                    while (next && !ElevatorCall.isValid(trace.getStartingFloor(), trace.getTargetFloor(), trace.isUp())) {
+                        Log.warn("[SIMULATION] Skipped invalid elevator call from floor %d to floor %d", trace.getStartingFloor(), trace.getTargetFloor());
+                        next = trace.next();
+                    }
+                    if (!next) {
+                        trace.close();
+                    }
+                    return next;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            @Override
+            public ElevatorCall next() {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                ElevatorCall call = new ElevatorCall(new Date(epochDay + trace.getTimeOfDay()), trace.getStartingFloor(),
+                        trace.getTargetFloor(), trace.isUp() ? "Up" : "Down");
+                hasNext = advance();
+                return call;
+            }
+        };
+    }
+
+    /**
+     * Simulate a trace and print a summary
+     *
+     * @param args trace file (default ElevatorCalls), number of cars (default 4), dispatch policy: nearest
+     *             (default) or fifo, and -v to keep the scheduler output
+     */
+    public static void main(String[] args) throws IOException {
+        String inputFilepath = args.length > 0 ? args[0] : "ElevatorCalls";
+        int numberOfCars = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        String policy = args.length > 2 ? args[2] : "nearest";
+        boolean verbose = args.length > 3 && args[3].equals("-v");
+
+        // The scheduler logs every call and assignment at the debug level, which would flood the log with large traces
+        Log.setLevel(verbose ? Log.Level.DEBUG : Log.Level.WARN);
+
+        Scheduler scheduler = new Scheduler();
+        scheduler.setDispatchPolicy(policy.equals("fifo") ? new FifoDispatchPolicy() : new NearestCarDispatchPolicy());
+        SimulationEngine engine = new SimulationEngine(scheduler, numberOfCars);
+
+        long wallStart = System.nanoTime();
+        engine.run(readTrace(inputFilepath));
+        long wallTime = (System.nanoTime() - wallStart) / 1000000;
+
+        Log.flush();
+        System.out.println(String.format("[SIMULATION] %d calls, %d cars, %s policy", engine.getCallsReceived(), numberOfCars, policy));
+        System.out.println(String.format("[SIMULATION] Simulated %.1f s in %d ms of wall time", engine.getSimulatedTime() / 1000.0, wallTime));
+        System.out.println(String.format("[SIMULATION] Floors travelled: %d, stops served: %d, calls left unserved: %d",
+                engine.getFloorsTravelled(), engine.getStopsServed(), scheduler.getRequestsQueue().size()));
+        scheduler.getMetrics().export();
+    }
+}
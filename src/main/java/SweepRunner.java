@@ -0,0 +1,279 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs the same generated traffic through many building configurations at once and compares them,
+ * to answer capacity questions such as how many cars a building needs for its morning up peak.
+ *
+ * Every configuration (number of cars, number of floors, car timing and dispatch policy) is simulated
+ * by its own Scheduler and SimulationEngine on the virtual clock, so the runs share nothing, need no
+ * UDP port and take as long as the scheduler needs to process the calls. The runs are spread over a
+ * fork-join pool and their results are reported in one table, in the order of the configurations.
+ */
+public class SweepRunner {
+    private final TrafficGenerator.Profile profile;
+    private final double callsPerMinute;
+    private final long numberOfCalls;
+    private final long seed;
+
+    /**
+     * Building setup simulated by one run
+     */
+    public static final class Configuration {
+        private final int cars;
+        private final int floors;
+        private final long moveTime;
+        private final long stopTime;
+        private final String policy;
+
+        /**
+         * @param cars the number of elevator cars
+         * @param floors the number of floors
+         * @param moveTime time needed by a car to travel one floor in milliseconds
+         * @param stopTime time needed by a car to serve a stop in milliseconds
+         * @param policy the dispatch policy, fifo or nearest
+         */
+        public Configuration(int cars, int floors, long moveTime, long stopTime, String policy) {
+            if (!policy.equals("fifo") && !policy.equals("nearest")) {
+                throw new IllegalArgumentException("Unknown dispatch policy " + policy);
+            }
+            this.cars = cars;
+            this.floors = floors;
+            this.moveTime = moveTime;
+            this.stopTime = stopTime;
+            this.policy = policy;
+        }
+
+        DispatchPolicy newDispatchPolicy() {
+            return policy.equals("fifo") ? new FifoDispatchPolicy() : new NearestCarDispatchPolicy(moveTime, stopTime);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d cars, %d floors, %d/%d ms, %s", cars, floors, moveTime, stopTime, policy);
+        }
+    }
+
+    /**
+     * Outcome of one run
+     */
+    public static final class Result {
+        private final Configuration configuration;
+        private final long calls;
+        private final long unserved;
+        private final long simulatedTime;
+        private final long floorsTravelled;
+        private final Histogram waitTime;
+        private final Histogram rideTime;
+        private final long wallTime;
+
+        Result(Configuration configuration, SimulationEngine engine, Scheduler scheduler, long wallTime) {
+            this.configuration = configuration;
+            this.calls = engine.getCallsReceived();
+            this.unserved = scheduler.getRequestsQueue().size();
+            this.simulatedTime = engine.getSimulatedTime();
+            this.floorsTravelled = engine.getFloorsTravelled();
+            this.waitTime = scheduler.getMetrics().getWaitTime();
+            this.rideTime = scheduler.getMetrics().getRideTime();
+            this.wallTime = wallTime;
+        }
+
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getUnserved() {
+            return unserved;
+        }
+
+        public long getSimulatedTime() {
+            return simulatedTime;
+        }
+
+        public long getFloorsTravelled() {
+            return floorsTravelled;
+        }
+
+        public Histogram getWaitTime() {
+            return waitTime;
+        }
+
+        public Histogram getRideTime() {
+            return rideTime;
+        }
+
+        /**
+         * @return the wall time the run took in milliseconds
+         */
+        public long getWallTime() {
+            return wallTime;
+        }
+    }
+
+    /**
+     * @param profile the traffic profile of every run
+     * @param callsPerMinute the mean number of calls per minute
+     * @param numberOfCalls the number of calls of every run
+     * @param seed the seed of the traffic, every run gets the same calls for the same number of floors
+     */
+    public SweepRunner(TrafficGenerator.Profile profile, double callsPerMinute, long numberOfCalls, long seed) {
+        this.profile = profile;
+        this.callsPerMinute = callsPerMinute;
+        this.numberOfCalls = numberOfCalls;
+        this.seed = seed;
+    }
+
+    /**
+     * Simulate one configuration
+     * @param configuration the building setup
+     * @return the outcome of the run
+     */
+    public Result run(Configuration configuration) {
+        long wallStart = System.nanoTime();
+        Scheduler scheduler = new Scheduler();
+        scheduler.setDispatchPolicy(configuration.newDispatchPolicy());
+        SimulationEngine engine = new SimulationEngine(scheduler, configuration.cars, configuration.moveTime, configuration.stopTime);
+        TrafficGenerator traffic = new TrafficGenerator(profile, configuration.floors, callsPerMinute, numberOfCalls, seed);
+        engine.run(SimulationEngine.readCalls(traffic));
+        return new Result(configuration, engine, scheduler, (System.nanoTime() - wallStart) / 1_000_000);
+    }
+
+    /**
+     * Simulate configurations in parallel
+     *
+     * @param configurations the building setups to compare
+     * @param parallelism the number of runs simulated at the same time
+     * @return the outcomes of the runs, in the order of the configurations
+     */
+    public List<Result> run(List<Configuration> configurations, int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<Result>> runs = new ArrayList<>();
+            for (Configuration configuration : configurations) {
+                runs.add(pool.submit(() -> run(configuration)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (ForkJoinTask<Result> run : runs) {
+                results.add(run.join());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Every combination of the given values
+     */
+    public static List<Configuration> grid(int[] cars, int[] floors, long[] moveTimes, long[] stopTimes, String[] policies) {
+        List<Configuration> configurations = new ArrayList<>();
+        for (int floorCount : floors) {
+            for (long moveTime : moveTimes) {
+                for (long stopTime : stopTimes) {
+                    for (String policy : policies) {
+                        for (int carCount : cars) {
+                            configurations.add(new Configuration(carCount, floorCount, moveTime, stopTime, policy));
+                        }
+                    }
+                }
+            }
+        }
+        return configurations;
+    }
+
+    /**
+     * @param results the outcomes of the runs
+     * @return a table comparing the runs, one line per run
+     */
+    public static List<String> report(List<Result> results) {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-44s %8s %8s %10s %10s %10s %10s %10s %8s", "Configuration", "calls", "unserved",
+                "wait p50", "wait p95", "wait max", "ride p95", "duration", "wall"));
+        for (Result result : results) {
+            lines.add(String.format("%-44s %8d %8d %9.1fs %9.1fs %9.1fs %9.1fs %9.1fm %6dms", result.configuration, result.calls,
+                    result.unserved, result.waitTime.getPercentile(50) / 1000.0, result.waitTime.getPercentile(95) / 1000.0,
+                    result.waitTime.getMax() / 1000.0, result.rideTime.getPercentile(95) / 1000.0,
+                    result.simulatedTime / 60000.0, result.wallTime));
+        }
+        return lines;
+    }
+
+    /**
+     * Run a sweep and print the comparison
+     *
+     * @param args profile (up_peak, lunch, down_peak or interfloor), calls per minute, number of calls, then
+     *             optional comma separated lists: cars=2,4,6 floors=22 move=10000 stop=11000 policy=fifo,nearest
+     *             and seed=0 parallelism=(number of processors)
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: SweepRunner <profile> <calls per minute> <calls> [cars=2,4,6] [floors=22] [move=10000] [stop=11000] [policy=fifo,nearest] [seed=0] [parallelism=N]");
+            return;
+        }
+        TrafficGenerator.Profile profile = TrafficGenerator.Profile.valueOf(args[0].toUpperCase());
+        double callsPerMinute = Double.parseDouble(args[1]);
+        long numberOfCalls = Long.parseLong(args[2]);
+        String cars = "2,4,6";
+        String floors = "22";
+        String moveTimes = Long.toString(ElevatorCar.getMoveTime());
+        String stopTimes = Long.toString(2L * ElevatorCar.DOOR_OPEN_TIME + ElevatorCar.BOARDING_TIME);
+        String policies = "fifo,nearest";
+        long seed = 0;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        for (int i = 3; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected name=value instead of " + args[i]);
+            }
+            switch (option[0]) {
+                case "cars": cars = option[1]; break;
+                case "floors": floors = option[1]; break;
+                case "move": moveTimes = option[1]; break;
+                case "stop": stopTimes = option[1]; break;
+                case "policy": policies = option[1]; break;
+                case "seed": seed = Long.parseLong(option[1]); break;
+                case "parallelism": parallelism = Integer.parseInt(option[1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        // Every run logs its calls and assignments at the debug level
+        Log.setLevel(Log.Level.WARN);
+        List<Configuration> configurations = grid(parseInts(cars), parseInts(floors), parseLongs(moveTimes), parseLongs(stopTimes), policies.split(","));
+
+        long wallStart = System.nanoTime();
+        List<Result> results = new SweepRunner(profile, callsPerMinute, numberOfCalls, seed).run(configurations, parallelism);
+        long wallTime = (System.nanoTime() - wallStart) / 1_000_000;
+
+        Log.flush();
+        System.out.println(String.format("[SWEEP] %d runs of %d %s calls at %.1f calls per minute in %d ms on %d threads",
+                results.size(), numberOfCalls, profile, callsPerMinute, wallTime, parallelism));
+        for (String line : report(results)) {
+            System.out.println(line);
+        }
+    }
+
+    private static int[] parseInts(String list) {
+        String[] values = list.split(",");
+        int[] parsed = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parsed[i] = Integer.parseInt(values[i].trim());
+        }
+        return parsed;
+    }
+
+    private static long[] parseLongs(String list) {
+        String[] values = list.split(",");
+        long[] parsed = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parsed[i] = Long.parseLong(values[i].trim());
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads of the elevator system: elevator cars, the scheduler event loop, the floor
+ * subsystem and its display listener, the timing wheel and the metrics exporter.
+ *
+ * Platform threads are used by default. When the JVM is started with -Delevator.virtualThreads=true
+ * they are all virtual threads instead, so the blocking sleeps and socket calls of a car only park a
+ * virtual thread and a single JVM can run tens of thousands of cars on a handful of OS threads.
+ */
+public final class Threads {
+    public static final String VIRTUAL_THREADS_PROPERTY = "elevator.virtualThreads";
+    private static final boolean VIRTUAL = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY);
+
+    private Threads() {
+    }
+
+    /**
+     * @return true if the system runs on virtual threads
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL;
+    }
+
+    /**
+     * Create a thread that is not started yet
+     *
+     * @param name the name of the thread
+     * @param task the task run by the thread
+     * @return the new thread
+     */
+    public static Thread newThread(String name, Runnable task) {
+        return VIRTUAL ? Thread.ofVirtual().name(name).unstarted(task) : new Thread(task, name);
+    }
+
+    /**
+     * Create and start a thread
+     *
+     * @param name the name of the thread
+     * @param task the task run by the thread
+     * @return the started thread
+     */
+    public static Thread start(String name, Runnable task) {
+        Thread thread = newThread(name, task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Create an executor running delayed tasks one at a time, such as the periodic metrics export. Its
+     * threads are daemon threads, like virtual threads, so pending timers do not keep the JVM alive.
+     *
+     * @param name the name of the executor threads
+     * @return the new executor
+     */
+    public static ScheduledExecutorService newScheduledExecutor(String name) {
+        return newScheduledExecutor(name, VIRTUAL);
+    }
+
+    /**
+     * @param name the name of the executor threads
+     * @param virtual true to run the tasks on a virtual thread
+     * @return the new executor
+     */
+    static ScheduledExecutorService newScheduledExecutor(String name, boolean virtual) {
+        ThreadFactory factory = virtual ? Thread.ofVirtual().name(name).factory() : task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+        // A core thread waits for the next task until it is due, without a core thread the pool polls for it
+        return Executors.newScheduledThreadPool(1, factory);
+    }
+}
@@ -0,0 +1,236 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel running the deadline checks of the elevator system on a single thread: arrival
+ * verification of the scheduler, door fault detection of the cars and receive timeouts of the elevator
+ * subsystem.
+ *
+ * The wheel is an array of slots, each a doubly linked list of timeouts, and a pointer advancing one
+ * slot per tick. A timeout lands in the slot its deadline falls into and counts the full turns of the
+ * wheel it still has to wait, so scheduling and cancelling are O(1) whatever the number of pending
+ * timeouts, and a cancelled timeout is unlinked right away instead of lingering in a delay queue.
+ * Timeouts fire at most one tick late and never early.
+ *
+ * Scheduling and cancelling may be done from any thread: they go through lock-free queues drained by
+ * the wheel thread. Tasks run on the wheel thread, so they must be short; blocking work must be handed
+ * to a thread of its own.
+ */
+public final class TimingWheel {
+    private static final long TICK_MILLIS = 10;
+    private static final int SLOTS = 512; // one turn of the wheel is a little over 5 seconds
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private static volatile TimingWheel shared;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Slot[] slots;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final long startTime = System.nanoTime();
+    private long tick; // number of ticks processed, only used by the wheel thread
+    private volatile boolean running = true;
+
+    /**
+     * Deadline of a task scheduled on the wheel
+     */
+    public static final class Timeout {
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline; // nanos since the start of the wheel
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingRounds;
+        private Slot slot;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the task if it did not run yet
+         * @return true if the task will not run because of this call
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * @return true if the task ran or was cancelled
+         */
+        public boolean isDone() {
+            return state.get() != PENDING;
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts of one slot
+     */
+    private static final class Slot {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.slot = this;
+            timeout.previous = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.slot = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+    }
+
+    /**
+     * @return the wheel shared by the scheduler, the elevator subsystem and every elevator car
+     */
+    public static TimingWheel shared() {
+        if (shared == null) {
+            synchronized (TimingWheel.class) {
+                if (shared == null) {
+                    shared = new TimingWheel("timing-wheel", TICK_MILLIS, SLOTS);
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Create a wheel and start its thread
+     *
+     * @param name the name of the wheel thread
+     * @param tickMillis the duration of a tick in milliseconds
+     * @param slots the number of slots, rounded up to a power of two
+     */
+    public TimingWheel(String name, long tickMillis, int slots) {
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = 2;
+        while (size < slots) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new Slot();
+        }
+        Thread worker = Threads.newThread(name, this::run);
+        if (!worker.isVirtual()) {
+            worker.setDaemon(true);
+        }
+        worker.start();
+    }
+
+    /**
+     * Run a task once a delay elapsed
+     *
+     * @param task the task, run on the wheel thread
+     * @param delay the delay
+     * @param unit the unit of the delay
+     * @return the timeout of the task, to cancel it
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0));
+        Timeout timeout = new Timeout(this, task, deadline);
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop the wheel thread, the pending tasks never run
+     */
+    public void stop() {
+        running = false;
+    }
+
+    private void run() {
+        while (running) {
+            long tickEnd = (tick + 1) * tickNanos;
+            long sleep = tickEnd - (System.nanoTime() - startTime);
+            if (sleep > 0) {
+                LockSupport.parkNanos(sleep);
+                continue;
+            }
+            unlinkCancelled();
+            placeScheduled();
+            expire(slots[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void unlinkCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.slot != null) {
+                timeout.slot.remove(timeout);
+            }
+        }
+    }
+
+    private void placeScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            // Tick at the end of which the deadline is over, the current tick if it is already over
+            long deadlineTick = Math.max((timeout.deadline + tickNanos - 1) / tickNanos - 1, tick);
+            timeout.remainingRounds = (deadlineTick - tick) / slots.length;
+            slots[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Slot slot) {
+        Timeout timeout = slot.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                slot.remove(timeout);
+                if (timeout.state.compareAndSet(PENDING, EXPIRED)) {
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        Log.error("[TIMING WHEEL] Task failed: %s", e.toString());
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+}
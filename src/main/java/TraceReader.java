@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming reader of elevator call traces in the format of the ElevatorCalls file:
+ * <pre>
+ *   time current_floor direction destination
+ *   02:22:00:15 2 up 18
+ * </pre>
+ * The first line is a header. Every other line holds the time of day of the call (hours, minutes,
+ * seconds and milliseconds, two digits each), the starting floor, the direction and the target floor.
+ * Blank lines are skipped and lines may end with \n or \r\n.
+ *
+ * The file is memory mapped one window at a time and parsed in place, byte by byte, so a trace of
+ * any size is read without buffering it and without allocating per line. The reader is a cursor:
+ * {@link #next()} moves to the next call, whose fields are then available through the getters until
+ * the following call to next().
+ *
+ * A reader is not thread safe.
+ */
+public class TraceReader implements ElevatorCallSource {
+    private static final long WINDOW_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowSize;
+    private MappedByteBuffer window;
+    private long windowStart; // file offset of the first byte of the window
+    private long lineNumber;
+
+    //Bounds of the current line in the window, excluding the line terminator
+    private int lineStart;
+    private int lineEnd;
+    private int position; // parse position in the current line
+
+    //Current call
+    private long timeOfDay;
+    private int startingFloor;
+    private int targetFloor;
+    private boolean up;
+
+    /**
+     * Open a trace and skip its header line
+     *
+     * @param inputFilepath path of the trace
+     */
+    public TraceReader(String inputFilepath) throws IOException {
+        this(inputFilepath, WINDOW_SIZE);
+    }
+
+    /**
+     * @param inputFilepath path of the trace
+     * @param windowSize number of bytes mapped at once, must be longer than any line of the trace
+     */
+    TraceReader(String inputFilepath, long windowSize) throws IOException {
+        this.channel = FileChannel.open(Paths.get(inputFilepath), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        try {
+            map(0);
+            nextLine(); // skip the header
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Move to the next elevator call of the trace
+     *
+     * @return true if there is a call, false at the end of the trace
+     * @throws IllegalArgumentException if the line of the call is not in the trace format
+     */
+    @Override
+    public boolean next() throws IOException {
+        while (nextLine()) {
+            if (lineEnd > lineStart) {
+                parseLine();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getTimeOfDay() {
+        return timeOfDay;
+    }
+
+    @Override
+    public int getStartingFloor() {
+        return startingFloor;
+    }
+
+    @Override
+    public int getTargetFloor() {
+        return targetFloor;
+    }
+
+    @Override
+    public boolean isUp() {
+        return up;
+    }
+
+    /**
+     * @return the number of the line of the current call, the header being line 1
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Find the bounds of the next line, mapping the next window when the line runs past the current one
+     *
+     * @return false at the end of the file
+     */
+    private boolean nextLine() throws IOException {
+        while (true) {
+            int start = window.position();
+            int limit = window.limit();
+            if (windowStart + start >= fileSize) {
+                return false;
+            }
+            int end = start;
+            while (end < limit && window.get(end) != '\n') {
+                end++;
+            }
+            if (end == limit && windowStart + limit < fileSize) {
+                if (start == 0) {
+                    throw new IOException(String.format("Line %d of the trace is longer than %d bytes", lineNumber + 1, windowSize));
+                }
+                map(windowStart + start);
+                continue;
+            }
+            window.position(end == limit ? end : end + 1);
+            lineNumber++;
+            lineStart = start;
+            lineEnd = end > start && window.get(end - 1) == '\r' ? end - 1 : end;
+            return true;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+    }
+
+    private void parseLine() {
+        position = lineStart;
+        int hours = readTwoDigits();
+        expect(':');
+        int minutes = readTwoDigits();
+        expect(':');
+        int seconds = readTwoDigits();
+        expect(':');
+        int millis = readTwoDigits();
+        timeOfDay = ((hours * 60L + minutes) * 60L + seconds) * 1000L + millis;
+
+        expect(' ');
+        startingFloor = readNumber();
+        expect(' ');
+        if (position < lineEnd && window.get(position) == 'u') {
+            position++;
+            expect('p');
+            up = true;
+        } else {
+            expect('d');
+            expect('o');
+            expect('w');
+            expect('n');
+            up = false;
+        }
+        expect(' ');
+        targetFloor = readNumber();
+        if (position != lineEnd) {
+            throw malformedLine();
+        }
+    }
+
+    private int readTwoDigits() {
+        return readDigit() * 10 + readDigit();
+    }
+
+    private int readNumber() {
+        int number = readDigit();
+        while (position < lineEnd && isDigit(window.get(position))) {
+            int digit = readDigit();
+            if (number > (Integer.MAX_VALUE - digit) / 10) {
+                // Would wrap around to an unrelated floor
+                throw malformedLine();
+            }
+            number = number * 10 + digit;
+        }
+        return number;
+    }
+
+    private int readDigit() {
+        if (position >= lineEnd || !isDigit(window.get(position))) {
+            throw malformedLine();
+        }
+        return window.get(position++) - '0';
+    }
+
+    private void expect(char c) {
+        if (position >= lineEnd || window.get(position) != c) {
+            throw malformedLine();
+        }
+        position++;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private IllegalArgumentException malformedLine() {
+        byte[] line = new byte[lineEnd - lineStart];
+        window.get(lineStart, line);
+        return new IllegalArgumentException(String.format("Line %d of the trace does not align with required format: %s",
+                lineNumber, new String(line)));
+    }
+}
@@ -0,0 +1,214 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generator of synthetic elevator traffic.
+ *
+ * Calls arrive at every floor following a Poisson process, so the time between two calls of the
+ * building is exponentially distributed and the floor of each call is drawn in proportion to the
+ * arrival rate of the floors. A traffic profile spreads the arrival rate of the building over its
+ * floors and picks the destination of each call:
+ * <ul>
+ *   <li>UP_PEAK: the morning rush, most calls start at the lobby and go up</li>
+ *   <li>LUNCH: two-way traffic, people leave for the lobby and come back up</li>
+ *   <li>DOWN_PEAK: the evening rush, most calls go down to the lobby</li>
+ *   <li>INTERFLOOR: calls between any two floors</li>
+ * </ul>
+ * The arrival rate of a single floor can be overridden with {@link #setFloorRate(int, double)}.
+ *
+ * The generator is an ElevatorCallSource, so it can feed a FloorSubsystem directly, or write a trace in
+ * the format of the ElevatorCalls file. The random number generator is seeded, so a run is reproducible.
+ */
+public class TrafficGenerator implements ElevatorCallSource {
+    public static final int LOBBY = ElevatorCar.getStartingFloor();
+
+    /**
+     * How calls are spread over the floors of the building
+     */
+    public enum Profile {
+        UP_PEAK(0.85, 0.10, 8),
+        LUNCH(0.45, 0.80, 12),
+        DOWN_PEAK(0.05, 0.90, 17),
+        INTERFLOOR(0, 0, 10);
+
+        private final double lobbyArrivalShare; // share of the calls starting at the lobby, on top of its uniform share
+        private final double lobbyDestinationShare; // chance of a call from another floor going to the lobby
+        private final int startHour; // time of day the traffic starts at
+
+        Profile(double lobbyArrivalShare, double lobbyDestinationShare, int startHour) {
+            this.lobbyArrivalShare = lobbyArrivalShare;
+            this.lobbyDestinationShare = lobbyDestinationShare;
+            this.startHour = startHour;
+        }
+    }
+
+    private final Profile profile;
+    private final int numberOfFloors;
+    private final long numberOfCalls;
+    private final Random random;
+    private final double[] floorRates; // calls per minute starting at each floor, index 0 being the lobby
+    private double[] cumulativeRates; // running sum of the floor rates, rebuilt when a rate changes
+
+    private long callsGenerated;
+    private double time; // time of day of the last call (ms)
+
+    //Current call
+    private long timeOfDay;
+    private int startingFloor;
+    private int targetFloor;
+
+    /**
+     * @param profile how calls are spread over the floors
+     * @param numberOfFloors the number of floors of the building, the lobby being floor 1
+     * @param callsPerMinute the arrival rate of the whole building
+     * @param numberOfCalls the number of calls to generate
+     * @param seed the seed of the random number generator
+     */
+    public TrafficGenerator(Profile profile, int numberOfFloors, double callsPerMinute, long numberOfCalls, long seed) {
+        if (numberOfFloors < 2) {
+            throw new IllegalArgumentException("The building needs at least two floors");
+        }
+        if (callsPerMinute <= 0) {
+            throw new IllegalArgumentException("The arrival rate must be positive");
+        }
+        this.profile = profile;
+        this.numberOfFloors = numberOfFloors;
+        this.numberOfCalls = numberOfCalls;
+        this.random = new Random(seed);
+        this.time = profile.startHour * 3600000.0;
+
+        floorRates = new double[numberOfFloors];
+        double uniformRate = callsPerMinute * (1 - profile.lobbyArrivalShare) / numberOfFloors;
+        Arrays.fill(floorRates, uniformRate);
+        floorRates[0] += callsPerMinute * profile.lobbyArrivalShare;
+        updateCumulativeRates();
+    }
+
+    /**
+     * Override the arrival rate of a floor
+     *
+     * @param floor the floor, between 1 and the number of floors
+     * @param callsPerMinute the number of calls starting at the floor per minute
+     */
+    public void setFloorRate(int floor, double callsPerMinute) {
+        if (floor < LOBBY || floor >= LOBBY + numberOfFloors || callsPerMinute < 0) {
+            throw new IllegalArgumentException(String.format("Invalid rate %f for floor %d", callsPerMinute, floor));
+        }
+        floorRates[floor - LOBBY] = callsPerMinute;
+        updateCumulativeRates();
+    }
+
+    @Override
+    public boolean next() {
+        double totalRate = cumulativeRates[numberOfFloors - 1];
+        if (callsGenerated == numberOfCalls || totalRate == 0) {
+            return false;
+        }
+        callsGenerated++;
+
+        // Exponential time between two arrivals of the building, the rates being per minute
+        time += -Math.log(1 - random.nextDouble()) / totalRate * 60000;
+        timeOfDay = (long) time;
+
+        int floorIndex = Arrays.binarySearch(cumulativeRates, random.nextDouble() * totalRate);
+        startingFloor = LOBBY + Math.min(floorIndex < 0 ? -floorIndex - 1 : floorIndex, numberOfFloors - 1);
+        targetFloor = pickTargetFloor();
+        return true;
+    }
+
+    @Override
+    public long getTimeOfDay() {
+        return timeOfDay;
+    }
+
+    @Override
+    public int getStartingFloor() {
+        return startingFloor;
+    }
+
+    @Override
+    public int getTargetFloor() {
+        return targetFloor;
+    }
+
+    @Override
+    public boolean isUp() {
+        return targetFloor > startingFloor;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Write the remaining calls to a trace in the format of the ElevatorCalls file. The last field of a
+     * time of day holds milliseconds, as read by TraceReader, but only two digits of them, so times are
+     * written truncated to the whole second, which keeps them in order. Traffic running past midnight
+     * wraps around to 00:00.
+     *
+     * @param outputFilepath path of the trace to write
+     */
+    public void writeTrace(String outputFilepath) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFilepath), 1 << 16)) {
+            writer.write("time current_floor direction destination\n");
+            StringBuilder line = new StringBuilder(32);
+            while (next()) {
+                line.setLength(0);
+                long seconds = timeOfDay / 1000;
+                appendTwoDigits(line, seconds / 3600 % 24).append(':');
+                appendTwoDigits(line, seconds / 60 % 60).append(':');
+                appendTwoDigits(line, seconds % 60).append(':');
+                appendTwoDigits(line, 0).append(' ');
+                line.append(startingFloor).append(isUp() ? " up " : " down ").append(targetFloor).append('\n');
+                writer.append(line);
+            }
+        }
+    }
+
+    private int pickTargetFloor() {
+        if (startingFloor == LOBBY) {
+            return LOBBY + 1 + random.nextInt(numberOfFloors - 1);
+        }
+        if (random.nextDouble() < profile.lobbyDestinationShare) {
+            return LOBBY;
+        }
+        // Any other floor than the starting floor
+        int floor = LOBBY + random.nextInt(numberOfFloors - 1);
+        return floor >= startingFloor ? floor + 1 : floor;
+    }
+
+    private void updateCumulativeRates() {
+        cumulativeRates = new double[numberOfFloors];
+        double sum = 0;
+        for (int i = 0; i < numberOfFloors; i++) {
+            sum += floorRates[i];
+            cumulativeRates[i] = sum;
+        }
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder line, long value) {
+        return line.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    /**
+     * Write a synthetic trace
+     *
+     * @param args output file, profile (up_peak, lunch, down_peak or interfloor), number of floors,
+     *             calls per minute, number of calls and seed
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("Usage: TrafficGenerator <output file> <profile> <floors> <calls per minute> <calls> [seed]");
+            return;
+        }
+        Profile profile = Profile.valueOf(args[1].toUpperCase());
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 0;
+        TrafficGenerator generator = new TrafficGenerator(profile, Integer.parseInt(args[2]), Double.parseDouble(args[3]),
+                Long.parseLong(args[4]), seed);
+        generator.writeTrace(args[0]);
+        System.out.println(String.format("[TRAFFIC GENERATOR] Wrote %d %s calls to %s", generator.callsGenerated, profile, args[0]));
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Moves the {@link WireProtocol} messages of the elevator system between the subsystems and the Scheduler.
+ *
+ * The scheduler binds an endpoint to its elevator, floor and fault services and every elevator car
+ * opens an endpoint of its own that the scheduler answers to. Display updates are published: every
+ * floor display listener subscribes to the display service and gets each update the scheduler sends
+ * to it once. {@link UdpTransport} carries the messages in datagrams, so the subsystems may run on
+ * different hosts; {@link SharedMemoryTransport} passes them through memory mapped rings between JVMs
+ * of the same host; {@link InProcessTransport} hands them over through queues when every subsystem
+ * runs in the same JVM. The transport is chosen with -Delevator.transport=udp (default), sharedmemory
+ * or inprocess.
+ *
+ * Messages are pooled buffers: the sender takes a buffer from {@link #acquireBuffer()}, writes a
+ * message into it and gives it to {@link Endpoint#send}, which owns it from then on. The receiver gets
+ * the buffer from {@link Endpoint#receive} and gives it back with {@link #releaseBuffer} once read.
+ */
+public abstract class Transport {
+    public static final String TRANSPORT_PROPERTY = "elevator.transport";
+
+    private static volatile Transport shared;
+
+    private final Queue<ByteBuffer> bufferPool;
+
+    /**
+     * Well-known endpoints, with the UDP port they are bound to
+     */
+    public enum Service {
+        ELEVATOR(69, false), FLOOR(23, false), FAULT(100, false), DISPLAY(80, true);
+
+        private final int port;
+        private final boolean published;
+
+        Service(int port, boolean published) {
+            this.port = port;
+            this.published = published;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * @return true if the messages of the service go to every subscriber rather than to one bound endpoint
+         */
+        public boolean isPublished() {
+            return published;
+        }
+    }
+
+    /**
+     * Endpoint sending and receiving messages. An endpoint may send from any thread, but only one thread
+     * at a time may receive from it.
+     */
+    public interface Endpoint extends Closeable {
+        /**
+         * @return the address other endpoints reply to
+         */
+        SocketAddress getAddress();
+
+        /**
+         * Send a message, messages sent to an address nobody is bound to are dropped
+         *
+         * @param message a buffer of the transport, flipped and ready to be read; it is released by the transport
+         * @param target the address of the receiving endpoint
+         */
+        void send(ByteBuffer message, SocketAddress target) throws IOException;
+
+        /**
+         * Wait for the next message
+         *
+         * @param timeout maximum time to wait in milliseconds, 0 to only take a message already received
+         * @return the message, to be released by the caller, or null if none was received in time or the endpoint is closed
+         */
+        ByteBuffer receive(long timeout) throws IOException;
+
+        /**
+         * @return the address of the sender of the latest message received
+         */
+        SocketAddress getSender();
+
+        /**
+         * @return the service the latest message received was sent to, null if it was sent to the endpoint address
+         */
+        Service getService();
+
+        @Override
+        void close();
+    }
+
+    protected Transport() {
+        bufferPool = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * @param bufferPoolOwner a transport whose buffer pool this transport shares, for a transport used by another one
+     */
+    protected Transport(Transport bufferPoolOwner) {
+        bufferPool = bufferPoolOwner.bufferPool;
+    }
+
+    /**
+     * @return the transport of the subsystems running in this JVM, chosen by the elevator.transport property
+     */
+    public static Transport shared() {
+        if (shared == null) {
+            synchronized (Transport.class) {
+                if (shared == null) {
+                    String name = System.getProperty(TRANSPORT_PROPERTY, "udp");
+                    switch (name) {
+                        case "udp": shared = new UdpTransport(); break;
+                        case "inprocess": shared = new InProcessTransport(); break;
+                        case "sharedmemory": shared = new SharedMemoryTransport(); break;
+                        default: throw new IllegalArgumentException("Unknown transport " + name);
+                    }
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Bind an endpoint receiving the messages sent to one or more services
+     *
+     * @param services the services served by the endpoint, none of them published
+     * @return the endpoint
+     * @throws IOException if a service is already bound
+     */
+    public abstract Endpoint bind(Service... services) throws IOException;
+
+    /**
+     * Subscribe to a published service, any number of endpoints may subscribe to the same service
+     *
+     * @param service a published service
+     * @return an endpoint receiving every message sent to the service from now on
+     */
+    public abstract Endpoint subscribe(Service service) throws IOException;
+
+    /**
+     * @return a new endpoint with an address of its own, such as the endpoint of an elevator car
+     */
+    public abstract Endpoint open() throws IOException;
+
+    /**
+     * @param service a service
+     * @return the address to send the messages of the service to
+     */
+    public abstract SocketAddress addressOf(Service service) throws IOException;
+
+    /**
+     * Take a cleared buffer from the pool, allocating one only if the pool is empty
+     */
+    public ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer == null ? allocateBuffer() : buffer;
+    }
+
+    /**
+     * Give a buffer back to the pool
+     */
+    public void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        bufferPool.offer(buffer);
+    }
+
+    /**
+     * @return a new buffer large enough for any message
+     */
+    protected abstract ByteBuffer allocateBuffer();
+}
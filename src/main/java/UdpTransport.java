@@ -0,0 +1,367 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport carrying every message in a UDP datagram, each service being bound to its well-known port
+ * on every interface and reached on the local host.
+ *
+ * An endpoint bound to services is a set of non-blocking channels registered with one selector, so a
+ * single thread serves all of them. An opened endpoint is a blocking channel on an ephemeral port: the
+ * thread waiting on it only parks when it is a virtual thread. Blocking channels have no receive
+ * timeout, so a timeout is the shared timing wheel sending an empty datagram to the channel to wake the
+ * waiting thread up. Messages are read into and written from pooled direct buffers.
+ *
+ * A published service is a multicast group (-Delevator.displayGroup, 239.255.80.80 by default) on the
+ * port of the service. Subscribers join the group with the port shared between them, so a message
+ * sent to the group once reaches every subscriber of the host or of the LAN. The group is joined and
+ * sent to on the interface named by -Delevator.displayInterface, by default the interface of the
+ * local host address.
+ */
+public class UdpTransport extends Transport {
+    public static final String GROUP_PROPERTY = "elevator.displayGroup";
+    public static final String INTERFACE_PROPERTY = "elevator.displayInterface";
+    private static final int BUFFER_SIZE = 1024;
+
+    private final Object channelLock = new Object();
+    private DatagramChannel wakeupChannel; // sends the datagrams waking up receives that timed out, opened on first use
+    private DatagramChannel publishChannel; // sends the messages of published services to their group, opened on first use
+
+    public UdpTransport() {
+    }
+
+    /**
+     * @param bufferPoolOwner the transport whose buffer pool is shared
+     */
+    UdpTransport(Transport bufferPoolOwner) {
+        super(bufferPoolOwner);
+    }
+
+    /**
+     * Endpoint bound to the ports of one or more services, or subscribed to a published service
+     */
+    private class ServiceEndpoint implements Endpoint {
+        private final Service[] services;
+        private final DatagramChannel[] channels;
+        private final Selector selector;
+        private ByteBuffer spare; // buffer the next datagram is read into
+        private int nextChannel; // channel read first by the next receive, so no channel starves the others
+        private SocketAddress sender;
+        private Service service;
+
+        /**
+         * @param services the services served
+         * @param channels the channel of each service, bound to the port of the service
+         */
+        ServiceEndpoint(Service[] services, DatagramChannel[] channels) throws IOException {
+            this.services = services;
+            this.channels = channels;
+            this.selector = Selector.open();
+            try {
+                for (DatagramChannel channel : channels) {
+                    channel.configureBlocking(false);
+                    channel.register(selector, SelectionKey.OP_READ);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public SocketAddress getAddress() {
+            try {
+                return channels[0].getLocalAddress();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void send(ByteBuffer message, SocketAddress target) throws IOException {
+            UdpTransport.this.send(channels[0], message, target);
+        }
+
+        @Override
+        public ByteBuffer receive(long timeout) throws IOException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (true) {
+                if (spare == null) {
+                    spare = acquireBuffer();
+                }
+                for (int i = 0; i < channels.length; i++) {
+                    int index = (nextChannel + i) % channels.length;
+                    SocketAddress from = channels[index].receive(spare);
+                    if (from != null) {
+                        nextChannel = index + 1;
+                        sender = from;
+                        service = services[index];
+                        ByteBuffer message = spare;
+                        spare = null;
+                        message.flip();
+                        return message;
+                    }
+                }
+
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !selector.isOpen()) {
+                    return null;
+                }
+                selector.select(remaining);
+                selector.selectedKeys().clear();
+            }
+        }
+
+        @Override
+        public SocketAddress getSender() {
+            return sender;
+        }
+
+        @Override
+        public Service getService() {
+            return service;
+        }
+
+        @Override
+        public void close() {
+            try {
+                selector.close();
+                for (DatagramChannel channel : channels) {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Endpoint on an ephemeral port, waiting in blocking receives
+     */
+    private class ChannelEndpoint implements Endpoint {
+        private final DatagramChannel channel;
+        private final SocketAddress wakeupAddress; // loopback address the timing wheel sends the wake-up datagrams to
+        private final Runnable wakeup = this::wakeUp;
+        private SocketAddress sender;
+
+        ChannelEndpoint() throws IOException {
+            channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(0));
+            wakeupAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), ((InetSocketAddress) channel.getLocalAddress()).getPort());
+        }
+
+        @Override
+        public SocketAddress getAddress() {
+            return wakeupAddress;
+        }
+
+        @Override
+        public void send(ByteBuffer message, SocketAddress target) throws IOException {
+            UdpTransport.this.send(channel, message, target);
+        }
+
+        @Override
+        public ByteBuffer receive(long timeout) throws IOException {
+            ByteBuffer message = acquireBuffer();
+            try {
+                if (timeout <= 0) {
+                    return poll(message) ? message : null;
+                }
+                long deadline = System.currentTimeMillis() + timeout;
+                TimingWheel.Timeout timer = TimingWheel.shared().schedule(wakeup, timeout, TimeUnit.MILLISECONDS);
+                try {
+                    while (true) {
+                        message.clear();
+                        sender = channel.receive(message);
+                        message.flip();
+                        if (message.hasRemaining()) {
+                            ByteBuffer received = message;
+                            message = null;
+                            return received;
+                        }
+                        // Wake-up of a timer, possibly of an earlier receive
+                        if (System.currentTimeMillis() >= deadline) {
+                            return null;
+                        }
+                    }
+                } finally {
+                    timer.cancel();
+                }
+            } finally {
+                if (message != null) {
+                    releaseBuffer(message);
+                }
+            }
+        }
+
+        /**
+         * Read a datagram already received, without waiting, skipping the wake-ups of earlier timers
+         */
+        private boolean poll(ByteBuffer message) throws IOException {
+            channel.configureBlocking(false);
+            try {
+                while ((sender = channel.receive(message)) != null) {
+                    message.flip();
+                    if (message.hasRemaining()) {
+                        return true;
+                    }
+                    message.clear();
+                }
+                return false;
+            } finally {
+                channel.configureBlocking(true);
+            }
+        }
+
+        @Override
+        public SocketAddress getSender() {
+            return sender;
+        }
+
+        @Override
+        public Service getService() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void wakeUp() {
+            try {
+                getWakeupChannel().send(ByteBuffer.allocate(0), wakeupAddress);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public Endpoint bind(Service... services) throws IOException {
+        if (services.length == 0) {
+            throw new IllegalArgumentException("No service to bind");
+        }
+        DatagramChannel[] channels = new DatagramChannel[services.length];
+        try {
+            for (int i = 0; i < services.length; i++) {
+                if (services[i].isPublished()) {
+                    throw new IllegalArgumentException(services[i] + " is published, subscribe to it instead");
+                }
+                channels[i] = DatagramChannel.open();
+                channels[i].bind(new InetSocketAddress(services[i].getPort()));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            closeAll(channels);
+            throw e;
+        }
+        return new ServiceEndpoint(services.clone(), channels);
+    }
+
+    @Override
+    public Endpoint subscribe(Service service) throws IOException {
+        if (!service.isPublished()) {
+            throw new IllegalArgumentException(service + " is not published, bind it instead");
+        }
+        DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        try {
+            // Every subscriber of the host binds the port of the service
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(new InetSocketAddress(service.getPort()));
+            channel.join(groupAddress(), groupInterface());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ServiceEndpoint(new Service[]{service}, new DatagramChannel[]{channel});
+    }
+
+    @Override
+    public Endpoint open() throws IOException {
+        return new ChannelEndpoint();
+    }
+
+    @Override
+    public SocketAddress addressOf(Service service) throws IOException {
+        if (service.isPublished()) {
+            return new InetSocketAddress(groupAddress(), service.getPort());
+        }
+        return new InetSocketAddress(InetAddress.getLocalHost(), service.getPort());
+    }
+
+    @Override
+    protected ByteBuffer allocateBuffer() {
+        return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Send a message from a channel, or from the publishing channel if it goes to the group of a published service
+     */
+    private void send(DatagramChannel channel, ByteBuffer message, SocketAddress target) throws IOException {
+        try {
+            if (target instanceof InetSocketAddress && ((InetSocketAddress) target).getAddress().isMulticastAddress()) {
+                channel = getPublishChannel();
+            }
+            channel.send(message, target);
+        } finally {
+            releaseBuffer(message);
+        }
+    }
+
+    private DatagramChannel getWakeupChannel() throws IOException {
+        synchronized (channelLock) {
+            if (wakeupChannel == null) {
+                wakeupChannel = DatagramChannel.open();
+            }
+            return wakeupChannel;
+        }
+    }
+
+    private DatagramChannel getPublishChannel() throws IOException {
+        synchronized (channelLock) {
+            if (publishChannel == null) {
+                publishChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+                publishChannel.setOption(StandardSocketOptions.IP_MULTICAST_IF, groupInterface());
+                // Subscribers on the same host receive the messages too
+                publishChannel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            }
+            return publishChannel;
+        }
+    }
+
+    private static InetAddress groupAddress() throws IOException {
+        return InetAddress.getByName(System.getProperty(GROUP_PROPERTY, "239.255.80.80"));
+    }
+
+    private static NetworkInterface groupInterface() throws IOException {
+        String name = System.getProperty(INTERFACE_PROPERTY);
+        NetworkInterface networkInterface = name != null ? NetworkInterface.getByName(name) : NetworkInterface.getByInetAddress(InetAddress.getLocalHost());
+        if (networkInterface == null) {
+            networkInterface = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+        }
+        return networkInterface;
+    }
+
+    private static void closeAll(DatagramChannel[] channels) throws IOException {
+        for (DatagramChannel channel : channels) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+}
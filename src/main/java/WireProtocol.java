@@ -0,0 +1,222 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Binary codec of the messages exchanged between the subsystems and the Scheduler.
+ *
+ * Every message starts with the same header:
+ * <pre>
+ *   byte version | byte message type | int sequence number
+ * </pre>
+ * followed by a body that depends on the message type:
+ * <pre>
+ *   ACTION_REQUEST  int elevator car id | int current floor | int flags
+ *   ACTION_REPLY    byte action ordinal | int target floor
+ *   HALL_CALL       long timestamp (epoch millis) | int starting floor | int target floor | byte direction
+ *   DISPLAY_UPDATE  int elevator car id | int current floor
+ * </pre>
+ * The reply to an action request carries the sequence number of the request, so an elevator car can
+ * tell an answer to its latest request apart from a late answer to an earlier one. The target floor of
+ * a reply is the destination of a MOVE_TO action and {@link #NO_FLOOR} for the other actions.
+ *
+ * An action request with the ARRIVAL flag is the report of a car passing a floor during a MOVE_TO run.
+ * It is not answered, unless the scheduler changes the destination of the run, in which case a new
+ * MOVE_TO reply carrying the sequence number of the run is pushed to the car.
+ *
+ * Messages are written into and read from buffers supplied by the caller, so encoding and decoding
+ * allocate nothing. Multi-byte values use the default big endian order of ByteBuffer.
+ */
+public final class WireProtocol {
+    public static final byte VERSION = 2;
+
+    public static final byte ACTION_REQUEST = 1;
+    public static final byte ACTION_REPLY = 2;
+    public static final byte HALL_CALL = 3;
+    public static final byte DISPLAY_UPDATE = 4;
+
+    public static final byte DIRECTION_UP = 1;
+    public static final byte DIRECTION_DOWN = 2;
+
+    public static final int NO_FLOOR = -1;
+
+    public static final int HEADER_SIZE = Byte.BYTES * 2 + Integer.BYTES;
+    public static final int ACTION_REQUEST_SIZE = HEADER_SIZE + Integer.BYTES * 3;
+    public static final int ACTION_REPLY_SIZE = HEADER_SIZE + Byte.BYTES + Integer.BYTES;
+    public static final int HALL_CALL_SIZE = HEADER_SIZE + Long.BYTES + Integer.BYTES * 2 + Byte.BYTES;
+    public static final int DISPLAY_UPDATE_SIZE = HEADER_SIZE + Integer.BYTES * 2;
+
+    //Cached since values() copies the array on every call
+    private static final ElevatorSubsystem.Action[] ACTIONS = ElevatorSubsystem.Action.values();
+
+    private WireProtocol() {
+    }
+
+    /**
+     * Write an action request of an elevator car, the buffer is cleared first and flipped once written
+     *
+     * @param buffer the buffer to write the message to
+     * @param sequence the sequence number of the request
+     * @param elevatorCarID the elevator car id
+     * @param currentFloor the current floor of the elevator car
+     * @param flags the request flags
+     */
+    public static void encodeActionRequest(ByteBuffer buffer, int sequence, int elevatorCarID, int currentFloor, int flags) {
+        writeHeader(buffer, ACTION_REQUEST, sequence);
+        buffer.putInt(elevatorCarID);
+        buffer.putInt(currentFloor);
+        buffer.putInt(flags);
+        buffer.flip();
+    }
+
+    /**
+     * Write the action assigned to an elevator car, the buffer is cleared first and flipped once written
+     *
+     * @param buffer the buffer to write the message to
+     * @param sequence the sequence number of the request being answered
+     * @param action the action assigned to the elevator car
+     */
+    public static void encodeActionReply(ByteBuffer buffer, int sequence, ElevatorSubsystem.Action action) {
+        encodeActionReply(buffer, sequence, action, NO_FLOOR);
+    }
+
+    /**
+     * Write the action assigned to an elevator car with the floor it applies to, the buffer is cleared
+     * first and flipped once written
+     *
+     * @param buffer the buffer to write the message to
+     * @param sequence the sequence number of the request being answered
+     * @param action the action assigned to the elevator car
+     * @param targetFloor the destination of a MOVE_TO action, NO_FLOOR for the other actions
+     */
+    public static void encodeActionReply(ByteBuffer buffer, int sequence, ElevatorSubsystem.Action action, int targetFloor) {
+        writeHeader(buffer, ACTION_REPLY, sequence);
+        buffer.put((byte) action.ordinal());
+        buffer.putInt(targetFloor);
+        buffer.flip();
+    }
+
+    /**
+     * Write an elevator call made on a floor, the buffer is cleared first and flipped once written
+     *
+     * @param buffer the buffer to write the message to
+     * @param sequence the sequence number of the call
+     * @param timestamp the time of the call in milliseconds since the epoch
+     * @param startingFloor the floor the call was made on
+     * @param targetFloor the floor requested
+     * @param up true if the call goes up, false if it goes down
+     * @throws IllegalArgumentException if a floor is negative or the direction does not lead to the target floor
+     */
+    public static void encodeHallCall(ByteBuffer buffer, int sequence, long timestamp, int startingFloor, int targetFloor, boolean up) {
+        if (!ElevatorCall.isValid(startingFloor, targetFloor, up)) {
+            throw new IllegalArgumentException("Invalid elevator call from floor " + startingFloor + " to floor " + targetFloor + (up ? " going up" : " going down"));
+        }
+        writeHeader(buffer, HALL_CALL, sequence);
+        buffer.putLong(timestamp);
+        buffer.putInt(startingFloor);
+        buffer.putInt(targetFloor);
+        buffer.put(up ? DIRECTION_UP : DIRECTION_DOWN);
+        buffer.flip();
+    }
+
+    /**
+     * Write the current floor of an elevator car for the floor displays, the buffer is cleared first
+     * and flipped once written
+     *
+     * @param buffer the buffer to write the message to
+     * @param sequence the sequence number of the update
+     * @param elevatorCarID the elevator car id
+     * @param currentFloor the current floor of the elevator car
+     */
+    public static void encodeDisplayUpdate(ByteBuffer buffer, int sequence, int elevatorCarID, int currentFloor) {
+        writeHeader(buffer, DISPLAY_UPDATE, sequence);
+        buffer.putInt(elevatorCarID);
+        buffer.putInt(currentFloor);
+        buffer.flip();
+    }
+
+    /**
+     * Check that a received message has the expected version, type and size without consuming it
+     *
+     * @param buffer the received message, flipped and ready to be read
+     * @param type the expected message type
+     * @return true if the message can be decoded as the given type
+     */
+    public static boolean isMessage(ByteBuffer buffer, byte type) {
+        int position = buffer.position();
+        return buffer.remaining() >= sizeOf(type)
+                && buffer.get(position) == VERSION
+                && buffer.get(position + 1) == type;
+    }
+
+    /**
+     * Read the header of a received message, leaving the buffer positioned at the start of the body
+     *
+     * @param buffer the received message, flipped and ready to be read
+     * @param type the expected message type
+     * @return the sequence number of the message
+     * @throws IllegalArgumentException if the message has another version or type, or is truncated
+     */
+    public static int readHeader(ByteBuffer buffer, byte type) {
+        if (!isMessage(buffer, type)) {
+            throw new IllegalArgumentException("Unexpected message, expected type " + type + " of version " + VERSION);
+        }
+        buffer.get();
+        buffer.get();
+        return buffer.getInt();
+    }
+
+    /**
+     * Read the action of an action reply whose header was already read
+     *
+     * @param buffer the message positioned at the start of the body
+     * @return the action assigned to the elevator car
+     */
+    public static ElevatorSubsystem.Action readAction(ByteBuffer buffer) {
+        int ordinal = buffer.get();
+        if (ordinal < 0 || ordinal >= ACTIONS.length) {
+            throw new IllegalArgumentException("Unknown action ordinal " + ordinal);
+        }
+        return ACTIONS[ordinal];
+    }
+
+    /**
+     * Read the target floor of an action reply whose action was already read
+     *
+     * @param buffer the message positioned at the target floor
+     * @return the destination of a MOVE_TO action, NO_FLOOR for the other actions
+     */
+    public static int readTargetFloor(ByteBuffer buffer) {
+        return buffer.getInt();
+    }
+
+    /**
+     * Read the direction of a hall call
+     *
+     * @param buffer the message positioned at the direction byte
+     * @return "Up" or "Down"
+     */
+    public static String readDirection(ByteBuffer buffer) {
+        return buffer.get() == DIRECTION_UP ? "Up" : "Down";
+    }
+
+    private static void writeHeader(ByteBuffer buffer, byte type, int sequence) {
+        buffer.clear();
+        buffer.put(VERSION);
+        buffer.put(type);
+        buffer.putInt(sequence);
+    }
+
+    private static int sizeOf(byte type) {
+        switch (type) {
+            case ACTION_REQUEST:
+                return ACTION_REQUEST_SIZE;
+            case ACTION_REPLY:
+                return ACTION_REPLY_SIZE;
+            case HALL_CALL:
+                return HALL_CALL_SIZE;
+            case DISPLAY_UPDATE:
+                return DISPLAY_UPDATE_SIZE;
+            default:
+                throw new IllegalArgumentException("Unknown message type " + type);
+        }
+    }
+}
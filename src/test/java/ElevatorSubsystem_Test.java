@@ -4,7 +4,14 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 
@@ -32,6 +39,128 @@ public class ElevatorSubsystem_Test {
         elevatorSubsystem = new ElevatorSubsystem();
     }
 
+    @Test
+    public void testIdleCarWaitsForPushedAction() throws Exception {
+        InProcessTransport transport = new InProcessTransport();
+        Scheduler pushScheduler = new Scheduler();
+        pushScheduler.startReactor(transport);
+        ElevatorSubsystem subsystem = new ElevatorSubsystem(transport);
+        ElevatorCar elevatorCar = new ElevatorCar(subsystem);
+
+        CompletableFuture<ElevatorSubsystem.Action> pushed = CompletableFuture.supplyAsync(() -> subsystem.awaitAction(elevatorCar.getElevatorCarID()));
+        try {
+            pushed.get(300, TimeUnit.MILLISECONDS);
+            fail("An idle car is not answered while there is nothing to do");
+        } catch (TimeoutException e) {
+            // expected, the subscription is parked
+        }
+
+        // Queuing a call answers the parked subscription right away
+        pushScheduler.addRequest(new ElevatorCall(new Date(), elevatorCar.getCurrentFloor() + 2, elevatorCar.getCurrentFloor() + 4, "Up"));
+        assertEquals(ElevatorSubsystem.Action.MOVE_TO, pushed.get(2, TimeUnit.SECONDS));
+        assertEquals(elevatorCar.getCurrentFloor() + 2, subsystem.getTargetFloor(elevatorCar.getElevatorCarID()));
+    }
+
+    @Test
+    public void testIdleCarToldToQuitOnceRequestsComplete() throws Exception {
+        InProcessTransport transport = new InProcessTransport();
+        Scheduler pushScheduler = new Scheduler();
+        pushScheduler.startReactor(transport);
+        ElevatorSubsystem subsystem = new ElevatorSubsystem(transport);
+        ElevatorCar elevatorCar = new ElevatorCar(subsystem);
+
+        CompletableFuture<ElevatorSubsystem.Action> pushed = CompletableFuture.supplyAsync(() -> subsystem.awaitAction(elevatorCar.getElevatorCarID()));
+        Thread.sleep(100);
+        assertFalse(pushed.isDone());
+        pushScheduler.signalRequestsComplete();
+        assertEquals(ElevatorSubsystem.Action.QUIT, pushed.get(2, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Read the next action request received by a stand-in scheduler endpoint
+     * @return the sequence number and the elevator car id of the request
+     */
+    private int[] receiveRequest(InProcessTransport transport, Transport.Endpoint scheduler) throws IOException {
+        ByteBuffer request = scheduler.receive(2000);
+        assertNotNull(request);
+        int sequence = WireProtocol.readHeader(request, WireProtocol.ACTION_REQUEST);
+        int elevatorCarID = request.getInt();
+        transport.releaseBuffer(request);
+        return new int[]{sequence, elevatorCarID};
+    }
+
+    private void reply(InProcessTransport transport, Transport.Endpoint scheduler, int sequence, ElevatorSubsystem.Action action, SocketAddress address) throws IOException {
+        ByteBuffer reply = transport.acquireBuffer();
+        WireProtocol.encodeActionReply(reply, sequence, action);
+        scheduler.send(reply, address);
+    }
+
+    @Test
+    public void testCarKeepsItsChannelAndDropsStaleReplies() throws Exception {
+        InProcessTransport transport = new InProcessTransport();
+        Transport.Endpoint scheduler = transport.bind(Transport.Service.ELEVATOR);
+        ElevatorSubsystem subsystem = new ElevatorSubsystem(transport);
+        ElevatorCar elevatorCar = new ElevatorCar(subsystem);
+
+        CompletableFuture<ElevatorSubsystem.Action> first = CompletableFuture.supplyAsync(() -> subsystem.getAction(elevatorCar.getElevatorCarID()));
+        int[] request = receiveRequest(transport, scheduler);
+        SocketAddress channel = scheduler.getSender();
+        reply(transport, scheduler, request[0], ElevatorSubsystem.Action.UP, channel);
+        assertEquals(ElevatorSubsystem.Action.UP, first.get(2, TimeUnit.SECONDS));
+
+        // The next request goes through the same channel, a late answer to the previous request is ignored
+        CompletableFuture<ElevatorSubsystem.Action> second = CompletableFuture.supplyAsync(() -> subsystem.getAction(elevatorCar.getElevatorCarID()));
+        request = receiveRequest(transport, scheduler);
+        assertEquals(channel, scheduler.getSender());
+        reply(transport, scheduler, request[0] - 1, ElevatorSubsystem.Action.QUIT, channel);
+        reply(transport, scheduler, request[0], ElevatorSubsystem.Action.TOGGLE_DOORS, channel);
+        assertEquals(ElevatorSubsystem.Action.TOGGLE_DOORS, second.get(2, TimeUnit.SECONDS));
+        scheduler.close();
+    }
+
+    @Test
+    public void testCarThatDoesNotMoveReportsNoArrival() throws Exception {
+        InProcessTransport transport = new InProcessTransport();
+        Transport.Endpoint scheduler = transport.bind(Transport.Service.ELEVATOR);
+        ElevatorSubsystem subsystem = new ElevatorSubsystem(transport);
+        ElevatorCar brokenCar = new ElevatorCar(subsystem) {
+            @Override
+            public void move(int direction) {
+                running = false; // breaks down instead of moving, like a FloorArrivalFaultElevatorCar
+            }
+        };
+
+        brokenCar.moveTo(ElevatorCar.getStartingFloor() + 5);
+        assertEquals(ElevatorCar.getStartingFloor(), brokenCar.getCurrentFloor());
+        assertNull("No arrival should be reported at the floor the car never left", scheduler.receive(100));
+        scheduler.close();
+    }
+
+    @Test
+    public void testCarsOfASubsystemWaitConcurrently() throws Exception {
+        InProcessTransport transport = new InProcessTransport();
+        Transport.Endpoint scheduler = transport.bind(Transport.Service.ELEVATOR);
+        ElevatorSubsystem subsystem = new ElevatorSubsystem(transport);
+        ElevatorCar firstCar = new ElevatorCar(subsystem);
+        ElevatorCar secondCar = new ElevatorCar(subsystem);
+
+        CompletableFuture<ElevatorSubsystem.Action> first = CompletableFuture.supplyAsync(() -> subsystem.getAction(firstCar.getElevatorCarID()));
+        int[] firstRequest = receiveRequest(transport, scheduler);
+        SocketAddress firstChannel = scheduler.getSender();
+        CompletableFuture<ElevatorSubsystem.Action> second = CompletableFuture.supplyAsync(() -> subsystem.getAction(secondCar.getElevatorCarID()));
+        int[] secondRequest = receiveRequest(transport, scheduler);
+        SocketAddress secondChannel = scheduler.getSender();
+        assertNotEquals("Every car has a channel of its own", firstChannel, secondChannel);
+
+        // The second car is answered while the first one is still waiting
+        reply(transport, scheduler, secondRequest[0], ElevatorSubsystem.Action.DOWN, secondChannel);
+        assertEquals(ElevatorSubsystem.Action.DOWN, second.get(2, TimeUnit.SECONDS));
+        assertFalse(first.isDone());
+        reply(transport, scheduler, firstRequest[0], ElevatorSubsystem.Action.UP, firstChannel);
+        assertEquals(ElevatorSubsystem.Action.UP, first.get(2, TimeUnit.SECONDS));
+        scheduler.close();
+    }
+
     /*
     @Test
     public void testElevatorUpMovement() {
@@ -0,0 +1,173 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing EventJournal and JournalReplay classes
+ */
+public class EventJournal_Test {
+    private static final int CARS = 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecordsRoundTrip() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        // Segments of 64 bytes hold two records, so the records span several segments
+        try (EventJournal journal = new EventJournal(directory, 64)) {
+            journal.hallCall(1, 1700000000000L, 3, 9, true);
+            journal.actionRequest(2, 0, 1, true);
+            journal.action(3, 0, ElevatorSubsystem.Action.MOVE_TO, 3);
+            journal.assignment(4, 0, 3, 9, 2);
+            journal.fault(5, 1);
+        }
+        assertTrue(EventJournal.segments(directory).size() > 1);
+
+        EventJournal.Reader reader = new EventJournal.Reader(directory);
+        assertTrue(reader.next());
+        assertEquals(EventJournal.HALL_CALL, reader.getType());
+        assertEquals(1700000000000L, reader.getCallTimestamp());
+        assertEquals(9, reader.getTargetFloor());
+        assertTrue(reader.isUp());
+        assertTrue(reader.next());
+        assertEquals(EventJournal.ACTION_REQUEST, reader.getType());
+        assertTrue(reader.isMultiFloor());
+        assertTrue(reader.next());
+        assertEquals(ElevatorSubsystem.Action.MOVE_TO, reader.getAction());
+        assertEquals(3, reader.getTargetFloor());
+        assertTrue(reader.next());
+        assertEquals(2, reader.getMergedCalls());
+        assertTrue(reader.next());
+        assertEquals(EventJournal.FAULT, reader.getType());
+        assertEquals(5, reader.getTime());
+        assertEquals(1, reader.getElevatorId());
+        assertFalse(reader.next());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRefusesExistingJournal() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        new EventJournal(directory, 1024).close();
+        new EventJournal(directory, 1024);
+    }
+
+    @Test
+    public void testReplayGivesRecordedDecisions() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        long[] now = new long[1];
+        Scheduler scheduler = new Scheduler();
+        scheduler.getMetrics().setClock(() -> now[0]);
+        EventJournal journal = new EventJournal(directory, 4096);
+        scheduler.setJournal(journal);
+
+        int[][] calls = {{3, 9}, {12, 2}, {5, 8}, {7, 1}, {4, 10}, {6, 7}};
+        int[] floors = {1, 1};
+        int nextCall = 0;
+        int running = CARS;
+        boolean[] quit = new boolean[CARS];
+        while (running > 0) {
+            if (nextCall < calls.length && now[0] % 3000 == 0) {
+                int[] call = calls[nextCall++];
+                scheduler.addRequest(new ElevatorCall(new Date(now[0]), call[0], call[1], call[1] > call[0] ? "Up" : "Down"));
+            } else if (nextCall == calls.length && !scheduler.isRequestsComplete()) {
+                scheduler.signalRequestsComplete();
+            }
+            for (int car = 0; car < CARS; car++) {
+                if (quit[car]) {
+                    continue;
+                }
+                ElevatorSubsystem.Action action = scheduler.getNextAction(car, floors[car]);
+                if (action == ElevatorSubsystem.Action.UP) {
+                    floors[car]++;
+                } else if (action == ElevatorSubsystem.Action.DOWN) {
+                    floors[car]--;
+                } else if (action == ElevatorSubsystem.Action.QUIT) {
+                    quit[car] = true;
+                    running--;
+                }
+            }
+            now[0] += 1000;
+        }
+        journal.close();
+
+        JournalReplay replay = new JournalReplay(new Scheduler());
+        replay.replay(directory);
+        assertTrue(replay.getActions() > 20);
+        assertEquals(replay.getFirstMismatch(), 0, replay.getMismatches());
+    }
+
+    @Test
+    public void testReplayOfConcurrentHallCalls() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        long[] now = new long[1];
+        Scheduler scheduler = new Scheduler();
+        scheduler.getMetrics().setClock(() -> now[0]);
+        EventJournal journal = new EventJournal(directory, 4096);
+        scheduler.setJournal(journal);
+
+        // Threads race to queue their calls, the replay must queue them in the same order
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> callers = new ArrayList<>();
+        for (int caller = 0; caller < 4; caller++) {
+            int firstFloor = caller;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 50; i++) {
+                    int startingFloor = (firstFloor + i) % 10;
+                    int targetFloor = (startingFloor + 1 + i % 7) % 12;
+                    if (targetFloor == startingFloor) {
+                        targetFloor = startingFloor + 1;
+                    }
+                    scheduler.addRequest(new ElevatorCall(new Date(), startingFloor, targetFloor, targetFloor > startingFloor ? "Up" : "Down"));
+                }
+            });
+            thread.start();
+            callers.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : callers) {
+            thread.join();
+        }
+        scheduler.signalRequestsComplete();
+
+        int[] floors = {1, 1};
+        int running = CARS;
+        boolean[] quit = new boolean[CARS];
+        while (running > 0) {
+            for (int car = 0; car < CARS; car++) {
+                if (quit[car]) {
+                    continue;
+                }
+                ElevatorSubsystem.Action action = scheduler.getNextAction(car, floors[car]);
+                if (action == ElevatorSubsystem.Action.UP) {
+                    floors[car]++;
+                } else if (action == ElevatorSubsystem.Action.DOWN) {
+                    floors[car]--;
+                } else if (action == ElevatorSubsystem.Action.QUIT) {
+                    quit[car] = true;
+                    running--;
+                }
+            }
+            now[0] += 1000;
+        }
+        journal.close();
+
+        JournalReplay replay = new JournalReplay(new Scheduler());
+        replay.replay(directory);
+        assertEquals(200 + 1 + replay.getActions(), replay.getInputs());
+        assertEquals(replay.getFirstMismatch(), 0, replay.getMismatches());
+    }
+}
@@ -0,0 +1,68 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing FloorStopSet class
+ */
+public class FloorStopSet_Test {
+
+    @Test
+    public void testAscendingOrder() {
+        FloorStopSet stops = new FloorStopSet(true);
+        stops.add(7);
+        stops.add(2);
+        stops.add(70);
+        assertFalse(stops.add(7));
+        assertEquals(3, stops.size());
+        assertArrayEquals(new int[]{2, 7, 70}, stops.toArray());
+        assertEquals(70, stops.get(2));
+        assertEquals(2, stops.pollFirst());
+        assertEquals(7, stops.first());
+        assertEquals("[7, 70]", stops.toString());
+    }
+
+    @Test
+    public void testDescendingOrder() {
+        FloorStopSet stops = new FloorStopSet(false);
+        stops.add(3);
+        stops.add(12);
+        stops.add(65);
+        assertArrayEquals(new int[]{65, 12, 3}, stops.toArray());
+        assertEquals(12, stops.get(1));
+        assertEquals(3, stops.lowest());
+        assertEquals(65, stops.highest());
+        assertEquals(65, stops.pollFirst());
+        assertEquals(12, stops.pollFirst());
+        assertEquals(3, stops.pollFirst());
+        assertTrue(stops.isEmpty());
+        assertEquals(FloorStopSet.NONE, stops.first());
+        assertEquals(FloorStopSet.NONE, stops.pollFirst());
+    }
+
+    @Test
+    public void testListView() {
+        FloorStopSet stops = new FloorStopSet(true);
+        stops.asList().add(0, 9);
+        stops.asList().add(0, 4);
+        assertEquals(4, (int) stops.asList().get(0));
+        assertTrue(stops.asList().contains(9));
+        assertEquals(9, (int) stops.asList().remove(1));
+        assertFalse(stops.contains(9));
+    }
+
+    @Test
+    public void testRejectsFloorsOutOfRange() {
+        FloorStopSet stops = new FloorStopSet(true);
+        assertTrue(stops.add(FloorStopSet.MAX_FLOOR));
+        for (int floor : new int[]{-1, FloorStopSet.MAX_FLOOR + 1, 2_000_000_000}) {
+            try {
+                stops.add(floor);
+                fail("Floor " + floor + " should be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        assertEquals(1, stops.size());
+    }
+}
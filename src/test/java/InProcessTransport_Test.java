@@ -0,0 +1,151 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing InProcessTransport class
+ */
+public class InProcessTransport_Test {
+    private InProcessTransport transport;
+
+    @Before
+    public void setUp() {
+        transport = new InProcessTransport();
+    }
+
+    @Test
+    public void testHandsOverTheSentBuffer() throws IOException {
+        Transport.Endpoint service = transport.bind(Transport.Service.ELEVATOR, Transport.Service.FLOOR);
+        Transport.Endpoint client = transport.open();
+
+        ByteBuffer request = transport.acquireBuffer();
+        WireProtocol.encodeActionRequest(request, 7, 1, 3, 0);
+        client.send(request, transport.addressOf(Transport.Service.FLOOR));
+
+        ByteBuffer received = service.receive(1000);
+        assertSame(request, received);
+        assertEquals(Transport.Service.FLOOR, service.getService());
+        assertEquals(client.getAddress(), service.getSender());
+        assertEquals(7, WireProtocol.readHeader(received, WireProtocol.ACTION_REQUEST));
+        transport.releaseBuffer(received);
+
+        // The reply goes back to the address of the sender
+        ByteBuffer reply = transport.acquireBuffer();
+        WireProtocol.encodeActionReply(reply, 7, ElevatorSubsystem.Action.UP);
+        service.send(reply, service.getSender());
+        assertSame(reply, client.receive(0));
+        assertNull(client.getService());
+    }
+
+    @Test
+    public void testReceiveTimesOutAndDropsUnboundTargets() throws IOException {
+        Transport.Endpoint client = transport.open();
+        ByteBuffer message = transport.acquireBuffer();
+        WireProtocol.encodeDisplayUpdate(message, 1, 1, 5);
+        client.send(message, transport.addressOf(Transport.Service.DISPLAY));
+
+        long start = System.currentTimeMillis();
+        assertNull(client.receive(50));
+        assertTrue(System.currentTimeMillis() - start >= 50);
+
+        Transport.Endpoint fault = transport.bind(Transport.Service.FAULT);
+        assertNull(fault.receive(0));
+        try {
+            transport.bind(Transport.Service.FAULT);
+            fail("A service is bound by a single endpoint");
+        } catch (BindException e) {
+            // expected
+        }
+        fault.close();
+        transport.bind(Transport.Service.FAULT).close();
+    }
+
+    @Test
+    public void testPublishedToEverySubscriber() throws IOException {
+        try {
+            transport.bind(Transport.Service.DISPLAY);
+            fail("A published service is subscribed to, not bound");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Transport.Endpoint first = transport.subscribe(Transport.Service.DISPLAY);
+        Transport.Endpoint second = transport.subscribe(Transport.Service.DISPLAY);
+        Transport.Endpoint closed = transport.subscribe(Transport.Service.DISPLAY);
+        closed.close();
+
+        Transport.Endpoint scheduler = transport.open();
+        ByteBuffer message = transport.acquireBuffer();
+        WireProtocol.encodeDisplayUpdate(message, 1, 2, 5);
+        scheduler.send(message, transport.addressOf(Transport.Service.DISPLAY));
+
+        for (Transport.Endpoint subscriber : new Transport.Endpoint[]{first, second}) {
+            ByteBuffer received = subscriber.receive(1000);
+            assertNotNull(received);
+            assertEquals(Transport.Service.DISPLAY, subscriber.getService());
+            assertEquals(1, WireProtocol.readHeader(received, WireProtocol.DISPLAY_UPDATE));
+            assertEquals(2, received.getInt());
+            assertEquals(5, received.getInt());
+            transport.releaseBuffer(received);
+        }
+        assertNull(closed.receive(0));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testDisplayUpdatesCoalesced() throws IOException {
+        Transport.Endpoint display = transport.subscribe(Transport.Service.DISPLAY);
+        Scheduler scheduler = new Scheduler();
+        scheduler.startReactor(transport);
+
+        // Floors reported within one display interval go out as the latest floor of each car
+        scheduler.SendDisplayInfoToFloorSubsystem(1, 2);
+        scheduler.SendDisplayInfoToFloorSubsystem(1, 3);
+        scheduler.SendDisplayInfoToFloorSubsystem(2, 7);
+        scheduler.SendDisplayInfoToFloorSubsystem(1, 4);
+
+        int[] floors = new int[3];
+        for (int i = 0; i < 2; i++) {
+            ByteBuffer received = display.receive(1000);
+            assertNotNull(received);
+            WireProtocol.readHeader(received, WireProtocol.DISPLAY_UPDATE);
+            int elevatorId = received.getInt();
+            floors[elevatorId] = received.getInt();
+            transport.releaseBuffer(received);
+        }
+        assertEquals(4, floors[1]);
+        assertEquals(7, floors[2]);
+        assertNull(display.receive(300));
+        display.close();
+    }
+
+    @Test
+    public void testElevatorCarRoundTrip() {
+        Scheduler scheduler = new Scheduler();
+        scheduler.startReactor(transport);
+        ElevatorSubsystem elevatorSubsystem = new ElevatorSubsystem(transport);
+        ElevatorCar elevatorCar = new ElevatorCar(elevatorSubsystem);
+
+        assertEquals(ElevatorSubsystem.Action.IDLE, elevatorSubsystem.getAction(elevatorCar.getElevatorCarID()));
+
+        // A call pushes an action to the idle car, without any socket
+        Threads.start("test-floor", () -> {
+            try {
+                Thread.sleep(100);
+                Transport.Endpoint floor = transport.open();
+                ByteBuffer call = transport.acquireBuffer();
+                WireProtocol.encodeHallCall(call, 1, System.currentTimeMillis(), elevatorCar.getCurrentFloor() + 2, elevatorCar.getCurrentFloor() + 4, true);
+                floor.send(call, transport.addressOf(Transport.Service.FLOOR));
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+            }
+        });
+        assertEquals(ElevatorSubsystem.Action.MOVE_TO, elevatorSubsystem.awaitAction(elevatorCar.getElevatorCarID()));
+        assertEquals(elevatorCar.getCurrentFloor() + 2, elevatorSubsystem.getTargetFloor(elevatorCar.getElevatorCarID()));
+    }
+}
@@ -0,0 +1,76 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing Log class
+ */
+public class Log_Test {
+    private PrintStream out;
+    private ByteArrayOutputStream captured;
+    private Log.Level level;
+
+    @Before
+    public void setUp() {
+        Log.flush();
+        out = System.out;
+        level = Log.getLevel();
+        captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+    }
+
+    @After
+    public void tearDown() {
+        Log.flush();
+        System.setOut(out);
+        Log.setLevel(level);
+    }
+
+    @Test
+    public void testLevels() {
+        Log.setLevel(Log.Level.INFO);
+        assertFalse(Log.isEnabled(Log.Level.DEBUG));
+        assertTrue(Log.isEnabled(Log.Level.WARN));
+
+        Log.debug("[TEST] hidden %d", 1);
+        Log.info("[TEST] shown %d at floor %d", 2, 7);
+        Log.warn("[TEST] %s", "warning");
+        Log.flush();
+
+        String output = captured.toString();
+        assertFalse(output.contains("hidden"));
+        assertTrue(output.contains("[TEST] shown 2 at floor 7"));
+        assertTrue(output.contains("[TEST] warning"));
+    }
+
+    @Test
+    public void testMessagesKeepTheirOrder() {
+        Log.setLevel(Log.Level.DEBUG);
+        for (int i = 0; i < 1000; i++) {
+            Log.debug("[TEST] message %d", i);
+        }
+        Log.flush();
+
+        String output = captured.toString();
+        int last = -1;
+        for (int i = 0; i < 1000; i++) {
+            int index = output.indexOf("[TEST] message " + i + System.lineSeparator());
+            assertTrue("Message " + i + " should be printed after the previous ones", index > last);
+            last = index;
+        }
+    }
+
+    @Test
+    public void testParseLevel() {
+        assertEquals(Log.Level.DEBUG, Log.parseLevel("debug"));
+        assertEquals(Log.Level.WARN, Log.parseLevel(" WARN "));
+        assertEquals(Log.Level.INFO, Log.parseLevel(null));
+        assertEquals(Log.Level.INFO, Log.parseLevel("verbose"));
+        assertEquals(Log.Level.INFO, Log.parseLevel(""));
+    }
+}
@@ -0,0 +1,120 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing PendingCallIndex class
+ */
+public class PendingCallIndex_Test {
+
+    private PendingCallIndex index;
+    private ElevatorCall upFrom2;
+    private ElevatorCall upFrom5;
+    private ElevatorCall upFrom14;
+    private ElevatorCall upFrom15;
+    private ElevatorCall downFrom9;
+
+    @Before
+    public void setUp() {
+        index = new PendingCallIndex();
+        upFrom14 = new ElevatorCall(new Date(), 14, 18, "Up");
+        upFrom2 = new ElevatorCall(new Date(), 2, 6, "Up");
+        upFrom5 = new ElevatorCall(new Date(), 5, 9, "Up");
+        upFrom15 = new ElevatorCall(new Date(), 15, 20, "Up");
+        downFrom9 = new ElevatorCall(new Date(), 9, 1, "Down");
+        for (ElevatorCall call : Arrays.asList(upFrom14, upFrom2, upFrom5, upFrom15, downFrom9)) {
+            index.add(call);
+        }
+    }
+
+    @Test
+    public void testArrivalOrder() {
+        assertEquals(5, index.size());
+        assertSame(upFrom14, index.poll());
+        assertSame(upFrom2, index.peek());
+        assertFalse(index.contains(upFrom14));
+        assertFalse("Null calls should be ignored", index.add(null));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testRangeQuery() {
+        assertEquals(Arrays.asList(upFrom5, upFrom14), index.range("Up", 5, 14));
+        assertEquals(Arrays.asList(downFrom9), index.range("Down", 1, 20));
+        assertTrue(index.range("Up", 6, 13).isEmpty());
+    }
+
+    @Test
+    public void testRemoveUpdatesRangeQueries() {
+        assertTrue(index.remove(upFrom5));
+        assertFalse(index.remove(upFrom5));
+        assertEquals(Arrays.asList(upFrom14), index.range("Up", 5, 14));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testMergeCandidates() {
+        ElevatorCall trip = new ElevatorCall(new Date(), 3, 12, "Up");
+        assertTrue("Trips without a known car position have no merge candidates", index.mergeCandidates(trip).isEmpty());
+
+        trip.setCurrentFloor(4);
+        List<ElevatorCall> candidates = index.mergeCandidates(trip);
+        assertEquals("Calls starting past the last stop of the trip are not candidates", Arrays.asList(upFrom5), candidates);
+    }
+
+    @Test
+    public void testMergeCandidatesAgreeWithActiveTrips() {
+        ActiveTripIndex activeTrips = new ActiveTripIndex();
+        PendingCallIndex pending = new PendingCallIndex();
+        ElevatorCall[] upCalls = new ElevatorCall[21];
+        ElevatorCall[] downCalls = new ElevatorCall[21];
+        for (int floor = 1; floor <= 20; floor++) {
+            upCalls[floor] = new ElevatorCall(new Date(), floor, 21, "Up");
+            downCalls[floor] = new ElevatorCall(new Date(), floor, 0, "Down");
+            pending.add(upCalls[floor]);
+            pending.add(downCalls[floor]);
+        }
+
+        ElevatorCall headingToPickup = new ElevatorCall(new Date(), 6, 12, "Up");
+        headingToPickup.setCurrentFloor(9);
+        ElevatorCall goingDown = new ElevatorCall(new Date(), 15, 4, "Down");
+        goingDown.setCurrentFloor(15);
+        goingDown.setTripStarted();
+        goingDown.setCurrentFloor(15); // picked up at 15, only the stop at 4 is left
+        for (ElevatorCall trip : Arrays.asList(headingToPickup, goingDown)) {
+            activeTrips.update(1, trip);
+            List<ElevatorCall> candidates = pending.mergeCandidates(trip);
+            ElevatorCall[] calls = trip.getDirection().equals("Up") ? upCalls : downCalls;
+            for (int floor = 1; floor <= 20; floor++) {
+                boolean covered = activeTrips.coveringTrips(trip.getDirection(), floor).contains(1);
+                assertEquals("Floor " + floor + " of " + trip, covered, candidates.contains(calls[floor]));
+            }
+        }
+        // Both stop at the last floor of the trip
+        activeTrips.update(1, headingToPickup);
+        assertTrue(activeTrips.coveringTrips("Up", 12).contains(1));
+        assertFalse(activeTrips.coveringTrips("Up", 13).contains(1));
+        assertTrue(activeTrips.coveringTrips("Down", 5).isEmpty());
+    }
+
+    @Test
+    public void testMergeIntoStopsWhenTripIsFull() {
+        ElevatorCall trip = new ElevatorCall(new Date(), 1, 20, "Up");
+        trip.setCurrentFloor(1);
+        for (int i = 0; i < 10; i++) {
+            index.add(new ElevatorCall(new Date(), 3, 7, "Up"));
+        }
+
+        int merged = index.mergeInto(trip);
+        assertTrue("The trip should not exceed the weight limit", trip.getPassengersTotalWeight() <= ElevatorCall.getWeightLimit());
+        assertTrue(trip.isFull());
+        assertEquals(15 - merged, index.size());
+        assertTrue("Merged calls should leave the index", index.range("Up", 2, 2).isEmpty());
+        assertTrue(index.contains(downFrom9));
+    }
+}
@@ -0,0 +1,61 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing SchedulerMetrics class
+ */
+public class SchedulerMetrics_Test {
+    private Scheduler scheduler;
+    private SchedulerMetrics metrics;
+    private long now;
+
+    @Before
+    public void setUp() {
+        scheduler = new Scheduler();
+        metrics = scheduler.getMetrics();
+        metrics.setClock(() -> now);
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        Histogram histogram = new Histogram("Test", "ms");
+        for (int value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertEquals(5000, histogram.getPercentile(50), 5000 / 32);
+        assertEquals(9500, histogram.getPercentile(95), 9500 / 32);
+        assertEquals(9900, histogram.getPercentile(99), 9900 / 32);
+        assertEquals(10000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testWaitAndRideTime() {
+        // Call from floor 3 to floor 5, the car starts at floor 1 and takes 1 s per action
+        scheduler.addRequest(new ElevatorCall(new Date(), 3, 5, "Up"));
+        int floor = 1;
+        ElevatorSubsystem.Action action;
+        while ((action = scheduler.getNextAction(0, floor)) != ElevatorSubsystem.Action.IDLE) {
+            if (action == ElevatorSubsystem.Action.UP) {
+                floor++;
+            } else if (action == ElevatorSubsystem.Action.DOWN) {
+                floor--;
+            }
+            now += 1000;
+        }
+
+        assertEquals(1, metrics.getWaitTime().getCount());
+        assertEquals(2000, metrics.getWaitTime().getMax());
+        assertEquals(1, metrics.getRideTime().getCount());
+        // Doors open and close at floor 3 before the car moves up two floors
+        assertEquals(4000, metrics.getRideTime().getMax());
+        assertEquals(4000, metrics.getCarTime(0, SchedulerMetrics.CarState.MOVING));
+        assertTrue(metrics.getCarTime(0, SchedulerMetrics.CarState.DOORS) > 0);
+        assertTrue(metrics.getDecisionLatency().getCount() > 0);
+    }
+}
@@ -0,0 +1,61 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing SchedulerSnapshot class
+ */
+public class SchedulerSnapshot_Test {
+    private Scheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new Scheduler();
+    }
+
+    @Test
+    public void testPublishesCarStateAndPendingCalls() {
+        assertEquals(0, scheduler.getSnapshot().getVersion());
+        assertTrue(scheduler.getSnapshot().getCars().isEmpty());
+
+        scheduler.addRequest(new ElevatorCall(new Date(), 3, 7, "Up"));
+        scheduler.addRequest(new ElevatorCall(new Date(), 9, 2, "Down"));
+        SchedulerSnapshot queued = scheduler.getSnapshot();
+        assertEquals(2, queued.getPendingCalls());
+
+        assertEquals(ElevatorSubsystem.Action.UP, scheduler.getNextAction(1, 1));
+        SchedulerSnapshot moving = scheduler.getSnapshot();
+        assertTrue(moving.getVersion() > queued.getVersion());
+        assertEquals(1, moving.getPendingCalls());
+        SchedulerSnapshot.Car car = moving.getCar(1);
+        assertEquals(1, car.getFloor());
+        assertEquals("Up", car.getDirection());
+        assertArrayEquals(new int[]{3, 7}, car.getStops());
+        assertEquals(SchedulerMetrics.CarState.MOVING, car.getState());
+        assertTrue(car.isInService());
+
+        // Published snapshots never change
+        assertEquals(2, queued.getPendingCalls());
+        assertNull(queued.getCar(1));
+    }
+
+    @Test
+    public void testCarsOrderedAndFaultPublished() {
+        scheduler.getNextAction(5, 1);
+        scheduler.getNextAction(2, 4);
+        scheduler.getNextAction(3, 6);
+        assertEquals(3, scheduler.getSnapshot().getCars().size());
+        assertEquals(2, scheduler.getSnapshot().getCars().get(0).getElevatorId());
+        assertEquals(5, scheduler.getSnapshot().getCars().get(2).getElevatorId());
+        assertEquals(SchedulerMetrics.CarState.IDLE, scheduler.getSnapshot().getCar(3).getState());
+
+        scheduler.disableElevatorCar(3);
+        SchedulerSnapshot.Car car = scheduler.getSnapshot().getCar(3);
+        assertEquals(SchedulerMetrics.CarState.FAULTED, car.getState());
+        assertFalse(car.isInService());
+        assertEquals(6, car.getFloor());
+    }
+}
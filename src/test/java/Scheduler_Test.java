@@ -1,6 +1,9 @@
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 import static org.junit.Assert.*;
@@ -41,6 +44,272 @@ public class Scheduler_Test {
         assertNotNull("Active trips should contain an entry for the elevator after assigning a trip", scheduler.getActiveTrips().get(1));
     }
 
+    @Test
+    public void testNearestCarDispatch() {
+        Scheduler nearestCarScheduler = new Scheduler();
+        nearestCarScheduler.setDispatchPolicy(new NearestCarDispatchPolicy());
+        nearestCarScheduler.getElevatorCarPositions().put(1, 1);
+        nearestCarScheduler.getElevatorCarPositions().put(2, 18);
+
+        ElevatorCall call = new ElevatorCall(new Date(), 19, 1, "Down");
+        nearestCarScheduler.addRequest(call);
+
+        assertFalse("The car far away from the call should not be assigned the trip", nearestCarScheduler.assignTrip(1));
+        assertTrue("The call should stay pending for the closest car", nearestCarScheduler.getRequestsQueue().contains(call));
+        assertTrue("The closest car should be assigned the trip", nearestCarScheduler.assignTrip(2));
+        assertSame(call, nearestCarScheduler.getActiveTrips().get(2));
+    }
+
+    @Test
+    public void testNearestCarTimeToArrival() {
+        Scheduler nearestCarScheduler = new Scheduler();
+        NearestCarDispatchPolicy policy = new NearestCarDispatchPolicy(1000, 5000);
+        nearestCarScheduler.getElevatorCarPositions().put(1, 1);
+        nearestCarScheduler.getElevatorCarPositions().put(2, 18);
+
+        ElevatorCall call = new ElevatorCall(new Date(), 19, 1, "Down");
+        assertEquals(18000, policy.estimateTimeToArrival(nearestCarScheduler, 1, call));
+        assertEquals(1000, policy.estimateTimeToArrival(nearestCarScheduler, 2, call));
+
+        // A busy car has to serve the stops left in its trip before travelling to the call
+        ElevatorCall trip = new ElevatorCall(new Date(), 18, 10, "Down");
+        trip.setCurrentFloor(18);
+        nearestCarScheduler.getActiveTrips().put(2, trip);
+        nearestCarScheduler.updateActiveTripIndex(2);
+        long expected = 5000 + 8000 + 5000 + 2 * (5000 * 100 / ElevatorCall.getWeightLimit()) + 9000;
+        assertEquals(expected, policy.estimateTimeToArrival(nearestCarScheduler, 2, call));
+        assertEquals(Long.MAX_VALUE, policy.estimateTimeToArrival(nearestCarScheduler, 3, call));
+    }
+
+    @Test
+    public void testNearestCarLoadDelayAtEveryStop() {
+        Scheduler nearestCarScheduler = new Scheduler();
+        NearestCarDispatchPolicy policy = new NearestCarDispatchPolicy(1000, 5000);
+        nearestCarScheduler.getElevatorCarPositions().put(1, 2);
+        ElevatorCall call = new ElevatorCall(new Date(), 2, 1, "Down");
+
+        ElevatorCall trip = new ElevatorCall(new Date(), 2, 10, "Up");
+        trip.setCurrentFloor(2);
+        nearestCarScheduler.getActiveTrips().put(1, trip);
+        nearestCarScheduler.updateActiveTripIndex(1);
+        long twoStops = policy.estimateTimeToArrival(nearestCarScheduler, 1, call);
+
+        // One more stop on the way costs its door time and the boarding delay of the load once more
+        trip.getStops().add(6);
+        nearestCarScheduler.updateActiveTripIndex(1);
+        long threeStops = policy.estimateTimeToArrival(nearestCarScheduler, 1, call);
+        assertEquals(5000 + 5000 * trip.getPassengersTotalWeight() / ElevatorCall.getWeightLimit(), threeStops - twoStops);
+    }
+
+    @Test
+    public void testAddRequestMergesIntoCoveringTrip() {
+        Scheduler mergeScheduler = new Scheduler();
+        mergeScheduler.getElevatorCarPositions().put(1, 2);
+        mergeScheduler.addRequest(new ElevatorCall(new Date(), 2, 10, "Up"));
+        assertTrue(mergeScheduler.assignTrip(1));
+
+        ElevatorCall coveredCall = new ElevatorCall(new Date(), 5, 8, "Up");
+        mergeScheduler.addRequest(coveredCall);
+        assertFalse("A call within the span of an active trip should be merged", mergeScheduler.getRequestsQueue().contains(coveredCall));
+        assertTrue(mergeScheduler.getActiveTrips().get(1).getTargetFloors().contains(5));
+
+        ElevatorCall uncoveredCall = new ElevatorCall(new Date(), 12, 15, "Up");
+        mergeScheduler.addRequest(uncoveredCall);
+        assertTrue("A call outside the span of every active trip should be queued", mergeScheduler.getRequestsQueue().contains(uncoveredCall));
+
+        ElevatorCall oppositeCall = new ElevatorCall(new Date(), 6, 3, "Down");
+        mergeScheduler.addRequest(oppositeCall);
+        assertTrue("A call in the opposite direction should be queued", mergeScheduler.getRequestsQueue().contains(oppositeCall));
+    }
+
+    @Test
+    public void testReactorSurvivesMalformedMessages() throws IOException, InterruptedException {
+        InProcessTransport transport = new InProcessTransport();
+        Scheduler reactorScheduler = new Scheduler();
+        reactorScheduler.startReactor(transport);
+        Transport.Endpoint client = transport.open();
+
+        ByteBuffer fault = transport.acquireBuffer();
+        fault.put("PERM_DISABLE:x".getBytes(StandardCharsets.US_ASCII)).flip();
+        client.send(fault, transport.addressOf(Transport.Service.FAULT));
+        ByteBuffer badCall = transport.acquireBuffer();
+        WireProtocol.encodeHallCall(badCall, 1, System.currentTimeMillis(), 3, 4, true);
+        badCall.putInt(WireProtocol.HEADER_SIZE + 8, -3); // the encoder rejects a negative starting floor
+        client.send(badCall, transport.addressOf(Transport.Service.FLOOR));
+
+        // The reactor is still serving the floor service after the messages it could not handle
+        ByteBuffer call = transport.acquireBuffer();
+        WireProtocol.encodeHallCall(call, 2, System.currentTimeMillis(), 3, 6, true);
+        client.send(call, transport.addressOf(Transport.Service.FLOOR));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (reactorScheduler.getRequestsQueue().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, reactorScheduler.getRequestsQueue().size());
+        assertEquals(3, reactorScheduler.getRequestsQueue().peek().getStartingFloor());
+    }
+
+    @Test
+    public void testMultiFloorCarsAreToldToMoveTo() {
+        Scheduler moveToScheduler = new Scheduler();
+        moveToScheduler.addRequest(new ElevatorCall(new Date(), 3, 8, "Up"));
+
+        assertEquals(ElevatorSubsystem.Action.MOVE_TO, moveToScheduler.getNextAction(1, 0, true));
+        assertEquals("Cars without MOVE_TO support still move one floor at a time", ElevatorSubsystem.Action.UP, moveToScheduler.getNextAction(1, 1, false));
+        assertEquals(ElevatorSubsystem.Action.TOGGLE_DOORS, moveToScheduler.getNextAction(1, 3, true));
+    }
+
+    @Test
+    public void testArrivalReportsUpdateTheTrip() {
+        Scheduler arrivalScheduler = new Scheduler();
+        arrivalScheduler.addRequest(new ElevatorCall(new Date(), 3, 8, "Up"));
+        assertEquals(ElevatorSubsystem.Action.MOVE_TO, arrivalScheduler.getNextAction(1, 0, true));
+        ElevatorCall trip = arrivalScheduler.getActiveTrips().get(1);
+
+        arrivalScheduler.elevatorCarArrived(1, 2);
+        assertEquals(2, (int) arrivalScheduler.getElevatorCarPositions().get(1));
+        assertEquals(2, (int) trip.getCurrentFloor());
+        assertEquals(3, trip.getStops().first());
+
+        // The stop is only removed once the car asks for its next action and opens its doors
+        arrivalScheduler.elevatorCarArrived(1, 3);
+        assertEquals(3, (int) arrivalScheduler.getElevatorCarPositions().get(1));
+        assertEquals(3, trip.getStops().first());
+        assertEquals(ElevatorSubsystem.Action.TOGGLE_DOORS, arrivalScheduler.getNextAction(1, 3, true));
+    }
+
+    @Test
+    public void testMergeWhileMovingKeepsClearOfTheNextFloor() throws IOException, InterruptedException {
+        InProcessTransport transport = new InProcessTransport();
+        Scheduler moveToScheduler = new Scheduler();
+        moveToScheduler.startReactor(transport);
+        Transport.Endpoint car = transport.open();
+        moveToScheduler.addRequest(new ElevatorCall(new Date(), 9, 12, "Up"));
+
+        ByteBuffer request = transport.acquireBuffer();
+        WireProtocol.encodeActionRequest(request, 1, 1, 0, ElevatorSubsystem.MOVE_TO_FLAG);
+        car.send(request, transport.addressOf(Transport.Service.ELEVATOR));
+        ByteBuffer reply = car.receive(2000);
+        assertNotNull(reply);
+        assertEquals(1, WireProtocol.readHeader(reply, WireProtocol.ACTION_REPLY));
+        assertSame(ElevatorSubsystem.Action.MOVE_TO, WireProtocol.readAction(reply));
+        assertEquals(9, WireProtocol.readTargetFloor(reply));
+        transport.releaseBuffer(reply);
+
+        ByteBuffer arrival = transport.acquireBuffer();
+        WireProtocol.encodeActionRequest(arrival, 1, 1, 1, ElevatorSubsystem.ARRIVAL_FLAG | ElevatorSubsystem.MOVE_TO_FLAG);
+        car.send(arrival, transport.addressOf(Transport.Service.ELEVATOR));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (moveToScheduler.getElevatorCarPositions().get(1) != 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, (int) moveToScheduler.getElevatorCarPositions().get(1));
+
+        // The car may already be past floor 2, the floor after the last one it reported
+        ElevatorCall nextFloorCall = new ElevatorCall(new Date(), 2, 6, "Up");
+        moveToScheduler.addRequest(nextFloorCall);
+        assertTrue(moveToScheduler.getRequestsQueue().contains(nextFloorCall));
+        assertNull("No destination is pushed for a call the car may have passed", car.receive(100));
+
+        // A call further on the way is merged and shortens the run
+        ElevatorCall aheadCall = new ElevatorCall(new Date(), 5, 7, "Up");
+        moveToScheduler.addRequest(aheadCall);
+        assertFalse(moveToScheduler.getRequestsQueue().contains(aheadCall));
+        assertEquals(5, moveToScheduler.getActiveTrips().get(1).getStops().first());
+        ByteBuffer pushed = car.receive(2000);
+        assertNotNull(pushed);
+        assertEquals("The new destination is pushed under the sequence number of the run", 1, WireProtocol.readHeader(pushed, WireProtocol.ACTION_REPLY));
+        assertSame(ElevatorSubsystem.Action.MOVE_TO, WireProtocol.readAction(pushed));
+        assertEquals(5, WireProtocol.readTargetFloor(pushed));
+        transport.releaseBuffer(pushed);
+        car.close();
+    }
+
+    @Test
+    public void testParkedCarIsOfferedCallsLeftByAnAssignment() throws IOException {
+        InProcessTransport transport = new InProcessTransport();
+        Scheduler nearestCarScheduler = new Scheduler();
+        nearestCarScheduler.setDispatchPolicy(new NearestCarDispatchPolicy(100, 1000));
+        nearestCarScheduler.getElevatorCarPositions().put(1, 1);
+        nearestCarScheduler.getElevatorCarPositions().put(2, 10);
+        nearestCarScheduler.addRequest(new ElevatorCall(new Date(), 9, 3, "Down"));
+        nearestCarScheduler.addRequest(new ElevatorCall(new Date(), 12, 15, "Up"));
+        nearestCarScheduler.startReactor(transport);
+        Transport.Endpoint carA = transport.open();
+        Transport.Endpoint carB = transport.open();
+
+        // Car B is closer to both calls, car A is left without work and parks
+        ByteBuffer subscription = transport.acquireBuffer();
+        WireProtocol.encodeActionRequest(subscription, 1, 1, 1, ElevatorSubsystem.SUBSCRIBE_FLAG);
+        carA.send(subscription, transport.addressOf(Transport.Service.ELEVATOR));
+        assertNull(carA.receive(200));
+
+        // Once car B takes the call from floor 9, car A is the closest car for the call from floor 12
+        subscription = transport.acquireBuffer();
+        WireProtocol.encodeActionRequest(subscription, 1, 2, 10, ElevatorSubsystem.SUBSCRIBE_FLAG);
+        carB.send(subscription, transport.addressOf(Transport.Service.ELEVATOR));
+        ByteBuffer reply = carB.receive(2000);
+        assertNotNull(reply);
+        WireProtocol.readHeader(reply, WireProtocol.ACTION_REPLY);
+        assertSame(ElevatorSubsystem.Action.DOWN, WireProtocol.readAction(reply));
+        transport.releaseBuffer(reply);
+
+        reply = carA.receive(2000);
+        assertNotNull("The parked car should be woken for the call it is now the closest car for", reply);
+        WireProtocol.readHeader(reply, WireProtocol.ACTION_REPLY);
+        assertSame(ElevatorSubsystem.Action.UP, WireProtocol.readAction(reply));
+        transport.releaseBuffer(reply);
+        assertEquals(12, nearestCarScheduler.getActiveTrips().get(1).getStartingFloor());
+        carA.close();
+        carB.close();
+    }
+
+    @Test
+    public void testTripsAssignedAndCompletedChangeTheDispatch() {
+        Scheduler dispatchScheduler = new Scheduler();
+        dispatchScheduler.addRequest(new ElevatorCall(new Date(), 2, 3, "Up"));
+        int dispatchChanges = dispatchScheduler.getDispatchChanges();
+
+        assertEquals(ElevatorSubsystem.Action.UP, dispatchScheduler.getNextAction(1, 1));
+        assertEquals("Assigning the trip changes the dispatch", dispatchChanges + 1, dispatchScheduler.getDispatchChanges());
+        assertEquals(ElevatorSubsystem.Action.TOGGLE_DOORS, dispatchScheduler.getNextAction(1, 2));
+        assertEquals(ElevatorSubsystem.Action.TOGGLE_DOORS, dispatchScheduler.getNextAction(1, 2));
+        assertEquals(ElevatorSubsystem.Action.UP, dispatchScheduler.getNextAction(1, 2));
+        assertEquals(dispatchChanges + 1, dispatchScheduler.getDispatchChanges());
+        assertEquals(ElevatorSubsystem.Action.TOGGLE_DOORS, dispatchScheduler.getNextAction(1, 3));
+        assertEquals("Completing the trip changes the dispatch", dispatchChanges + 2, dispatchScheduler.getDispatchChanges());
+
+        dispatchScheduler.signalRequestsComplete();
+        assertEquals(ElevatorSubsystem.Action.QUIT, dispatchScheduler.getNextAction(1, 3));
+        assertEquals("Retiring the car changes the dispatch", dispatchChanges + 3, dispatchScheduler.getDispatchChanges());
+    }
+
+    @Test
+    public void testInvalidHallCallsAreDropped() {
+        Scheduler floorScheduler = new Scheduler();
+        ByteBuffer packet = ByteBuffer.allocate(WireProtocol.HALL_CALL_SIZE);
+
+        WireProtocol.encodeHallCall(packet, 1, System.currentTimeMillis(), 3, 6, true);
+        packet.putInt(WireProtocol.HEADER_SIZE + 8, -2);
+        floorScheduler.handleFloorRequest(packet);
+        assertTrue("A call from a negative floor should be dropped", floorScheduler.getRequestsQueue().isEmpty());
+
+        WireProtocol.encodeHallCall(packet, 2, System.currentTimeMillis(), 3, 6, true);
+        packet.put(WireProtocol.HALL_CALL_SIZE - 1, WireProtocol.DIRECTION_DOWN);
+        floorScheduler.handleFloorRequest(packet);
+        assertTrue("A call going down to a floor above should be dropped", floorScheduler.getRequestsQueue().isEmpty());
+
+        WireProtocol.encodeHallCall(packet, 3, System.currentTimeMillis(), 3, 6, true);
+        packet.putInt(WireProtocol.HEADER_SIZE + 12, 2_000_000_000);
+        floorScheduler.handleFloorRequest(packet);
+        assertTrue("A call to a floor above the highest one should be dropped", floorScheduler.getRequestsQueue().isEmpty());
+
+        WireProtocol.encodeHallCall(packet, 4, System.currentTimeMillis(), 3, 6, true);
+        floorScheduler.handleFloorRequest(packet);
+        assertEquals(1, floorScheduler.getRequestsQueue().size());
+        assertEquals("Up", floorScheduler.getRequestsQueue().peek().getDirection());
+    }
+
     /**
     @Test
     public void testGetNextAction() {
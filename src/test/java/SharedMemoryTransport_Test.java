@@ -0,0 +1,216 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing SharedMemoryTransport class
+ */
+public class SharedMemoryTransport_Test {
+    private Path directory;
+    private SharedMemoryTransport serviceSide;
+    private SharedMemoryTransport clientSide;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("shm-test");
+        // Two transports on the same directory map the files separately, like two processes would
+        serviceSide = new SharedMemoryTransport(directory);
+        clientSide = new SharedMemoryTransport(directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path file : Files.newDirectoryStream(directory)) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private void sendRequest(Transport transport, Transport.Endpoint endpoint, int sequence) throws IOException {
+        ByteBuffer request = transport.acquireBuffer();
+        WireProtocol.encodeActionRequest(request, sequence, 1, 3, 0);
+        endpoint.send(request, transport.addressOf(Transport.Service.ELEVATOR));
+    }
+
+    @Test
+    public void testRoundTripBetweenMappings() throws IOException {
+        Transport.Endpoint service = serviceSide.bind(Transport.Service.ELEVATOR, Transport.Service.FAULT);
+        Transport.Endpoint client = clientSide.open();
+
+        sendRequest(clientSide, client, 7);
+        ByteBuffer request = service.receive(1000);
+        assertNotNull(request);
+        assertEquals(Transport.Service.ELEVATOR, service.getService());
+        assertEquals(7, WireProtocol.readHeader(request, WireProtocol.ACTION_REQUEST));
+        assertEquals(1, request.getInt());
+        serviceSide.releaseBuffer(request);
+
+        ByteBuffer reply = serviceSide.acquireBuffer();
+        WireProtocol.encodeActionReply(reply, 7, ElevatorSubsystem.Action.MOVE_TO, 9);
+        service.send(reply, service.getSender());
+        ByteBuffer received = client.receive(1000);
+        assertNotNull(received);
+        assertEquals(7, WireProtocol.readHeader(received, WireProtocol.ACTION_REPLY));
+        assertEquals(ElevatorSubsystem.Action.MOVE_TO, WireProtocol.readAction(received));
+        assertEquals(9, WireProtocol.readTargetFloor(received));
+
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void testWrapsAroundAndDropsWhenFull() throws IOException {
+        Transport.Endpoint service = serviceSide.bind(Transport.Service.ELEVATOR);
+        Transport.Endpoint client = clientSide.open();
+
+        // Many times the size of a ring, read as they are sent
+        for (int sequence = 1; sequence <= 5000; sequence++) {
+            sendRequest(clientSide, client, sequence);
+            ByteBuffer request = service.receive(1000);
+            assertEquals(sequence, WireProtocol.readHeader(request, WireProtocol.ACTION_REQUEST));
+            serviceSide.releaseBuffer(request);
+        }
+
+        // Nothing is read: the ring fills up and the messages that do not fit are dropped
+        for (int sequence = 1; sequence <= 5000; sequence++) {
+            sendRequest(clientSide, client, sequence);
+        }
+        int received = 0;
+        ByteBuffer request;
+        while ((request = service.receive(0)) != null) {
+            received++;
+            assertEquals(received, WireProtocol.readHeader(request, WireProtocol.ACTION_REQUEST));
+            serviceSide.releaseBuffer(request);
+        }
+        assertTrue(received > 0 && received < 5000);
+
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void testServiceBoundOnce() throws IOException {
+        Transport.Endpoint client = clientSide.open();
+        sendRequest(clientSide, client, 1); // dropped, nobody is bound
+        assertNull(client.receive(20));
+
+        Transport.Endpoint service = serviceSide.bind(Transport.Service.ELEVATOR);
+        try {
+            clientSide.bind(Transport.Service.ELEVATOR);
+            fail("A service is bound by a single endpoint");
+        } catch (BindException e) {
+            // expected
+        }
+        assertNull(service.receive(0));
+        service.close();
+        serviceSide.bind(Transport.Service.ELEVATOR).close();
+        client.close();
+    }
+
+    @Test
+    public void testFullSlotTableIsReported() throws IOException {
+        SharedMemoryTransport smallServiceSide = new SharedMemoryTransport(directory, 2);
+        Transport.Endpoint service = smallServiceSide.bind(Transport.Service.ELEVATOR);
+        Transport.Endpoint first = clientSide.open();
+        Transport.Endpoint second = clientSide.open();
+        Transport.Endpoint third = clientSide.open();
+        sendRequest(clientSide, first, 1);
+        sendRequest(clientSide, second, 2);
+
+        try {
+            sendRequest(clientSide, third, 3);
+            fail("A client of a service without a free slot should be told");
+        } catch (IOException e) {
+            // expected
+        }
+
+        // A slot given back is claimed by the next client
+        first.close();
+        sendRequest(clientSide, third, 3);
+        int received = 0;
+        ByteBuffer request;
+        while ((request = service.receive(100)) != null) {
+            received++;
+            smallServiceSide.releaseBuffer(request);
+        }
+        assertEquals(3, received);
+
+        second.close();
+        third.close();
+        service.close();
+    }
+
+    @Test
+    public void testSlotOfADeadClientIsReclaimed() throws IOException, InterruptedException {
+        SharedMemoryTransport smallServiceSide = new SharedMemoryTransport(directory, 1);
+        Transport.Endpoint service = smallServiceSide.bind(Transport.Service.ELEVATOR);
+
+        // A client process that exits without closing its endpoint
+        Process process = new ProcessBuilder("true").start();
+        process.waitFor();
+        SharedMemoryTransport deadSide = new SharedMemoryTransport(directory, 1, process.toHandle());
+        Transport.Endpoint dead = deadSide.open();
+        sendRequest(deadSide, dead, 1);
+        sendRequest(deadSide, dead, 2);
+
+        // Its slot is taken over, and its unread requests are not delivered as the new owner's
+        Transport.Endpoint client = clientSide.open();
+        sendRequest(clientSide, client, 3);
+        ByteBuffer request = service.receive(1000);
+        assertNotNull(request);
+        assertEquals(3, WireProtocol.readHeader(request, WireProtocol.ACTION_REQUEST));
+        smallServiceSide.releaseBuffer(request);
+        assertNull(service.receive(20));
+
+        // The slot of a live client is not
+        Transport.Endpoint other = clientSide.open();
+        try {
+            sendRequest(clientSide, other, 4);
+            fail("The slot of a live client should not be reclaimed");
+        } catch (IOException e) {
+            // expected
+        }
+
+        other.close();
+        client.close();
+        service.close();
+    }
+
+    @Test
+    public void testClientsFollowTheServiceToItsNewFile() throws IOException {
+        Transport.Endpoint service = serviceSide.bind(Transport.Service.ELEVATOR);
+        Transport.Endpoint client = clientSide.open();
+        sendRequest(clientSide, client, 1);
+        ByteBuffer request = service.receive(1000);
+        assertNotNull(request);
+        serviceSide.releaseBuffer(request);
+
+        // The scheduler restarts and binds the service again, the client keeps its endpoint
+        service.close();
+        SharedMemoryTransport restartedSide = new SharedMemoryTransport(directory);
+        Transport.Endpoint restarted = restartedSide.bind(Transport.Service.ELEVATOR);
+        sendRequest(clientSide, client, 2);
+        request = restarted.receive(1000);
+        assertNotNull("The client should send to the new file of the service", request);
+        assertEquals(2, WireProtocol.readHeader(request, WireProtocol.ACTION_REQUEST));
+        restartedSide.releaseBuffer(request);
+
+        ByteBuffer reply = restartedSide.acquireBuffer();
+        WireProtocol.encodeActionReply(reply, 2, ElevatorSubsystem.Action.UP);
+        restarted.send(reply, restarted.getSender());
+        ByteBuffer received = client.receive(1000);
+        assertNotNull(received);
+        assertEquals(2, WireProtocol.readHeader(received, WireProtocol.ACTION_REPLY));
+
+        client.close();
+        restarted.close();
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing SimulationEngine class
+ */
+public class SimulationEngine_Test {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSingleCallTiming() {
+        Scheduler scheduler = new Scheduler();
+        SimulationEngine engine = new SimulationEngine(scheduler, 1, 100, 1000);
+        ElevatorCall call = new ElevatorCall(new Date(5000), 3, 6, "Up");
+        engine.run(Collections.singletonList(call).iterator());
+
+        // Two floors to the call, where the doors are toggled once when the trip starts and once more when the
+        // car asks again at the starting floor, three floors to the destination, a stop, then the car quits
+        assertEquals(1, engine.getCallsReceived());
+        assertEquals(5, engine.getFloorsTravelled());
+        assertEquals(3, engine.getStopsServed());
+        assertEquals(5 * 100 + 3 * 1000, engine.getSimulatedTime());
+        assertEquals(5000 + 3500, engine.getVirtualTime());
+        assertEquals(1, scheduler.getMetrics().getWaitTime().getCount());
+        assertEquals(200, scheduler.getMetrics().getWaitTime().getMax());
+    }
+
+    @Test
+    public void testNoCalls() {
+        SimulationEngine engine = new SimulationEngine(new Scheduler(), 3, 100, 1000);
+        engine.run(Collections.<ElevatorCall>emptyIterator());
+        assertEquals(0, engine.getCallsReceived());
+        assertEquals(0, engine.getFloorsTravelled());
+        assertEquals(0, engine.getSimulatedTime());
+    }
+
+    private static Iterator<ElevatorCall> seededTraffic() {
+        return SimulationEngine.readCalls(new TrafficGenerator(TrafficGenerator.Profile.UP_PEAK, 15, 20, 200, 42));
+    }
+
+    @Test
+    public void testSeededRunIsReproducible() {
+        Scheduler scheduler = new Scheduler();
+        scheduler.setDispatchPolicy(new NearestCarDispatchPolicy(100, 1000));
+        SimulationEngine engine = new SimulationEngine(scheduler, 4, 100, 1000);
+        engine.run(seededTraffic());
+        // The same seed always gives the same trips and waits
+        assertEquals(200, engine.getCallsReceived());
+        assertEquals(2188, engine.getFloorsTravelled());
+        assertEquals(477, engine.getStopsServed());
+        assertEquals(597756, engine.getSimulatedTime());
+        assertEquals(200, scheduler.getMetrics().getWaitTime().getCount());
+        assertEquals(1885, scheduler.getMetrics().getWaitTime().getMax());
+        assertEquals(696, scheduler.getMetrics().getWaitTime().getPercentile(50));
+
+        Scheduler again = new Scheduler();
+        again.setDispatchPolicy(new NearestCarDispatchPolicy(100, 1000));
+        SimulationEngine rerun = new SimulationEngine(again, 4, 100, 1000);
+        rerun.run(seededTraffic());
+        assertEquals(engine.getFloorsTravelled(), rerun.getFloorsTravelled());
+        assertEquals(engine.getStopsServed(), rerun.getStopsServed());
+        assertEquals(engine.getSimulatedTime(), rerun.getSimulatedTime());
+        assertEquals(scheduler.getMetrics().getWaitTime().getMax(), again.getMetrics().getWaitTime().getMax());
+        assertEquals(scheduler.getMetrics().getWaitTime().getMean(), again.getMetrics().getWaitTime().getMean(), 0);
+    }
+
+    @Test
+    public void testInvalidCallsOfATraceAreSkipped() throws IOException {
+        File trace = folder.newFile();
+        Files.write(trace.toPath(), ("time current_floor direction destination\n"
+                + "08:00:00:00 5 up 2\n"
+                + "08:00:01:00 4 down 4\n"
+                + "08:00:02:00 2 up 7\n").getBytes(StandardCharsets.US_ASCII));
+
+        Iterator<ElevatorCall> calls = SimulationEngine.readTrace(trace.getPath());
+        assertTrue(calls.hasNext());
+        ElevatorCall call = calls.next();
+        assertEquals(2, call.getStartingFloor());
+        assertEquals(7, call.getDestinationFloor());
+        assertFalse(calls.hasNext());
+    }
+}
@@ -0,0 +1,35 @@
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing SweepRunner class
+ */
+public class SweepRunner_Test {
+
+    @Test
+    public void testParallelRunsMatchSequentialRuns() {
+        SweepRunner runner = new SweepRunner(TrafficGenerator.Profile.UP_PEAK, 20, 300, 7);
+        List<SweepRunner.Configuration> configurations = SweepRunner.grid(new int[]{2, 6}, new int[]{22},
+                new long[]{10000}, new long[]{11000}, new String[]{"fifo", "nearest"});
+        assertEquals(4, configurations.size());
+
+        List<SweepRunner.Result> results = runner.run(configurations, 4);
+        assertEquals(configurations.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            SweepRunner.Result parallel = results.get(i);
+            SweepRunner.Result sequential = runner.run(configurations.get(i));
+            assertSame(configurations.get(i), parallel.getConfiguration());
+            assertEquals(300, parallel.getCalls());
+            assertEquals(0, parallel.getUnserved());
+            assertEquals(sequential.getSimulatedTime(), parallel.getSimulatedTime());
+            assertEquals(sequential.getWaitTime().getMax(), parallel.getWaitTime().getMax());
+        }
+
+        // More cars serve the same traffic sooner
+        assertTrue(results.get(1).getWaitTime().getMean() < results.get(0).getWaitTime().getMean());
+        assertEquals(results.size() + 1, SweepRunner.report(results).size());
+    }
+}
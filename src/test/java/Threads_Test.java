@@ -0,0 +1,48 @@
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing Threads class
+ */
+public class Threads_Test {
+
+    private Thread runDelayedTask(ScheduledExecutorService executor) throws Exception {
+        CompletableFuture<Thread> ranOn = new CompletableFuture<>();
+        executor.schedule(() -> ranOn.complete(Thread.currentThread()), 20, TimeUnit.MILLISECONDS);
+        return ranOn.get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testScheduledExecutorKeepsOneCoreThread() throws Exception {
+        for (boolean virtual : new boolean[]{false, true}) {
+            ScheduledExecutorService executor = Threads.newScheduledExecutor("test-timer", virtual);
+            try {
+                assertEquals("A delayed task is waited for by a core thread", 1, ((ScheduledThreadPoolExecutor) executor).getCorePoolSize());
+                Thread thread = runDelayedTask(executor);
+                assertEquals("test-timer", thread.getName());
+                assertTrue("Pending timers do not keep the JVM alive", thread.isDaemon());
+                assertEquals(virtual, thread.isVirtual());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void testNewThreadIsNotStarted() throws InterruptedException {
+        boolean[] ran = new boolean[1];
+        Thread thread = Threads.newThread("test-thread", () -> ran[0] = true);
+        assertEquals("test-thread", thread.getName());
+        assertEquals(Threads.isVirtual(), thread.isVirtual());
+        assertEquals(Thread.State.NEW, thread.getState());
+        thread.start();
+        thread.join();
+        assertTrue(ran[0]);
+    }
+}
@@ -0,0 +1,62 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing TimingWheel class
+ */
+public class TimingWheel_Test {
+    private TimingWheel wheel;
+
+    @Before
+    public void setUp() {
+        // Small wheel so that the deadlines below take several turns
+        wheel = new TimingWheel("test-timing-wheel", 5, 8);
+    }
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void testFiresNotEarly() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        long[] elapsed = new long[1];
+        TimingWheel.Timeout timeout = wheel.schedule(() -> {
+            elapsed[0] = System.nanoTime() - start;
+            fired.countDown();
+        }, 120, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue("Fired after " + elapsed[0] + " ns", elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(120));
+        assertTrue(timeout.isDone());
+        assertFalse(timeout.isCancelled());
+        assertFalse("A task that ran cannot be cancelled", timeout.cancel());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch last = new CountDownLatch(1);
+        for (int i = 0; i < 1000; i++) {
+            // At least 50 ms away, so no task can run before it is cancelled
+            TimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 50 + i % 100, TimeUnit.MILLISECONDS);
+            if (i % 2 == 0) {
+                assertTrue(timeout.cancel());
+                assertTrue(timeout.isCancelled());
+            }
+        }
+        wheel.schedule(last::countDown, 200, TimeUnit.MILLISECONDS);
+
+        assertTrue(last.await(2, TimeUnit.SECONDS));
+        assertEquals(500, runs.get());
+    }
+}
@@ -0,0 +1,86 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing TraceReader class
+ */
+public class TraceReader_Test {
+    private static final String HEADER = "time current_floor direction destination\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String writeTrace(String contents) throws IOException {
+        File trace = folder.newFile();
+        Files.write(trace.toPath(), contents.getBytes(StandardCharsets.US_ASCII));
+        return trace.getPath();
+    }
+
+    @Test
+    public void testReadCalls() throws IOException {
+        String path = writeTrace(HEADER + "02:22:00:15 2 up 18\r\n\n14:05:59:07 21 down 1");
+        try (TraceReader trace = new TraceReader(path)) {
+            assertTrue(trace.next());
+            assertEquals(((2 * 60 + 22) * 60) * 1000L + 15, trace.getTimeOfDay());
+            assertEquals(2, trace.getStartingFloor());
+            assertEquals(18, trace.getTargetFloor());
+            assertTrue(trace.isUp());
+
+            assertTrue(trace.next());
+            assertEquals(((14 * 60 + 5) * 60 + 59) * 1000L + 7, trace.getTimeOfDay());
+            assertEquals(21, trace.getStartingFloor());
+            assertEquals(1, trace.getTargetFloor());
+            assertFalse(trace.isUp());
+            assertEquals(4, trace.getLineNumber());
+
+            assertFalse(trace.next());
+        }
+    }
+
+    @Test
+    public void testLinesAcrossWindows() throws IOException {
+        StringBuilder contents = new StringBuilder(HEADER);
+        for (int i = 0; i < 1000; i++) {
+            contents.append(String.format("00:00:%02d:%02d %d up %d\n", i / 100, i % 100, i, i + 1));
+        }
+        try (TraceReader trace = new TraceReader(writeTrace(contents.toString()), 64)) {
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(trace.next());
+                assertEquals((i / 100) * 1000L + i % 100, trace.getTimeOfDay());
+                assertEquals(i, trace.getStartingFloor());
+                assertEquals(i + 1, trace.getTargetFloor());
+            }
+            assertFalse(trace.next());
+        }
+    }
+
+    @Test
+    public void testMalformedLine() throws IOException {
+        try (TraceReader trace = new TraceReader(writeTrace(HEADER + "02:22:00:15 2 sideways 18\n"))) {
+            trace.next();
+            fail("Expected an IllegalArgumentException to be thrown");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Line 2 of the trace"));
+        }
+    }
+
+    @Test
+    public void testFloorOverflow() throws IOException {
+        try (TraceReader trace = new TraceReader(writeTrace(HEADER + "02:22:00:15 2147483647 down 5\n02:22:01:00 99999999999 up 5\n"))) {
+            assertTrue(trace.next());
+            assertEquals(Integer.MAX_VALUE, trace.getStartingFloor());
+            trace.next();
+            fail("Expected an IllegalArgumentException to be thrown");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Line 3 of the trace"));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing TrafficGenerator class
+ */
+public class TrafficGenerator_Test {
+    private static final int FLOORS = 22;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameSeedSameTraffic() {
+        TrafficGenerator first = new TrafficGenerator(TrafficGenerator.Profile.LUNCH, FLOORS, 30, 1000, 42);
+        TrafficGenerator second = new TrafficGenerator(TrafficGenerator.Profile.LUNCH, FLOORS, 30, 1000, 42);
+        while (first.next()) {
+            assertTrue(second.next());
+            assertEquals(first.getTimeOfDay(), second.getTimeOfDay());
+            assertEquals(first.getStartingFloor(), second.getStartingFloor());
+            assertEquals(first.getTargetFloor(), second.getTargetFloor());
+        }
+        assertFalse(second.next());
+    }
+
+    @Test
+    public void testUpPeakStartsAtLobby() {
+        TrafficGenerator generator = new TrafficGenerator(TrafficGenerator.Profile.UP_PEAK, FLOORS, 60, 10000, 1);
+        int fromLobby = 0;
+        long lastTimeOfDay = 0;
+        while (generator.next()) {
+            assertTrue(generator.getStartingFloor() >= 1 && generator.getStartingFloor() <= FLOORS);
+            assertTrue(generator.getTargetFloor() >= 1 && generator.getTargetFloor() <= FLOORS);
+            assertNotEquals(generator.getStartingFloor(), generator.getTargetFloor());
+            assertTrue(generator.getTimeOfDay() >= lastTimeOfDay);
+            lastTimeOfDay = generator.getTimeOfDay();
+            if (generator.getStartingFloor() == TrafficGenerator.LOBBY) {
+                fromLobby++;
+                assertTrue(generator.isUp());
+            }
+        }
+        assertTrue(fromLobby > 8000);
+        // 10000 calls at 60 calls per minute take close to 10000 seconds
+        assertEquals(8 * 3600000L + 10000000L, lastTimeOfDay, 500000);
+    }
+
+    @Test
+    public void testWrittenTraceIsReadable() throws IOException {
+        String path = folder.newFile().getPath();
+        new TrafficGenerator(TrafficGenerator.Profile.DOWN_PEAK, FLOORS, 120, 500, 7).writeTrace(path);
+
+        TrafficGenerator expected = new TrafficGenerator(TrafficGenerator.Profile.DOWN_PEAK, FLOORS, 120, 500, 7);
+        try (TraceReader trace = new TraceReader(path)) {
+            while (expected.next()) {
+                assertTrue(trace.next());
+                assertEquals(expected.getStartingFloor(), trace.getStartingFloor());
+                assertEquals(expected.getTargetFloor(), trace.getTargetFloor());
+                assertEquals(expected.isUp(), trace.isUp());
+                assertEquals("Times are written to the second", expected.getTimeOfDay() / 1000 * 1000, trace.getTimeOfDay());
+            }
+            assertFalse(trace.next());
+        }
+    }
+}
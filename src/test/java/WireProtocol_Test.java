@@ -0,0 +1,82 @@
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class responsible for testing WireProtocol class
+ */
+public class WireProtocol_Test {
+
+    @Test
+    public void testActionRequestRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        WireProtocol.encodeActionRequest(buffer, 7, 3, 12, ElevatorSubsystem.SUBSCRIBE_FLAG);
+
+        assertEquals(WireProtocol.ACTION_REQUEST_SIZE, buffer.remaining());
+        assertEquals(7, WireProtocol.readHeader(buffer, WireProtocol.ACTION_REQUEST));
+        assertEquals(3, buffer.getInt());
+        assertEquals(12, buffer.getInt());
+        assertEquals(ElevatorSubsystem.SUBSCRIBE_FLAG, buffer.getInt());
+    }
+
+    @Test
+    public void testActionReplyRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        for (ElevatorSubsystem.Action action : ElevatorSubsystem.Action.values()) {
+            WireProtocol.encodeActionReply(buffer, 42, action);
+            assertEquals(42, WireProtocol.readHeader(buffer, WireProtocol.ACTION_REPLY));
+            assertSame(action, WireProtocol.readAction(buffer));
+            assertEquals(WireProtocol.NO_FLOOR, WireProtocol.readTargetFloor(buffer));
+        }
+
+        WireProtocol.encodeActionReply(buffer, 43, ElevatorSubsystem.Action.MOVE_TO, 18);
+        assertEquals(WireProtocol.ACTION_REPLY_SIZE, buffer.remaining());
+        assertEquals(43, WireProtocol.readHeader(buffer, WireProtocol.ACTION_REPLY));
+        assertSame(ElevatorSubsystem.Action.MOVE_TO, WireProtocol.readAction(buffer));
+        assertEquals(18, WireProtocol.readTargetFloor(buffer));
+    }
+
+    @Test
+    public void testHallCallRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        long timestamp = 1700000000123L;
+        WireProtocol.encodeHallCall(buffer, 1, timestamp, 9, 4, false);
+
+        WireProtocol.readHeader(buffer, WireProtocol.HALL_CALL);
+        assertEquals(timestamp, buffer.getLong());
+        assertEquals(9, buffer.getInt());
+        assertEquals(4, buffer.getInt());
+        assertEquals("Down", WireProtocol.readDirection(buffer));
+    }
+
+    @Test
+    public void testRejectsOtherMessages() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        WireProtocol.encodeDisplayUpdate(buffer, 1, 2, 3);
+        assertFalse(WireProtocol.isMessage(buffer, WireProtocol.HALL_CALL));
+        assertTrue(WireProtocol.isMessage(buffer, WireProtocol.DISPLAY_UPDATE));
+
+        buffer.put(0, (byte) (WireProtocol.VERSION + 1));
+        assertFalse("Messages of another version should be rejected", WireProtocol.isMessage(buffer, WireProtocol.DISPLAY_UPDATE));
+
+        buffer.put(0, WireProtocol.VERSION);
+        buffer.limit(WireProtocol.DISPLAY_UPDATE_SIZE - 1);
+        assertFalse("Truncated messages should be rejected", WireProtocol.isMessage(buffer, WireProtocol.DISPLAY_UPDATE));
+    }
+
+    @Test
+    public void testRejectsInvalidHallCalls() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        int[][] invalidCalls = {{-1, 4, 1}, {4, -1, 0}, {3, FloorStopSet.MAX_FLOOR + 1, 1}, {5, 2, 1}, {2, 5, 0}, {3, 3, 1}};
+        for (int[] call : invalidCalls) {
+            try {
+                WireProtocol.encodeHallCall(buffer, 1, 0, call[0], call[1], call[2] == 1);
+                fail("A call from floor " + call[0] + " to floor " + call[1] + " should be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}